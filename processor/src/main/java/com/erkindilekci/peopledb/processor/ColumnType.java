@@ -0,0 +1,101 @@
+package com.erkindilekci.peopledb.processor;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * How a field of one Java type is bound to a statement parameter and read back from a result set. Each kind renders
+ * the source of a single call, so the generated mappers stay straight-line.
+ */
+enum ColumnType {
+    STRING("setString(%s, %s)", "getString(%s)"),
+    LONG("setLong(%s, %s)", "getLong(%s)"),
+    LONG_OBJECT("setObject(%s, %s, Types.BIGINT)", "getObject(%s, Long.class)"),
+    INT("setInt(%s, %s)", "getInt(%s)"),
+    INTEGER_OBJECT("setObject(%s, %s, Types.INTEGER)", "getObject(%s, Integer.class)"),
+    DOUBLE("setDouble(%s, %s)", "getDouble(%s)"),
+    DOUBLE_OBJECT("setObject(%s, %s, Types.DOUBLE)", "getObject(%s, Double.class)"),
+    BOOLEAN("setBoolean(%s, %s)", "getBoolean(%s)"),
+    BOOLEAN_OBJECT("setObject(%s, %s, Types.BOOLEAN)", "getObject(%s, Boolean.class)"),
+    BIG_DECIMAL("setBigDecimal(%s, %s)", "getBigDecimal(%s)"),
+    LOCAL_DATE("setObject(%s, %s, Types.DATE)", "getObject(%s, LocalDate.class)"),
+    LOCAL_DATE_TIME("setObject(%s, %s, Types.TIMESTAMP)", "getObject(%s, LocalDateTime.class)"),
+    /**
+     * Stored as a {@code TIMESTAMP} in UTC, like the rest of the repositories do.
+     */
+    ZONED_DATE_TIME("setTimestamp(%s, toTimestamp(%s))", "toZonedDateTime(rs.getTimestamp(%s))"),
+    /**
+     * Stored by {@link Enum#name()}.
+     */
+    ENUM("setString(%s, name(%s))", "to%s(rs.getString(%s))");
+
+    private final String bind;
+    private final String read;
+
+    ColumnType(String bind, String read) {
+        this.bind = bind;
+        this.read = read;
+    }
+
+    /**
+     * @return the kind of {@code type}, or {@code null} if it is not a column, e.g. a relation to another entity
+     */
+    static ColumnType of(TypeMirror type) {
+        switch (type.getKind()) {
+            case LONG:
+                return LONG;
+            case INT:
+                return INT;
+            case DOUBLE:
+                return DOUBLE;
+            case BOOLEAN:
+                return BOOLEAN;
+            case DECLARED:
+                break;
+            default:
+                return null;
+        }
+        DeclaredType declared = (DeclaredType) type;
+        if (declared.asElement().getKind() == ElementKind.ENUM) return ENUM;
+        return switch (declared.asElement().toString()) {
+            case "java.lang.String" -> STRING;
+            case "java.lang.Long" -> LONG_OBJECT;
+            case "java.lang.Integer" -> INTEGER_OBJECT;
+            case "java.lang.Double" -> DOUBLE_OBJECT;
+            case "java.lang.Boolean" -> BOOLEAN_OBJECT;
+            case "java.math.BigDecimal" -> BIG_DECIMAL;
+            case "java.time.LocalDate" -> LOCAL_DATE;
+            case "java.time.LocalDateTime" -> LOCAL_DATE_TIME;
+            case "java.time.ZonedDateTime" -> ZONED_DATE_TIME;
+            default -> null;
+        };
+    }
+
+    boolean isPrimitive() {
+        return this == LONG || this == INT || this == DOUBLE || this == BOOLEAN;
+    }
+
+    /**
+     * The value of a field whose column is not in the result shape.
+     */
+    String absent() {
+        if (this == BOOLEAN) return "false";
+        return isPrimitive() ? "0" : "null";
+    }
+
+    String bind(String index, String value) {
+        return "ps." + String.format(bind, index, value) + ";";
+    }
+
+    /**
+     * @param typeName the simple name of the field's type, which names the conversion of an {@link #ENUM}
+     */
+    String read(String index, String typeName) {
+        return switch (this) {
+            case ZONED_DATE_TIME -> String.format(read, index);
+            case ENUM -> String.format(read, typeName, index);
+            default -> "rs." + String.format(read, index);
+        };
+    }
+}
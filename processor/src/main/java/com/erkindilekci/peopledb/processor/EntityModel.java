@@ -0,0 +1,188 @@
+package com.erkindilekci.peopledb.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * What the mapper of one {@code @Table} entity needs: its columns, how to read and write each field, and which
+ * constructor creates the entity.
+ */
+final class EntityModel {
+
+    static final String TABLE = "com.erkindilekci.peopledb.annotation.Table";
+    static final String ID = "com.erkindilekci.peopledb.annotation.Id";
+
+    /**
+     * One mapped field. {@code setter} is {@code null} for a field that is only ever set through the constructor.
+     */
+    record Column(String field, String name, TypeMirror type, ColumnType kind, String getter, String setter) {
+    }
+
+    static final class InvalidEntityException extends RuntimeException {
+
+        private final Element element;
+
+        InvalidEntityException(String message, Element element) {
+            super(message);
+            this.element = element;
+        }
+
+        Element getElement() {
+            return element;
+        }
+    }
+
+    final TypeElement entity;
+    final String table;
+    /**
+     * The ID column first, then the others in the order their fields are declared.
+     */
+    final List<Column> columns;
+    final List<Column> constructorArguments;
+
+    private EntityModel(TypeElement entity, String table, List<Column> columns, List<Column> constructorArguments) {
+        this.entity = entity;
+        this.table = table;
+        this.columns = columns;
+        this.constructorArguments = constructorArguments;
+    }
+
+    static EntityModel of(TypeElement entity, ProcessingEnvironment environment) {
+        Types types = environment.getTypeUtils();
+        List<ExecutableElement> methods = ElementFilter.methodsIn(environment.getElementUtils().getAllMembers(entity));
+
+        Map<String, Column> byField = new LinkedHashMap<>();
+        Column id = null;
+        for (VariableElement field : ElementFilter.fieldsIn(entity.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC)) continue;
+            boolean isId = hasAnnotation(field, ID);
+            ColumnType kind = ColumnType.of(field.asType());
+            if (kind == null) {
+                if (isId) throw new InvalidEntityException("@Id field must be of type Long", field);
+                continue;
+            }
+            if (isId && kind != ColumnType.LONG_OBJECT) throw new InvalidEntityException("@Id field must be of type Long", field);
+            String name = field.getSimpleName().toString();
+            Column column = new Column(name, toColumnName(name), field.asType(), kind,
+                    getter(types, methods, field), setter(types, methods, field));
+            if (isId) {
+                if (id != null) throw new InvalidEntityException("Only one field may be annotated with @Id", field);
+                id = column;
+            } else {
+                byField.put(name, column);
+            }
+        }
+        if (id == null) throw new InvalidEntityException("No ID annotated field found in " + entity.getSimpleName(), entity);
+        if (id.setter() == null) throw new InvalidEntityException("@Id field needs a non-private setter set"
+                + capitalize(id.field()) + "(Long)", entity);
+
+        List<Column> columns = new ArrayList<>();
+        columns.add(id);
+        columns.addAll(byField.values());
+        byField.put(id.field(), id);
+
+        List<Column> constructorArguments = constructorArguments(types, entity, byField);
+        for (Column column : columns) {
+            if (column.setter() == null && !constructorArguments.contains(column)) {
+                throw new InvalidEntityException("Field " + column.field() + " is neither a constructor parameter nor has a non-private setter",
+                        entity);
+            }
+        }
+        return new EntityModel(entity, tableName(entity), List.copyOf(columns), constructorArguments);
+    }
+
+    /**
+     * The non-private constructor with the most parameters that all name a column field of the same type.
+     */
+    private static List<Column> constructorArguments(Types types, TypeElement entity, Map<String, Column> byField) {
+        List<Column> best = null;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(entity.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PRIVATE)) continue;
+            List<Column> arguments = new ArrayList<>();
+            for (VariableElement parameter : constructor.getParameters()) {
+                Column column = byField.get(parameter.getSimpleName().toString());
+                if (column == null || !types.isSameType(column.type(), parameter.asType())) {
+                    arguments = null;
+                    break;
+                }
+                arguments.add(column);
+            }
+            if (arguments != null && (best == null || arguments.size() > best.size())) best = arguments;
+        }
+        if (best == null) {
+            throw new InvalidEntityException(entity.getSimpleName() + " needs a non-private constructor whose parameters are named after its columns' fields",
+                    entity);
+        }
+        return List.copyOf(best);
+    }
+
+    private static String getter(Types types, List<ExecutableElement> methods, VariableElement field) {
+        String name = field.getSimpleName().toString();
+        List<String> candidates = List.of("get" + capitalize(name), "is" + capitalize(name), name);
+        for (ExecutableElement method : methods) {
+            if (isAccessible(method) && method.getParameters().isEmpty()
+                    && candidates.contains(method.getSimpleName().toString())
+                    && types.isSameType(method.getReturnType(), field.asType())) {
+                return method.getSimpleName().toString();
+            }
+        }
+        throw new InvalidEntityException("Field " + name + " needs a non-private getter", field);
+    }
+
+    private static String setter(Types types, List<ExecutableElement> methods, VariableElement field) {
+        String name = "set" + capitalize(field.getSimpleName().toString());
+        for (ExecutableElement method : methods) {
+            if (isAccessible(method) && method.getSimpleName().contentEquals(name) && method.getParameters().size() == 1
+                    && types.isSameType(method.getParameters().get(0).asType(), field.asType())) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isAccessible(ExecutableElement method) {
+        return !method.getModifiers().contains(Modifier.PRIVATE) && !method.getModifiers().contains(Modifier.STATIC);
+    }
+
+    private static String tableName(TypeElement entity) {
+        for (AnnotationMirror annotation : entity.getAnnotationMirrors()) {
+            if (annotation.getAnnotationType().toString().equals(TABLE)) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : annotation.getElementValues().entrySet()) {
+                    if (value.getKey().getSimpleName().contentEquals("value")) return value.getValue().getValue().toString();
+                }
+            }
+        }
+        throw new InvalidEntityException("Missing @Table name", entity);
+    }
+
+    private static boolean hasAnnotation(Element element, String annotationType) {
+        return element.getAnnotationMirrors().stream()
+                .anyMatch(a -> a.getAnnotationType().toString().equals(annotationType));
+    }
+
+    private static String toColumnName(String fieldName) {
+        return fieldName.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase(Locale.ROOT);
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    Column id() {
+        return columns.get(0);
+    }
+}
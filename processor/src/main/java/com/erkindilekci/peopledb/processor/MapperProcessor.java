@@ -0,0 +1,141 @@
+package com.erkindilekci.peopledb.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Generates an {@code EntityMapper} for every class annotated with {@code @Table}, so repositories bind and read
+ * entities through plain method calls instead of reflection. The mapper of {@code Person} is {@code PersonMapper} in
+ * the same package, which lets it use package-private accessors.
+ * <p>
+ * The {@code @SQL} annotations on the methods of a repository are collected the same way, into a class its
+ * {@code declaredSql()} returns the statements from, so repositories never look for them at runtime.
+ */
+@SupportedAnnotationTypes({EntityModel.TABLE, RepositorySqlWriter.SQL, RepositorySqlWriter.MULTI_SQL})
+public final class MapperProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        Set<TypeElement> repositories = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            String name = annotation.getQualifiedName().toString();
+            if (name.equals(RepositorySqlWriter.SQL) || name.equals(RepositorySqlWriter.MULTI_SQL)) {
+                for (Element method : round.getElementsAnnotatedWith(annotation)) {
+                    repositories.add((TypeElement) method.getEnclosingElement());
+                }
+                continue;
+            }
+            for (Element element : round.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    error("@Table only applies to classes", element);
+                    continue;
+                }
+                try {
+                    generate((TypeElement) element);
+                } catch (EntityModel.InvalidEntityException e) {
+                    error(e.getMessage(), e.getElement());
+                }
+            }
+        }
+        for (TypeElement repository : repositories) {
+            generateSql(repository);
+        }
+        return true;
+    }
+
+    private void generate(TypeElement entity) {
+        EntityModel model = EntityModel.of(entity, processingEnv);
+        MapperWriter writer = new MapperWriter(model, processingEnv.getElementUtils().getPackageOf(entity));
+        write(writer.qualifiedMapperName(), writer.write(), entity);
+    }
+
+    private void generateSql(TypeElement repository) {
+        boolean declaresSql = ElementFilter.methodsIn(repository.getEnclosedElements()).stream()
+                .anyMatch(m -> m.getSimpleName().contentEquals(RepositorySqlWriter.DECLARED_SQL) && m.getParameters().isEmpty());
+        Map<String, String> sqlByOperation = new TreeMap<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(repository.getEnclosedElements())) {
+            for (AnnotationMirror sql : sqlAnnotations(method)) {
+                Map<String, Object> values = values(sql);
+                String operation = ((VariableElement) values.get("operationType")).getSimpleName().toString();
+                String previous = sqlByOperation.putIfAbsent(operation, (String) values.get("value"));
+                if (previous != null && !previous.equals(values.get("value"))) {
+                    error("Conflicting SQL for " + operation + " in " + repository.getQualifiedName(), method);
+                    return;
+                }
+            }
+        }
+        if (!declaresSql) {
+            error(repository.getSimpleName() + " declares @SQL but does not override " + RepositorySqlWriter.DECLARED_SQL
+                    + "() to return it", repository);
+            return;
+        }
+
+        RepositorySqlWriter writer = new RepositorySqlWriter(repository, processingEnv.getElementUtils().getPackageOf(repository), sqlByOperation);
+        write(writer.qualifiedClassName(), writer.write(), repository);
+    }
+
+    /**
+     * The {@code @SQL} annotations of {@code method}, including those repeated inside an {@code @MultiSQL}.
+     */
+    private static List<AnnotationMirror> sqlAnnotations(ExecutableElement method) {
+        List<AnnotationMirror> sql = new ArrayList<>();
+        for (AnnotationMirror annotation : method.getAnnotationMirrors()) {
+            String type = annotation.getAnnotationType().toString();
+            if (type.equals(RepositorySqlWriter.SQL)) {
+                sql.add(annotation);
+            } else if (type.equals(RepositorySqlWriter.MULTI_SQL)) {
+                for (Object repeated : (List<?>) values(annotation).get("value")) {
+                    sql.add((AnnotationMirror) ((AnnotationValue) repeated).getValue());
+                }
+            }
+        }
+        return sql;
+    }
+
+    private static Map<String, Object> values(AnnotationMirror annotation) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        annotation.getElementValues().forEach((key, value) -> values.put(key.getSimpleName().toString(), value.getValue()));
+        return values;
+    }
+
+    private void write(String qualifiedName, String source, Element origin) {
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, origin);
+            try (Writer out = file.openWriter()) {
+                out.write(source);
+            }
+        } catch (IOException e) {
+            error("Unable to write " + qualifiedName + ": " + e.getMessage(), origin);
+        }
+    }
+
+    private void error(String message, Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,242 @@
+package com.erkindilekci.peopledb.processor;
+
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Renders the source of the {@code EntityMapper} for one {@link EntityModel}.
+ */
+final class MapperWriter {
+
+    private static final String CRUD_OPERATION_PACKAGE = "com.erkindilekci.peopledb.model";
+    private static final Set<String> RESERVED = Set.of("rs", "ps", "columns", "entity", "parameterIndex");
+
+    private final EntityModel model;
+    private final String packageName;
+    private final String entityName;
+    private final Set<String> imports = new TreeSet<>();
+    private final Set<String> enumHelpers = new LinkedHashSet<>();
+
+    MapperWriter(EntityModel model, PackageElement entityPackage) {
+        this.model = model;
+        this.packageName = entityPackage.getQualifiedName().toString();
+        this.entityName = model.entity.getSimpleName().toString();
+    }
+
+    String mapperName() {
+        return entityName + "Mapper";
+    }
+
+    String qualifiedMapperName() {
+        return packageName.isEmpty() ? mapperName() : packageName + "." + mapperName();
+    }
+
+    String write() {
+        imports.add("com.erkindilekci.peopledb.repository.EntityMapper");
+        if (!packageName.equals(CRUD_OPERATION_PACKAGE)) imports.add(CRUD_OPERATION_PACKAGE + ".CrudOperation");
+        imports.add("java.sql.PreparedStatement");
+        imports.add("java.sql.ResultSet");
+        imports.add("java.sql.SQLException");
+        imports.add("java.util.List");
+        imports.add("javax.annotation.processing.Generated");
+
+        String body = constants() + accessors() + bind() + bindColumn() + read() + helpers();
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) source.append("package ").append(packageName).append(";\n\n");
+        for (String type : imports) {
+            source.append("import ").append(type).append(";\n");
+        }
+        source.append("\n/**\n")
+                .append(" * Maps {@link ").append(entityName).append("} to the ").append(model.table)
+                .append(" table. Generated from its annotations; do not edit.\n")
+                .append(" */\n")
+                .append("@Generated(\"").append(MapperProcessor.class.getName()).append("\")\n")
+                .append("public final class ").append(mapperName()).append(" implements EntityMapper<").append(entityName).append("> {\n\n")
+                .append("    public static final ").append(mapperName()).append(" INSTANCE = new ").append(mapperName()).append("();\n\n")
+                .append(body)
+                .append("}\n");
+        return source.toString();
+    }
+
+    private String constants() {
+        String id = model.id().name();
+        List<EntityModel.Column> written = model.columns.subList(1, model.columns.size());
+        String columns = model.columns.stream().map(EntityModel.Column::name).collect(Collectors.joining(", "));
+        String select = "SELECT " + columns + " FROM " + model.table;
+
+        StringBuilder out = new StringBuilder();
+        constant(out, "TABLE", model.table);
+        constant(out, "COLUMNS", columns);
+        constant(out, "INSERT_SQL", "INSERT INTO " + model.table + " ("
+                + written.stream().map(EntityModel.Column::name).collect(Collectors.joining(", ")) + ") VALUES ("
+                + written.stream().map(c -> "?").collect(Collectors.joining(", ")) + ")");
+        constant(out, "UPDATE_SQL", "UPDATE " + model.table + " SET "
+                + written.stream().map(c -> c.name() + " = ?").collect(Collectors.joining(", ")) + " WHERE " + id + " = ?");
+        constant(out, "FIND_BY_ID_SQL", select + " WHERE " + id + " = ?");
+        constant(out, "FIND_ALL_SQL", select);
+        constant(out, "FIND_PAGE_SQL", select + " WHERE " + id + " > ? ORDER BY " + id + " FETCH FIRST ? ROWS ONLY");
+        constant(out, "COUNT_SQL", "SELECT COUNT(*) FROM " + model.table);
+        constant(out, "DELETE_SQL", "DELETE FROM " + model.table + " WHERE " + id + " = ?");
+        constant(out, "DELETE_IN_SQL", "DELETE FROM " + model.table + " WHERE " + id + " = ANY(?)");
+        out.append("\n    private static final List<String> COLUMN_LABELS = List.of(")
+                .append(model.columns.stream().map(c -> "\"" + c.name() + "\"").collect(Collectors.joining(", ")))
+                .append(");\n\n")
+                .append("    private ").append(mapperName()).append("() {\n    }\n\n")
+                .append("    @Override\n    public String table() {\n        return TABLE;\n    }\n\n")
+                .append("    @Override\n    public String sql(CrudOperation operation) {\n")
+                .append("        return switch (operation) {\n")
+                .append("            case SAVE -> INSERT_SQL;\n")
+                .append("            case UPDATE -> UPDATE_SQL;\n")
+                .append("            case FIND_BY_ID -> FIND_BY_ID_SQL;\n")
+                .append("            case FIND_ALL -> FIND_ALL_SQL;\n")
+                .append("            case DELETE -> DELETE_SQL;\n")
+                .append("            case DELETE_IN -> DELETE_IN_SQL;\n")
+                .append("            case ALL_COUNT -> COUNT_SQL;\n")
+                .append("            case FIND_PAGE -> FIND_PAGE_SQL;\n")
+                .append("        };\n    }\n\n")
+                .append("    @Override\n    public List<String> columns() {\n        return COLUMN_LABELS;\n    }\n\n");
+        return out.toString();
+    }
+
+    private static void constant(StringBuilder out, String name, String value) {
+        out.append("    public static final String ").append(name).append(" = \"").append(value).append("\";\n");
+    }
+
+    private String accessors() {
+        EntityModel.Column id = model.id();
+        return "    @Override\n"
+                + "    public Long getId(" + entityName + " entity) {\n"
+                + "        return entity." + id.getter() + "();\n"
+                + "    }\n\n"
+                + "    @Override\n"
+                + "    public void setId(" + entityName + " entity, Long id) {\n"
+                + "        entity." + id.setter() + "(id);\n"
+                + "    }\n\n";
+    }
+
+    private String bind() {
+        StringBuilder out = new StringBuilder("    @Override\n    public int bind(")
+                .append(entityName).append(" entity, PreparedStatement ps, int parameterIndex) throws SQLException {\n");
+        List<EntityModel.Column> written = model.columns.subList(1, model.columns.size());
+        for (int i = 0; i < written.size(); i++) {
+            EntityModel.Column column = written.get(i);
+            String index = i == 0 ? "parameterIndex" : "parameterIndex + " + i;
+            out.append("        ").append(column.kind().bind(index, "entity." + column.getter() + "()")).append('\n');
+            use(column);
+        }
+        return out.append("        return parameterIndex + ").append(written.size()).append(";\n    }\n\n").toString();
+    }
+
+    private String bindColumn() {
+        StringBuilder out = new StringBuilder("    @Override\n    public void bindColumn(").append(entityName)
+                .append(" entity, int column, PreparedStatement ps, int parameterIndex) throws SQLException {\n")
+                .append("        switch (column) {\n");
+        for (int i = 1; i < model.columns.size(); i++) {
+            EntityModel.Column column = model.columns.get(i);
+            out.append("            case ").append(i).append(" -> ")
+                    .append(column.kind().bind("parameterIndex", "entity." + column.getter() + "()")).append('\n');
+        }
+        return out.append("            default -> throw new IllegalArgumentException(\"Not a written column: \" + column);\n")
+                .append("        }\n    }\n\n").toString();
+    }
+
+    private String read() {
+        EntityModel.Column id = model.id();
+        StringBuilder out = new StringBuilder("    @Override\n    public ").append(entityName)
+                .append(" read(ResultSet rs, int[] columns) throws SQLException {\n")
+                .append("        if (columns[0] == 0) return null;\n")
+                .append("        Long id = rs.getObject(columns[0], Long.class);\n")
+                .append("        if (id == null) return null;\n");
+
+        List<String> arguments = new ArrayList<>();
+        for (EntityModel.Column argument : model.constructorArguments) {
+            if (argument == id) {
+                arguments.add("id");
+                continue;
+            }
+            String local = local(argument);
+            String index = "columns[" + model.columns.indexOf(argument) + "]";
+            out.append("        ").append(typeName(argument.type())).append(' ').append(local).append(" = ")
+                    .append(index).append(" == 0 ? ").append(argument.kind().absent()).append(" : ")
+                    .append(argument.kind().read(index, typeName(argument.type()))).append(";\n");
+            arguments.add(local);
+        }
+        out.append("        ").append(entityName).append(" entity = new ").append(entityName).append('(')
+                .append(String.join(", ", arguments)).append(");\n");
+        if (!model.constructorArguments.contains(id)) out.append("        entity.").append(id.setter()).append("(id);\n");
+        for (int i = 1; i < model.columns.size(); i++) {
+            EntityModel.Column column = model.columns.get(i);
+            if (model.constructorArguments.contains(column)) continue;
+            String index = "columns[" + i + "]";
+            out.append("        if (").append(index).append(" != 0) entity.").append(column.setter()).append('(')
+                    .append(column.kind().read(index, typeName(column.type()))).append(");\n");
+        }
+        return out.append("        return entity;\n    }\n").toString();
+    }
+
+    private String helpers() {
+        StringBuilder out = new StringBuilder();
+        boolean zoned = model.columns.stream().anyMatch(c -> c.kind() == ColumnType.ZONED_DATE_TIME);
+        if (zoned) {
+            out.append("\n    private static Timestamp toTimestamp(ZonedDateTime value) {\n")
+                    .append("        return value == null ? null : Timestamp.valueOf(value.withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime());\n")
+                    .append("    }\n")
+                    .append("\n    private static ZonedDateTime toZonedDateTime(Timestamp value) {\n")
+                    .append("        return value == null ? null : ZonedDateTime.of(value.toLocalDateTime(), ZoneOffset.UTC);\n")
+                    .append("    }\n");
+        }
+        if (!enumHelpers.isEmpty()) {
+            imports.add("java.util.Locale");
+            out.append("\n    private static String name(Enum<?> value) {\n")
+                    .append("        return value == null ? null : value.name();\n")
+                    .append("    }\n");
+        }
+        for (String enumType : enumHelpers) {
+            out.append("\n    private static ").append(enumType).append(" to").append(enumType).append("(String name) {\n")
+                    .append("        return name == null ? null : ").append(enumType).append(".valueOf(name.toUpperCase(Locale.ROOT));\n")
+                    .append("    }\n");
+        }
+        return out.toString();
+    }
+
+    /**
+     * Adds the imports the bind and read code of {@code column} needs.
+     */
+    private void use(EntityModel.Column column) {
+        typeName(column.type());
+        switch (column.kind()) {
+            case LONG_OBJECT, INTEGER_OBJECT, DOUBLE_OBJECT, BOOLEAN_OBJECT, LOCAL_DATE, LOCAL_DATE_TIME ->
+                    imports.add("java.sql.Types");
+            case ZONED_DATE_TIME -> {
+                imports.add("java.sql.Timestamp");
+                imports.add("java.time.ZoneOffset");
+            }
+            case ENUM -> enumHelpers.add(typeName(column.type()));
+            default -> {
+            }
+        }
+    }
+
+    private String typeName(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) return type.toString();
+        DeclaredType declared = (DeclaredType) type;
+        String qualified = declared.asElement().toString();
+        String simple = declared.asElement().getSimpleName().toString();
+        String owner = qualified.substring(0, Math.max(0, qualified.length() - simple.length() - 1));
+        if (!owner.equals("java.lang") && !owner.equals(packageName)) imports.add(qualified);
+        return simple;
+    }
+
+    private static String local(EntityModel.Column column) {
+        return RESERVED.contains(column.field()) ? column.field() + "Value" : column.field();
+    }
+}
@@ -0,0 +1,86 @@
+package com.erkindilekci.peopledb.processor;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Renders the class that holds the SQL a repository declares with {@code @SQL} on its methods. The class of
+ * {@code PersonRepository} is {@code PersonRepositorySql} in the same package, with the statements by operation in
+ * {@code BY_OPERATION}; a nested repository's name is prefixed with its enclosing classes, joined by underscores.
+ */
+final class RepositorySqlWriter {
+
+    static final String SQL = "com.erkindilekci.peopledb.annotation.SQL";
+    static final String MULTI_SQL = "com.erkindilekci.peopledb.annotation.MultiSQL";
+    /**
+     * The method a repository returns the generated statements from.
+     */
+    static final String DECLARED_SQL = "declaredSql";
+
+    private static final String CRUD_OPERATION = "com.erkindilekci.peopledb.model.CrudOperation";
+
+    private final TypeElement repository;
+    private final String packageName;
+    private final Map<String, String> sqlByOperation;
+
+    /**
+     * @param sqlByOperation the declared SQL by the name of its operation
+     */
+    RepositorySqlWriter(TypeElement repository, PackageElement repositoryPackage, Map<String, String> sqlByOperation) {
+        this.repository = repository;
+        this.packageName = repositoryPackage.getQualifiedName().toString();
+        this.sqlByOperation = sqlByOperation;
+    }
+
+    String className() {
+        StringBuilder name = new StringBuilder(repository.getSimpleName()).append("Sql");
+        for (Element owner = repository.getEnclosingElement(); owner instanceof TypeElement; owner = owner.getEnclosingElement()) {
+            name.insert(0, owner.getSimpleName() + "_");
+        }
+        return name.toString();
+    }
+
+    String qualifiedClassName() {
+        return packageName.isEmpty() ? className() : packageName + "." + className();
+    }
+
+    String write() {
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) source.append("package ").append(packageName).append(";\n\n");
+        if (!(packageName + ".CrudOperation").equals(CRUD_OPERATION)) source.append("import ").append(CRUD_OPERATION).append(";\n");
+        source.append("import java.util.Map;\n")
+                .append("import javax.annotation.processing.Generated;\n\n")
+                .append("/**\n")
+                .append(" * The SQL {@link ").append(repository.getQualifiedName()).append("} declares with {@code @SQL}. Generated from its\n")
+                .append(" * annotations; do not edit.\n")
+                .append(" */\n")
+                .append("@Generated(\"").append(MapperProcessor.class.getName()).append("\")\n")
+                .append("final class ").append(className()).append(" {\n\n")
+                .append("    static final Map<CrudOperation, String> BY_OPERATION = Map.ofEntries(")
+                .append(sqlByOperation.entrySet().stream()
+                        .map(e -> "\n            Map.entry(CrudOperation." + e.getKey() + ", \"" + escape(e.getValue()) + "\")")
+                        .collect(Collectors.joining(",")))
+                .append(");\n\n")
+                .append("    private ").append(className()).append("() {\n    }\n")
+                .append("}\n");
+        return source.toString();
+    }
+
+    private static String escape(String value) {
+        StringBuilder out = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
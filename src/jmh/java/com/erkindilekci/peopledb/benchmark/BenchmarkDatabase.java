@@ -0,0 +1,117 @@
+package com.erkindilekci.peopledb.benchmark;
+
+import com.erkindilekci.peopledb.model.Address;
+import com.erkindilekci.peopledb.model.Person;
+import com.erkindilekci.peopledb.model.Region;
+import com.erkindilekci.peopledb.repository.PersonRepository;
+import com.erkindilekci.peopledb.repository.SchemaManager;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A private in-memory H2 database with the PEOPLE and ADDRESSES tables, for one benchmark trial.
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+
+    /**
+     * How the people of a family are related: every family has one root, and each generation below it has
+     * {@code childrenPerPerson} children per person.
+     */
+    public enum Shape {
+        FLAT(0, 0),
+        WIDE(9, 1),
+        DEEP(1, 9);
+
+        private final int childrenPerPerson;
+        private final int generations;
+
+        Shape(int childrenPerPerson, int generations) {
+            this.childrenPerPerson = childrenPerPerson;
+            this.generations = generations;
+        }
+    }
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+    private static final ZonedDateTime DOB = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+
+    private final Connection connection;
+
+    private BenchmarkDatabase(Connection connection) {
+        this.connection = connection;
+    }
+
+    static BenchmarkDatabase open() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:h2:mem:benchmark" + DATABASES.incrementAndGet());
+        new SchemaManager(connection).migrate();
+        return new BenchmarkDatabase(connection);
+    }
+
+    Connection connection() {
+        return connection;
+    }
+
+    /**
+     * Saves families of {@code shape} until there are at least {@code size} people.
+     *
+     * @return the IDs of everyone saved
+     */
+    long[] populate(PersonRepository repository, int size, Shape shape) {
+        List<Person> roots = new ArrayList<>();
+        List<Person> everyone = new ArrayList<>(size);
+        while (everyone.size() < size) {
+            Person root = family(shape, "person" + everyone.size());
+            roots.add(root);
+            collect(root, everyone);
+        }
+        repository.saveAll(roots);
+        return everyone.stream().mapToLong(Person::getId).toArray();
+    }
+
+    /**
+     * A new, unsaved family of {@code shape} whose root has a home address.
+     */
+    static Person family(Shape shape, String lastName) {
+        Person root = person(lastName);
+        root.setHomeAddress(new Address(null, "123 Cookie St", "Apt. 9B", "Washington", "WA", "30340", "United States", "Fulton County", Region.WEST));
+        List<Person> generation = List.of(root);
+        for (int g = 0; g < shape.generations; g++) {
+            List<Person> next = new ArrayList<>();
+            for (Person parent : generation) {
+                for (int c = 0; c < shape.childrenPerPerson; c++) {
+                    Person child = person(lastName);
+                    parent.addChild(child);
+                    next.add(child);
+                }
+            }
+            generation = next;
+        }
+        return root;
+    }
+
+    private static Person person(String lastName) {
+        return new Person(null, "first", lastName, DOB, new BigDecimal("52000.00"));
+    }
+
+    private static void collect(Person person, List<Person> everyone) {
+        List<Person> generation = List.of(person);
+        while (!generation.isEmpty()) {
+            everyone.addAll(generation);
+            List<Person> next = new ArrayList<>();
+            generation.forEach(p -> next.addAll(p.getChildren()));
+            generation = next;
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        connection.close();
+    }
+}
@@ -0,0 +1,91 @@
+package com.erkindilekci.peopledb.benchmark;
+
+import com.erkindilekci.peopledb.model.Person;
+import com.erkindilekci.peopledb.repository.PersonRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads from a table of {@code size} people related as families of {@code shape}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"FLAT", "WIDE", "DEEP"})
+    public BenchmarkDatabase.Shape shape;
+
+    private BenchmarkDatabase database;
+    private PersonRepository repository;
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.open();
+        repository = new PersonRepository(database.connection());
+        ids = database.populate(repository, size, shape);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        repository.close();
+        database.close();
+    }
+
+    private long randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    @Benchmark
+    public Optional<Person> findById() {
+        return repository.findById(randomId());
+    }
+
+    /**
+     * The single-row lookup followed by a lazy load of the children.
+     */
+    @Benchmark
+    public Set<Person> findByIdAndChildren() {
+        return repository.findById(randomId()).orElseThrow().getChildren();
+    }
+
+    @Benchmark
+    public Optional<Person> findByIdWithRelations() {
+        return repository.findByIdWithRelations(randomId());
+    }
+
+    @Benchmark
+    public List<Person> findAll() {
+        return repository.findAll();
+    }
+
+    @Benchmark
+    public long count() {
+        return repository.count();
+    }
+}
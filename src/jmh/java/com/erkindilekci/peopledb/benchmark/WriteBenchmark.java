@@ -0,0 +1,147 @@
+package com.erkindilekci.peopledb.benchmark;
+
+import com.erkindilekci.peopledb.model.Person;
+import com.erkindilekci.peopledb.repository.AddressRepository;
+import com.erkindilekci.peopledb.repository.PersonRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes to a table that already holds {@code size} people, saving new families of {@code shape}. Rows inserted by a
+ * benchmark, and the addresses no one references afterwards, are deleted after every iteration, so the tables do not
+ * grow over the run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark {
+
+    private static final String INSERTED = "inserted";
+    private static final int FAMILIES_PER_SAVE_ALL = 10;
+    private static final int PEOPLE_PER_DELETE = 10;
+    private static final int DELETES_PER_ITERATION = 1000;
+    private static final String UNREFERENCED = "NOT EXISTS (SELECT 1 FROM PEOPLE AS P WHERE P.HOME_ADDRESS = ADDRESSES.ID"
+            + " OR P.BUSINESS_ADDRESS = ADDRESSES.ID)";
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"FLAT", "WIDE", "DEEP"})
+    public BenchmarkDatabase.Shape shape;
+
+    private BenchmarkDatabase database;
+    private PersonRepository repository;
+    private AddressRepository addresses;
+    private Person[] loaded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.open();
+        repository = new PersonRepository(database.connection());
+        addresses = new AddressRepository(database.connection());
+        long[] ids = database.populate(repository, size, shape);
+        loaded = new Person[Math.min(ids.length, 1000)];
+        for (int i = 0; i < loaded.length; i++) {
+            loaded[i] = repository.findById(ids[i]).orElseThrow();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteInserted() {
+        repository.deleteWhere("LAST_NAME = ?", INSERTED);
+        addresses.deleteWhere(UNREFERENCED);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        addresses.close();
+        repository.close();
+        database.close();
+    }
+
+    @Benchmark
+    public Person save() {
+        return repository.save(BenchmarkDatabase.family(shape, INSERTED));
+    }
+
+    @Benchmark
+    public long saveAll() {
+        List<Person> families = new ArrayList<>(FAMILIES_PER_SAVE_ALL);
+        for (int i = 0; i < FAMILIES_PER_SAVE_ALL; i++) {
+            families.add(BenchmarkDatabase.family(shape, INSERTED));
+        }
+        return repository.saveAll(families);
+    }
+
+    /**
+     * Changes one column of a loaded person, so only that column is written.
+     */
+    @Benchmark
+    public void update() {
+        Person person = loaded[ThreadLocalRandom.current().nextInt(loaded.length)];
+        person.setSalary(BigDecimal.valueOf(ThreadLocalRandom.current().nextInt(100_000), 2));
+        repository.update(person);
+    }
+
+    /**
+     * Deletes {@link #PEOPLE_PER_DELETE} people per call. An iteration is a single batch of
+     * {@link #DELETES_PER_ITERATION} calls, so the score is the time of the whole batch, and the rows it deletes are
+     * inserted before the iteration starts.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3, batchSize = DELETES_PER_ITERATION)
+    @Measurement(iterations = 5, batchSize = DELETES_PER_ITERATION)
+    public void delete(Deletable deletable) {
+        repository.delete(deletable.next());
+    }
+
+    /**
+     * The people every call of {@link #delete} in one iteration deletes, inserted in one go before the iteration so
+     * no setup runs between timed calls.
+     */
+    @State(Scope.Thread)
+    public static class Deletable {
+
+        private final Person[][] batches = new Person[DELETES_PER_ITERATION][PEOPLE_PER_DELETE];
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void insert(WriteBenchmark benchmark) {
+            List<Person> people = new ArrayList<>(DELETES_PER_ITERATION * PEOPLE_PER_DELETE);
+            for (Person[] batch : batches) {
+                for (int i = 0; i < batch.length; i++) {
+                    batch[i] = BenchmarkDatabase.family(BenchmarkDatabase.Shape.FLAT, INSERTED);
+                    people.add(batch[i]);
+                }
+            }
+            benchmark.repository.saveAll(people);
+            next = 0;
+        }
+
+        Person[] next() {
+            return batches[next++];
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.erkindilekci.peopledb.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an entity stored in the table {@link #value()}. Read at compile time only: the mapper processor generates an
+ * {@code EntityMapper} named after the entity, e.g. {@code PersonMapper}, next to it.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Table {
+
+    String value();
+}
@@ -0,0 +1,14 @@
+package com.erkindilekci.peopledb.exception;
+
+public class ImportException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ImportException(String message) {
+        super(message);
+    }
+
+    public ImportException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
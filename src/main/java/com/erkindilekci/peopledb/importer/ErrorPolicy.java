@@ -0,0 +1,6 @@
+package com.erkindilekci.peopledb.importer;
+
+public enum ErrorPolicy {
+    SKIP,
+    ABORT
+}
@@ -0,0 +1,58 @@
+package com.erkindilekci.peopledb.importer;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters of a running import, updated by the reader, parser and writer threads.
+ */
+public class ImportProgress {
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder rowsImported = new LongAdder();
+    private final LongAdder rowsSkipped = new LongAdder();
+
+    void linesRead(int lines) {
+        linesRead.add(lines);
+    }
+
+    void rowsImported(int rows) {
+        rowsImported.add(rows);
+    }
+
+    void rowSkipped() {
+        rowsSkipped.increment();
+    }
+
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    public long getRowsImported() {
+        return rowsImported.sum();
+    }
+
+    public long getRowsSkipped() {
+        return rowsSkipped.sum();
+    }
+
+    public Duration getElapsed() {
+        return Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    public ImportResult snapshot() {
+        return new ImportResult(getLinesRead(), getRowsImported(), getRowsSkipped(), getElapsed());
+    }
+
+    @Override
+    public String toString() {
+        ImportResult result = snapshot();
+        return "ImportProgress{" +
+                "linesRead=" + result.linesRead() +
+                ", rowsImported=" + result.rowsImported() +
+                ", rowsSkipped=" + result.rowsSkipped() +
+                ", rowsPerSecond=" + Math.round(result.rowsPerSecond()) +
+                '}';
+    }
+}
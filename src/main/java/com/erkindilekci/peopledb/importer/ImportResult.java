@@ -0,0 +1,11 @@
+package com.erkindilekci.peopledb.importer;
+
+import java.time.Duration;
+
+public record ImportResult(long linesRead, long rowsImported, long rowsSkipped, Duration elapsed) {
+
+    public double rowsPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : rowsImported * 1_000_000_000d / nanos;
+    }
+}
@@ -0,0 +1,270 @@
+package com.erkindilekci.peopledb.importer;
+
+import com.erkindilekci.peopledb.exception.ImportException;
+import com.erkindilekci.peopledb.model.Person;
+import com.erkindilekci.peopledb.repository.ConnectionSource;
+import com.erkindilekci.peopledb.repository.PersonRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Streams the people CSV export into PEOPLE.
+ * <p>
+ * The calling thread reads the file in chunks of {@link #setChunkSize(int) chunkSize} lines and hands them to a pool
+ * of parser threads. Parsed chunks go through a bounded queue to writer threads, each with its own connection, that
+ * store them with {@link PersonRepository#saveAll}, committing every chunk on its own, so the rows counted as
+ * imported are the ones committed. Both hand-offs are bounded, so a slow database throttles parsing
+ * and parsing throttles reading, and memory stays at a few chunks however large the file is.
+ */
+public class PeopleCsvImporter {
+
+    private static final List<Person> END_OF_INPUT = Collections.unmodifiableList(new ArrayList<>());
+
+    private final ConnectionSource connectionSource;
+    private final PersonCsvParser parser = new PersonCsvParser();
+
+    private int parserThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private int writerThreads = 2;
+    private int chunkSize = PersonRepository.DEFAULT_BATCH_SIZE;
+    private int queueCapacity = 8;
+    private int headerLines = 1;
+    private ErrorPolicy errorPolicy = ErrorPolicy.ABORT;
+    private Consumer<ImportProgress> progressListener = progress -> {
+    };
+
+    public PeopleCsvImporter(ConnectionSource connectionSource) {
+        this.connectionSource = connectionSource;
+    }
+
+    public ImportResult importFrom(Path csv) {
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            return importFrom(reader);
+        } catch (IOException e) {
+            throw new ImportException("Unable to read " + csv, e);
+        }
+    }
+
+    public ImportResult importFrom(Reader csv) {
+        ImportProgress progress = new ImportProgress();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        BlockingQueue<List<Person>> parsed = new ArrayBlockingQueue<>(queueCapacity);
+
+        List<Thread> writers = new ArrayList<>(writerThreads);
+        for (int i = 0; i < writerThreads; i++) {
+            Thread writer = new Thread(() -> write(parsed, progress, failure), "people-import-writer-" + i);
+            writer.start();
+            writers.add(writer);
+        }
+
+        AtomicInteger parserNumber = new AtomicInteger();
+        ThreadPoolExecutor parsers = new ThreadPoolExecutor(parserThreads, parserThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+            Thread thread = new Thread(task, "people-import-parser-" + parserNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            read(csv, parsers, parsed, progress, failure);
+        } finally {
+            parsers.shutdown();
+            awaitUninterruptibly(parsers);
+            for (int i = 0; i < writerThreads; i++) {
+                putUninterruptibly(parsed, END_OF_INPUT);
+            }
+            writers.forEach(PeopleCsvImporter::joinUninterruptibly);
+        }
+
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw cause instanceof ImportException importException ? importException : new ImportException("Import failed after " + progress, cause);
+        }
+        return progress.snapshot();
+    }
+
+    private void read(Reader csv, ThreadPoolExecutor parsers, BlockingQueue<List<Person>> parsed, ImportProgress progress, AtomicReference<Throwable> failure) {
+        BufferedReader reader = csv instanceof BufferedReader buffered ? buffered : new BufferedReader(csv);
+        try {
+            for (int i = 0; i < headerLines; i++) {
+                if (reader.readLine() == null) return;
+            }
+
+            long lineNumber = headerLines + 1;
+            List<String> lines = new ArrayList<>(chunkSize);
+            String line;
+            while (failure.get() == null && (line = reader.readLine()) != null) {
+                lines.add(line);
+                if (lines.size() == chunkSize) {
+                    submit(parsers, lines, lineNumber, parsed, progress, failure);
+                    lineNumber += lines.size();
+                    lines = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!lines.isEmpty() && failure.get() == null) {
+                submit(parsers, lines, lineNumber, parsed, progress, failure);
+            }
+        } catch (IOException e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    private void submit(ThreadPoolExecutor parsers, List<String> lines, long firstLineNumber, BlockingQueue<List<Person>> parsed,
+                        ImportProgress progress, AtomicReference<Throwable> failure) {
+        progress.linesRead(lines.size());
+        parsers.execute(() -> {
+            List<Person> people = parse(lines, firstLineNumber, progress, failure);
+            if (!people.isEmpty()) putUninterruptibly(parsed, people);
+        });
+    }
+
+    private List<Person> parse(List<String> lines, long firstLineNumber, ImportProgress progress, AtomicReference<Throwable> failure) {
+        List<Person> people = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size() && failure.get() == null; i++) {
+            try {
+                people.add(parser.parse(lines.get(i)));
+            } catch (RuntimeException e) {
+                if (errorPolicy == ErrorPolicy.ABORT) {
+                    failure.compareAndSet(null, new ImportException("Bad row at line " + (firstLineNumber + i) + ": " + lines.get(i), e));
+                    return List.of();
+                }
+                progress.rowSkipped();
+            }
+        }
+        return people;
+    }
+
+    private void write(BlockingQueue<List<Person>> parsed, ImportProgress progress, AtomicReference<Throwable> failure) {
+        try (Connection connection = connectionSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PersonRepository repository = new PersonRepository(connection)) {
+                repository.setBatchSize(chunkSize);
+                List<Person> people;
+                while ((people = parsed.take()) != END_OF_INPUT) {
+                    // keep draining after a failure so blocked parser threads can finish
+                    if (failure.get() != null) continue;
+                    try {
+                        long saved = repository.saveAll(people);
+                        // saveAll leaves a transaction it did not begin to its caller
+                        connection.commit();
+                        progress.rowsImported((int) saved);
+                    } catch (RuntimeException | SQLException e) {
+                        rollback(connection, e);
+                        failure.compareAndSet(null, e);
+                        continue;
+                    }
+                    progressListener.accept(progress);
+                }
+            }
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+            drain(parsed);
+        }
+    }
+
+    private static void rollback(Connection connection, Exception cause) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private static void drain(BlockingQueue<List<Person>> parsed) {
+        try {
+            List<Person> people;
+            do {
+                people = parsed.take();
+            } while (people != END_OF_INPUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void putUninterruptibly(BlockingQueue<List<Person>> queue, List<Person> people) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(people);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private static void awaitUninterruptibly(ThreadPoolExecutor executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    public void setParserThreads(int parserThreads) {
+        this.parserThreads = requirePositive(parserThreads, "parserThreads");
+    }
+
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = requirePositive(writerThreads, "writerThreads");
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = requirePositive(chunkSize, "chunkSize");
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = requirePositive(queueCapacity, "queueCapacity");
+    }
+
+    public void setHeaderLines(int headerLines) {
+        if (headerLines < 0) throw new IllegalArgumentException("headerLines must not be negative: " + headerLines);
+        this.headerLines = headerLines;
+    }
+
+    public void setErrorPolicy(ErrorPolicy errorPolicy) {
+        this.errorPolicy = errorPolicy;
+    }
+
+    public void setProgressListener(Consumer<ImportProgress> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    private static int requirePositive(int value, String name) {
+        if (value < 1) throw new IllegalArgumentException(name + " must be positive: " + value);
+        return value;
+    }
+}
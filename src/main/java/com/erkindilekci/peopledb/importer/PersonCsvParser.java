@@ -0,0 +1,59 @@
+package com.erkindilekci.peopledb.importer;
+
+import com.erkindilekci.peopledb.model.Person;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Turns one line of the people CSV export into a {@link Person}. Only the columns the PEOPLE table stores are
+ * cut out of the line, so the other twenty-odd columns are never allocated as strings.
+ */
+public class PersonCsvParser {
+
+    private static final int FIRST_NAME = 2;
+    private static final int LAST_NAME = 4;
+    private static final int EMAIL = 6;
+    private static final int DATE_OF_BIRTH = 10;
+    private static final int TIME_OF_BIRTH = 11;
+    private static final int SALARY = 25;
+    private static final int LAST_COLUMN = SALARY;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("M/d/yyyy");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("hh:mm:ss a", Locale.US);
+    private static final ZoneId UTC = ZoneId.of("+0");
+
+    public Person parse(String line) {
+        String[] columns = new String[LAST_COLUMN + 1];
+        int start = 0;
+        for (int column = 0; column <= LAST_COLUMN; column++) {
+            int end = line.indexOf(',', start);
+            if (end < 0) {
+                if (column != LAST_COLUMN) throw new IllegalArgumentException("Expected at least " + (LAST_COLUMN + 1) + " columns but found " + (column + 1));
+                end = line.length();
+            }
+            if (isNeeded(column)) columns[column] = line.substring(start, end);
+            start = end + 1;
+        }
+
+        LocalDate dob = LocalDate.parse(columns[DATE_OF_BIRTH], DATE_FORMAT);
+        LocalTime tob = LocalTime.parse(columns[TIME_OF_BIRTH], TIME_FORMAT);
+        Person person = new Person(columns[FIRST_NAME], columns[LAST_NAME], ZonedDateTime.of(LocalDateTime.of(dob, tob), UTC));
+        person.setSalary(new BigDecimal(columns[SALARY]));
+        person.setEmail(columns[EMAIL]);
+        return person;
+    }
+
+    private static boolean isNeeded(int column) {
+        return switch (column) {
+            case FIRST_NAME, LAST_NAME, EMAIL, DATE_OF_BIRTH, TIME_OF_BIRTH, SALARY -> true;
+            default -> false;
+        };
+    }
+}
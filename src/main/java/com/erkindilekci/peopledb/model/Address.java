@@ -1,13 +1,35 @@
 package com.erkindilekci.peopledb.model;
 
 import com.erkindilekci.peopledb.annotation.Id;
+import com.erkindilekci.peopledb.annotation.Table;
 
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Objects;
+import java.util.Set;
 
+@Table("ADDRESSES")
 public final class Address {
 
+    /**
+     * The columns of an address that {@link #changedFields()} tracks.
+     */
+    public enum Field {
+        STREET_ADDRESS,
+        ADDRESS2,
+        CITY,
+        STATE,
+        POSTCODE,
+        COUNTY,
+        REGION,
+        COUNTRY
+    }
+
+    private static final Set<Field> ALL_FIELDS = Collections.unmodifiableSet(EnumSet.allOf(Field.class));
+    private static final Set<Field> NO_FIELDS = Collections.unmodifiableSet(EnumSet.noneOf(Field.class));
+
     @Id
-    private final Long id;
+    private Long id;
     private final String streetAddress;
     private final String address2;
     private final String city;
@@ -16,9 +38,17 @@ public final class Address {
     private final String country;
     private final String county;
     private final Region region;
+    // bookkeeping for partial updates, not part of the value; always replaced, never mutated
+    private volatile Set<Field> changes;
 
     public Address(@Id Long id, String streetAddress, String address2, String city, String state, String postcode, String country,
                    String county, Region region) {
+        this(id, streetAddress, address2, city, state, postcode, country, county, region, ALL_FIELDS);
+    }
+
+    private Address(Long id, String streetAddress, String address2, String city, String state, String postcode, String country,
+                    String county, Region region, Set<Field> changes) {
+        this.changes = changes;
         this.id = id;
         this.streetAddress = streetAddress;
         this.address2 = address2;
@@ -35,6 +65,14 @@ public final class Address {
         return id;
     }
 
+    /**
+     * Assigns the ID of a new address once it is saved. Package-private so only its generated {@code AddressMapper}
+     * can set it; to everyone else the address is immutable.
+     */
+    void setId(Long id) {
+        this.id = id;
+    }
+
     public String streetAddress() {
         return streetAddress;
     }
@@ -67,6 +105,56 @@ public final class Address {
         return region;
     }
 
+    public Address withStreetAddress(String streetAddress) {
+        return new Address(id, streetAddress, address2, city, state, postcode, country, county, region, changesWith(Field.STREET_ADDRESS));
+    }
+
+    public Address withAddress2(String address2) {
+        return new Address(id, streetAddress, address2, city, state, postcode, country, county, region, changesWith(Field.ADDRESS2));
+    }
+
+    public Address withCity(String city) {
+        return new Address(id, streetAddress, address2, city, state, postcode, country, county, region, changesWith(Field.CITY));
+    }
+
+    public Address withState(String state) {
+        return new Address(id, streetAddress, address2, city, state, postcode, country, county, region, changesWith(Field.STATE));
+    }
+
+    public Address withPostcode(String postcode) {
+        return new Address(id, streetAddress, address2, city, state, postcode, country, county, region, changesWith(Field.POSTCODE));
+    }
+
+    public Address withCountry(String country) {
+        return new Address(id, streetAddress, address2, city, state, postcode, country, county, region, changesWith(Field.COUNTRY));
+    }
+
+    public Address withCounty(String county) {
+        return new Address(id, streetAddress, address2, city, state, postcode, country, county, region, changesWith(Field.COUNTY));
+    }
+
+    public Address withRegion(Region region) {
+        return new Address(id, streetAddress, address2, city, state, postcode, country, county, region, changesWith(Field.REGION));
+    }
+
+    private Set<Field> changesWith(Field field) {
+        EnumSet<Field> changed = EnumSet.of(field);
+        changed.addAll(changes);
+        return Collections.unmodifiableSet(changed);
+    }
+
+    /**
+     * Fields that differ from the address as it was loaded or last written. The {@code with} methods return a copy
+     * that adds the field they set; an address that did not come from a repository counts every field as changed.
+     */
+    public Set<Field> changedFields() {
+        return changes;
+    }
+
+    public void markUnchanged() {
+        changes = NO_FIELDS;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this) return true;
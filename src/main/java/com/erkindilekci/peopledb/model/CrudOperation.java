@@ -7,5 +7,6 @@ public enum CrudOperation {
     FIND_ALL,
     DELETE,
     DELETE_IN,
-    ALL_COUNT
+    ALL_COUNT,
+    FIND_PAGE
 }
@@ -1,16 +1,68 @@
 package com.erkindilekci.peopledb.model;
 
 import com.erkindilekci.peopledb.annotation.Id;
+import com.erkindilekci.peopledb.annotation.Table;
 
 import java.math.BigDecimal;
 import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
+@Table("PEOPLE")
 public class Person {
 
+    /**
+     * The columns of a person that {@link #changedFields()} tracks.
+     */
+    public enum Field {
+        FIRST_NAME,
+        LAST_NAME,
+        DOB,
+        SALARY,
+        EMAIL,
+        HOME_ADDRESS,
+        BUSINESS_ADDRESS
+    }
+
+    /**
+     * The relations a {@link RelationLoader} can load on first access.
+     */
+    public enum Relation {
+        CHILDREN,
+        HOME_ADDRESS,
+        BUSINESS_ADDRESS,
+        PARENT
+    }
+
+    /**
+     * Loads the relations of a person that was read without them. Each method is called at most once per person, the
+     * first time the relation is read or modified.
+     */
+    public interface RelationLoader {
+
+        Collection<Person> loadChildren(Person person);
+
+        Optional<Address> loadHomeAddress(Person person);
+
+        Optional<Address> loadBusinessAddress(Person person);
+
+        Optional<Person> loadParent(Person person);
+
+        /**
+         * The loader for a {@link #copy()} of the person. A loader that holds values of its own for the person must
+         * return one with copies of them, so the copy and the original never share mutable state; the default shares
+         * this loader, which suits loaders that only query.
+         */
+        default RelationLoader copy() {
+            return this;
+        }
+    }
+
     @Id
     private Long id;
 
@@ -23,6 +75,9 @@ public class Person {
     private Optional<Address> businessAddress = Optional.empty();
     private Set<Person> children = new HashSet<>();
     private Optional<Person> parent = Optional.empty();
+    private EnumSet<Field> changes = EnumSet.allOf(Field.class);
+    private RelationLoader relationLoader;
+    private EnumSet<Relation> unloaded = EnumSet.noneOf(Relation.class);
 
     public Person(String firstName, String lastName, ZonedDateTime dob) {
         this.firstName = firstName;
@@ -36,6 +91,98 @@ public class Person {
         this.salary = salary;
     }
 
+    /**
+     * Copies this person together with the family loaded around them: their children, recursively, and their parent,
+     * whose copy has the copy of this person among its children. Nothing mutable is shared with the copy; addresses
+     * are immutable and shared. Relations that are not loaded yet stay unloaded and are loaded separately by the copy.
+     */
+    public Person copy() {
+        Person copy = copyWithChildren(null, null);
+        copy.parent = parent.map(p -> p.copyAround(this, copy));
+        return copy;
+    }
+
+    /**
+     * Copies this person as the parent of {@code copyOfChild}, which takes the place of {@code child}, and their own
+     * parent the same way.
+     */
+    private Person copyAround(Person child, Person copyOfChild) {
+        Person copy = copyWithChildren(child, copyOfChild);
+        copy.parent = parent.map(p -> p.copyAround(this, copy));
+        return copy;
+    }
+
+    /**
+     * Copies this person and their descendants, using {@code copyOfChild} for {@code child}. The copy's parent is left
+     * to the caller.
+     */
+    private Person copyWithChildren(Person child, Person copyOfChild) {
+        Person copy = new Person(id, firstName, lastName, dob, salary);
+        copy.email = email;
+        copy.homeAddress = homeAddress;
+        copy.businessAddress = businessAddress;
+        copy.changes = EnumSet.copyOf(changes);
+        copy.relationLoader = relationLoader == null ? null : relationLoader.copy();
+        copy.unloaded = EnumSet.copyOf(unloaded);
+        for (Person c : children) {
+            copy.adopt(c == child ? copyOfChild : c.copyWithChildren(null, null));
+        }
+        return copy;
+    }
+
+    /**
+     * Makes every relation load through {@code loader} on first access instead of starting out empty.
+     */
+    public void setRelationLoader(RelationLoader loader) {
+        this.relationLoader = loader;
+        this.unloaded = EnumSet.allOf(Relation.class);
+    }
+
+    /**
+     * The loader of the relations that are not loaded yet, or {@code null} once they all are.
+     */
+    public RelationLoader getRelationLoader() {
+        return unloaded.isEmpty() ? null : relationLoader;
+    }
+
+    public boolean isLoaded(Relation relation) {
+        return !unloaded.contains(relation);
+    }
+
+    private void load(Relation relation) {
+        if (!unloaded.remove(relation)) return;
+        try {
+            switch (relation) {
+                case CHILDREN -> relationLoader.loadChildren(this).forEach(this::adopt);
+                case HOME_ADDRESS -> homeAddress = relationLoader.loadHomeAddress(this);
+                case BUSINESS_ADDRESS -> businessAddress = relationLoader.loadBusinessAddress(this);
+                case PARENT -> parent = relationLoader.loadParent(this);
+            }
+        } catch (RuntimeException e) {
+            unloaded.add(relation);
+            throw e;
+        }
+        if (unloaded.isEmpty()) relationLoader = null;
+    }
+
+    private void adopt(Person child) {
+        children.add(child);
+        child.parent = Optional.of(this);
+        child.unloaded.remove(Relation.PARENT);
+    }
+
+    /**
+     * Fields set since the person was loaded or last written. A person that did not come from a repository counts
+     * every field as changed.
+     */
+    public Set<Field> changedFields() {
+        return Collections.unmodifiableSet(changes);
+    }
+
+    public void markUnchanged() {
+        changes.clear();
+    }
+
     public Long getId() {
         return id;
     }
@@ -50,6 +197,7 @@ public class Person {
 
     public void setFirstName(String firstName) {
         this.firstName = firstName;
+        changes.add(Field.FIRST_NAME);
     }
 
     public String getLastName() {
@@ -58,6 +206,7 @@ public class Person {
 
     public void setLastName(String lastName) {
         this.lastName = lastName;
+        changes.add(Field.LAST_NAME);
     }
 
     public ZonedDateTime getDob() {
@@ -66,6 +215,7 @@ public class Person {
 
     public void setDob(ZonedDateTime dob) {
         this.dob = dob;
+        changes.add(Field.DOB);
     }
 
     public BigDecimal getSalary() {
@@ -74,6 +224,7 @@ public class Person {
 
     public void setSalary(BigDecimal salary) {
         this.salary = salary;
+        changes.add(Field.SALARY);
     }
 
     public String getEmail() {
@@ -82,6 +233,7 @@ public class Person {
 
     public void setEmail(String email) {
         this.email = email;
+        changes.add(Field.EMAIL);
     }
 
     @Override
@@ -108,35 +260,45 @@ public class Person {
     }
 
     public Optional<Address> getHomeAddress() {
+        load(Relation.HOME_ADDRESS);
         return homeAddress;
     }
 
     public void setHomeAddress(Address homeAddress) {
+        unloaded.remove(Relation.HOME_ADDRESS);
         this.homeAddress = Optional.ofNullable(homeAddress);
+        changes.add(Field.HOME_ADDRESS);
     }
 
     public Optional<Address> getBusinessAddress() {
+        load(Relation.BUSINESS_ADDRESS);
         return businessAddress;
     }
 
     public void setBusinessAddress(Address businessAddress) {
+        unloaded.remove(Relation.BUSINESS_ADDRESS);
         this.businessAddress = Optional.ofNullable(businessAddress);
+        changes.add(Field.BUSINESS_ADDRESS);
     }
 
     public void addChild(Person child) {
+        load(Relation.CHILDREN);
         children.add(child);
         child.setParent(this);
     }
 
     public Set<Person> getChildren() {
+        load(Relation.CHILDREN);
         return children;
     }
 
     public Optional<Person> getParent() {
+        load(Relation.PARENT);
         return parent;
     }
 
     public void setParent(Person parent) {
+        unloaded.remove(Relation.PARENT);
         this.parent = Optional.ofNullable(parent);
     }
 }
@@ -0,0 +1,38 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.Address;
+import com.erkindilekci.peopledb.model.AddressMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Column indices of an address within one result shape, for unprefixed ADDRESSES columns or for a joined alias such
+ * as {@code HOME_}.
+ */
+final class AddressColumns {
+
+    private final int[] columns;
+
+    AddressColumns(ColumnLayout columns, String aliasPrefix) {
+        this.columns = AddressMapper.INSTANCE.resolve(label -> columns.indexOf(aliasPrefix + label));
+    }
+
+    boolean isPresent() {
+        return columns[0] != ColumnLayout.ABSENT;
+    }
+
+    int idIndex() {
+        return columns[0];
+    }
+
+    /**
+     * @return the address on the current row, or {@code null} if the shape has no such address or an outer join
+     * found none
+     */
+    Address read(ResultSet rs) throws SQLException {
+        Address address = AddressMapper.INSTANCE.read(rs, columns);
+        if (address != null) address.markUnchanged();
+        return address;
+    }
+}
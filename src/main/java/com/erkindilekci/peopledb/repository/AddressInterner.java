@@ -0,0 +1,126 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Makes saving an address reuse the ADDRESSES row that already holds the same content instead of inserting another.
+ * <p>
+ * Recently seen addresses are remembered by natural key in a bounded LRU cache; on a miss the repository looks the
+ * address up by ADDRESSES.CONTENT_HASH, a generated SHA-256 of the natural key with a unique index, and only inserts
+ * when no row matches. {@link AddressRepository#createContentHashIndex()} sets up the column and index.
+ * <p>
+ * Cached IDs are only as current as the transactions that produced them: repositories clear the cache when they roll
+ * back, and anyone rolling back a transaction that saved addresses themselves should call {@link #clear()}.
+ */
+public final class AddressInterner {
+
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+
+    private final int maxSize;
+    private final LinkedHashMap<AddressKey, Long> idsByKey;
+    // the unique content hash gives every row one key, so forgetting a row needs no scan of idsByKey
+    private final Map<Long, AddressKey> keysById = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    private long reused;
+    private long inserted;
+
+    public AddressInterner() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public AddressInterner(int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        this.maxSize = maxSize;
+        this.idsByKey = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<AddressKey, Long> eldest) {
+                if (size() <= AddressInterner.this.maxSize) return false;
+                keysById.remove(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    synchronized Long cachedId(AddressKey key) {
+        Long id = idsByKey.get(key);
+        if (id == null) misses++;
+        else hits++;
+        return id;
+    }
+
+    /**
+     * Remembers the ID of an address the database already held.
+     */
+    synchronized void reused(AddressKey key, long id) {
+        reused++;
+        put(key, id);
+    }
+
+    /**
+     * Remembers the ID of an address that was just inserted.
+     */
+    synchronized void inserted(AddressKey key, long id) {
+        inserted++;
+        put(key, id);
+    }
+
+    private void put(AddressKey key, long id) {
+        Long previous = idsByKey.put(key, id);
+        if (previous != null && previous != id) keysById.remove(previous);
+        AddressKey previousKey = keysById.put(id, key);
+        if (previousKey != null && !previousKey.equals(key)) idsByKey.remove(previousKey);
+    }
+
+    /**
+     * Drops the cached key of a row that was updated or deleted.
+     */
+    synchronized void forget(long id) {
+        AddressKey key = keysById.remove(id);
+        if (key != null) idsByKey.remove(key);
+    }
+
+    public synchronized void clear() {
+        idsByKey.clear();
+        keysById.clear();
+    }
+
+    public synchronized int size() {
+        return idsByKey.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getReused() {
+        return reused;
+    }
+
+    public synchronized long getInserted() {
+        return inserted;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AddressInterner{" +
+                "size=" + idsByKey.size() +
+                ", maxSize=" + maxSize +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", reused=" + reused +
+                ", inserted=" + inserted +
+                '}';
+    }
+}
@@ -0,0 +1,44 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.Address;
+import com.erkindilekci.peopledb.model.Region;
+
+/**
+ * The natural key of an address: every field but the ID.
+ */
+record AddressKey(String streetAddress, String address2, String city, String state, String postcode, String county,
+                  Region region, String country) {
+
+    /**
+     * The SQL expression ADDRESSES.CONTENT_HASH is generated from. Each column is length-prefixed, so no two keys
+     * encode to the same string, and {@link #encoded()} must produce exactly what it hashes.
+     */
+    static final String CONTENT_HASH_EXPRESSION = "HASH('SHA-256', " + String.join(" || '|' || ",
+            encodedColumn("STREET_ADDRESS"), encodedColumn("ADDRESS2"), encodedColumn("CITY"), encodedColumn("STATE"),
+            encodedColumn("POSTCODE"), encodedColumn("COUNTY"), encodedColumn("REGION"), encodedColumn("COUNTRY")) + ")";
+
+    static AddressKey of(Address address) {
+        return new AddressKey(address.streetAddress(), address.address2(), address.city(), address.state(),
+                address.postcode(), address.county(), address.region(), address.country());
+    }
+
+    private static String encodedColumn(String column) {
+        return "COALESCE(LENGTH(" + column + ") || ':' || " + column + ", '-')";
+    }
+
+    String encoded() {
+        StringBuilder encoded = new StringBuilder(128);
+        append(encoded, streetAddress).append('|');
+        append(encoded, address2).append('|');
+        append(encoded, city).append('|');
+        append(encoded, state).append('|');
+        append(encoded, postcode).append('|');
+        append(encoded, county).append('|');
+        append(encoded, region == null ? null : region.toString()).append('|');
+        return append(encoded, country).toString();
+    }
+
+    private static StringBuilder append(StringBuilder encoded, String value) {
+        return value == null ? encoded.append('-') : encoded.append(value.length()).append(':').append(value);
+    }
+}
@@ -1,54 +1,321 @@
 package com.erkindilekci.peopledb.repository;
 
-import com.erkindilekci.peopledb.annotation.SQL;
 import com.erkindilekci.peopledb.model.Address;
+import com.erkindilekci.peopledb.model.AddressMapper;
 import com.erkindilekci.peopledb.model.CrudOperation;
-import com.erkindilekci.peopledb.model.Region;
+
+import com.erkindilekci.peopledb.exception.UnableToSaveException;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class AddressRepository extends CrudRepository<Address> {
 
+    private static final String CONTENT_HASH_INDEX = "ADDRESSES_CONTENT_HASH";
+    private static final String ADD_CONTENT_HASH_SQL = "ALTER TABLE ADDRESSES ADD COLUMN IF NOT EXISTS CONTENT_HASH BINARY(32) GENERATED ALWAYS AS ("
+            + AddressKey.CONTENT_HASH_EXPRESSION + ")";
+    private static final String CREATE_CONTENT_HASH_SCAN_INDEX_SQL = "CREATE INDEX IF NOT EXISTS ADDRESSES_CONTENT_HASH_SCAN ON ADDRESSES(CONTENT_HASH)";
+    private static final String DROP_CONTENT_HASH_SCAN_INDEX_SQL = "DROP INDEX IF EXISTS ADDRESSES_CONTENT_HASH_SCAN";
+    private static final String CREATE_CONTENT_HASH_INDEX_SQL = "CREATE UNIQUE INDEX IF NOT EXISTS " + CONTENT_HASH_INDEX + " ON ADDRESSES(CONTENT_HASH)";
+    private static final String REPOINT_HOME_ADDRESSES_SQL = """
+            UPDATE PEOPLE SET HOME_ADDRESS = (
+              SELECT MIN(KEPT.ID) FROM ADDRESSES AS A JOIN ADDRESSES AS KEPT ON KEPT.CONTENT_HASH = A.CONTENT_HASH
+              WHERE A.ID = PEOPLE.HOME_ADDRESS)
+            WHERE HOME_ADDRESS IS NOT NULL
+            """;
+    private static final String REPOINT_BUSINESS_ADDRESSES_SQL = """
+            UPDATE PEOPLE SET BUSINESS_ADDRESS = (
+              SELECT MIN(KEPT.ID) FROM ADDRESSES AS A JOIN ADDRESSES AS KEPT ON KEPT.CONTENT_HASH = A.CONTENT_HASH
+              WHERE A.ID = PEOPLE.BUSINESS_ADDRESS)
+            WHERE BUSINESS_ADDRESS IS NOT NULL
+            """;
+    private static final String DELETE_DUPLICATES_SQL = """
+            DELETE FROM ADDRESSES AS A
+            WHERE EXISTS (SELECT 1 FROM ADDRESSES AS KEPT WHERE KEPT.CONTENT_HASH = A.CONTENT_HASH AND KEPT.ID < A.ID)
+            """;
+    private static final String FIND_ALL_BY_ID_SQL = AddressMapper.FIND_ALL_SQL + " WHERE ID = ANY(?)";
+    private static final String FIND_ID_BY_CONTENT_SQL = "SELECT ID FROM ADDRESSES WHERE CONTENT_HASH = HASH('SHA-256', ?)";
+    private static final String FIND_IDS_BY_CONTENT_SQL = """
+            SELECT A.ID, K.ENCODED FROM UNNEST(?) AS K(ENCODED)
+            JOIN ADDRESSES AS A ON A.CONTENT_HASH = HASH('SHA-256', K.ENCODED)
+            """;
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private static final PartialUpdate<Address, Address.Field> PARTIAL_UPDATE = PartialUpdate.builder(AddressMapper.INSTANCE, Address.Field.class)
+            .tracking(Address::changedFields, Address::markUnchanged)
+            .build();
+
+    private volatile AddressInterner interner;
+
     public AddressRepository(Connection connection) {
         super(connection);
     }
 
+    public AddressRepository(ConnectionPool pool) {
+        super(pool);
+    }
+
+    AddressRepository(ConnectionProvider connections) {
+        super(connections);
+    }
+
+    /**
+     * Loads the addresses with the given IDs in one query, in no particular order; IDs without an address are skipped.
+     */
+    List<Address> findAllById(Long[] ids) {
+        return query(FIND_ALL_BY_ID_SQL, ps -> ps.setObject(1, ids));
+    }
+
+    @Override
+    protected String getTableName() {
+        return AddressMapper.TABLE;
+    }
+
+    @Override
+    EntityMapper<Address> entityMapper() {
+        return AddressMapper.INSTANCE;
+    }
+
+    @Override
+    PartialUpdate<Address, Address.Field> partialUpdate() {
+        return PARTIAL_UPDATE;
+    }
+
+    /**
+     * Adds the generated CONTENT_HASH column and its unique index to ADDRESSES, which {@link AddressInterner} relies
+     * on. Rows that already share their content are merged first: people are pointed at the oldest copy and the
+     * others are deleted. Afterwards the database rejects a second row with the same content, so save addresses
+     * through a repository with an interner. Does nothing if the index exists.
+     */
+    public void createContentHashIndex() {
+        try (ConnectionProvider.Lease lease = connections.lease()) {
+            Connection connection = lease.connection();
+            try (ResultSet indexes = connection.getMetaData().getIndexInfo(null, null, "ADDRESSES", true, false)) {
+                while (indexes.next()) {
+                    if (CONTENT_HASH_INDEX.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) return;
+                }
+            }
+
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(ADD_CONTENT_HASH_SQL);
+                statement.execute(CREATE_CONTENT_HASH_SCAN_INDEX_SQL);
+                statement.executeUpdate(REPOINT_HOME_ADDRESSES_SQL);
+                statement.executeUpdate(REPOINT_BUSINESS_ADDRESSES_SQL);
+                statement.executeUpdate(DELETE_DUPLICATES_SQL);
+                statement.execute(DROP_CONTENT_HASH_SCAN_INDEX_SQL);
+                statement.execute(CREATE_CONTENT_HASH_INDEX_SQL);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                if (autoCommit) connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Makes {@link #save} and {@link #saveAll} reuse the row that already holds an address's content, or go back to
+     * always inserting when {@code null}. Requires {@link #createContentHashIndex()}. A reused row is shared by
+     * everyone at that address, so with an interner {@link #update} never writes over a row either.
+     */
+    public void setInterner(AddressInterner interner) {
+        this.interner = interner;
+    }
+
+    public AddressInterner getInterner() {
+        return interner;
+    }
+
     @Override
-    Address extractEntityFromResultSet(ResultSet rs) throws SQLException {
-        long id = rs.getLong("ID");
-        String streetAddress = rs.getString("STREET_ADDRESS");
-        String address2 = rs.getString("ADDRESS2");
-        String city = rs.getString("CITY");
-        String state = rs.getString("STATE");
-        String postcode = rs.getString("POSTCODE");
-        String county = rs.getString("COUNTY");
-        String region = rs.getString("REGION");
-        String country = rs.getString("COUNTRY");
-        Address address = new Address(id, streetAddress, address2, city, state, postcode, county, region, Region.valueOf(country));
+    public Address save(Address address) throws UnableToSaveException {
+        AddressInterner interner = this.interner;
+        if (interner == null || address.id() != null) return super.save(address);
+
+        AddressKey key = AddressKey.of(address);
+        Long id = interner.cachedId(key);
+        try (ConnectionProvider.Lease lease = connections.lease()) {
+            if (id == null) id = findIdByContent(lease, key, interner);
+            if (id == null) id = insert(lease, address, key, interner);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new UnableToSaveException("Tried to save entity: " + address);
+        }
+        assignId(address, id);
         return address;
     }
 
+    /**
+     * With an interner, a changed address is not written over its row, which other people may share. It takes the ID
+     * of the row holding its new content instead, inserted if no row does, and whoever refers to it must be updated to
+     * point there, as {@link PersonRepository#update} does for the addresses it was given.
+     */
+    @Override
+    public void update(Address address) {
+        if (interner == null) super.update(address);
+        else relocate(address);
+    }
+
+    @Override
+    void updateAll(List<Address> addresses) throws SQLException {
+        if (interner == null) super.updateAll(addresses);
+        else addresses.forEach(this::relocate);
+    }
+
+    private void relocate(Address address) {
+        if (address.changedFields().isEmpty()) return;
+        Long previousId = address.id();
+        setIdByAnnotation(address, null);
+        try {
+            save(address);
+        } catch (RuntimeException e) {
+            setIdByAnnotation(address, previousId);
+            throw e;
+        }
+    }
+
+    private Long findIdByContent(ConnectionProvider.Lease lease, AddressKey key, AddressInterner interner) throws SQLException {
+        PreparedStatement ps = lease.statementCache().prepare(FIND_ID_BY_CONTENT_SQL);
+        ps.setString(1, key.encoded());
+        try (ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) return null;
+            long id = rs.getLong(1);
+            interner.reused(key, id);
+            return id;
+        }
+    }
+
+    /**
+     * Inserts the address, or picks up the row a concurrent writer inserted first with the same content.
+     */
+    private long insert(ConnectionProvider.Lease lease, Address address, AddressKey key, AddressInterner interner) throws SQLException {
+        PreparedStatement ps = lease.statementCache().prepare(AddressMapper.INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+        mapForSave(address, ps);
+        try {
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            Long id = UNIQUE_VIOLATION.equals(e.getSQLState()) ? findIdByContent(lease, key, interner) : null;
+            if (id == null) throw e;
+            return id;
+        }
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            if (!rs.next()) throw new SQLException("Missing generated key for entity: " + address);
+            long id = rs.getLong(1);
+            interner.inserted(key, id);
+            return id;
+        }
+    }
+
+    /**
+     * With an interner, resolves every distinct address content with at most one cache lookup, then one query for
+     * all cache misses and one batch insert for the contents the database does not hold yet.
+     */
     @Override
-    @SQL(operationType = CrudOperation.SAVE, value = """
-            INSERT INTO ADDRESSES (STREET_ADDRESS, ADDRESS2, CITY, STATE, POSTCODE, COUNTY, REGION, COUNTRY)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
-            """)
-    void mapForSave(Address entity, PreparedStatement ps) throws SQLException {
-        ps.setString(1, entity.streetAddress());
-        ps.setString(2, entity.address2());
-        ps.setString(3, entity.city());
-        ps.setString(4, entity.state());
-        ps.setString(5, entity.postcode());
-        ps.setString(6, entity.county());
-        ps.setString(7, entity.region().toString());
-        ps.setString(8, entity.country());
+    public long saveAll(Iterable<? extends Address> addresses) throws UnableToSaveException {
+        AddressInterner interner = this.interner;
+        if (interner == null) return super.saveAll(addresses);
+
+        Map<AddressKey, List<Address>> unsaved = new LinkedHashMap<>();
+        List<Address> withIds = new ArrayList<>();
+        long saved = 0;
+        for (Address address : addresses) {
+            if (address.id() != null) {
+                withIds.add(address);
+                continue;
+            }
+            unsaved.computeIfAbsent(AddressKey.of(address), k -> new ArrayList<>()).add(address);
+            saved++;
+        }
+        if (!withIds.isEmpty()) saved += super.saveAll(withIds);
+        if (unsaved.isEmpty()) return saved;
+
+        Map<String, AddressKey> missing = new HashMap<>();
+        for (Map.Entry<AddressKey, List<Address>> entry : unsaved.entrySet()) {
+            Long id = interner.cachedId(entry.getKey());
+            if (id != null) assignIds(entry.getValue(), id);
+            else missing.put(entry.getKey().encoded(), entry.getKey());
+        }
+        if (missing.isEmpty()) return saved;
+
+        try (ConnectionProvider.Lease lease = connections.lease()) {
+            PreparedStatement ps = lease.statementCache().prepare(FIND_IDS_BY_CONTENT_SQL);
+            ps.setObject(1, missing.keySet().toArray(new String[0]));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    AddressKey key = missing.remove(rs.getString(2));
+                    interner.reused(key, rs.getLong(1));
+                    assignIds(unsaved.get(key), rs.getLong(1));
+                }
+            }
+            if (missing.isEmpty()) return saved;
+
+            List<Address> inserts = new ArrayList<>(missing.size());
+            for (AddressKey key : missing.values()) {
+                inserts.add(unsaved.get(key).get(0));
+            }
+            try {
+                super.saveAll(inserts);
+            } catch (UnableToSaveException e) {
+                // most likely a concurrent writer inserted some of the contents first; one row at a time picks those up
+                for (Address address : inserts) {
+                    setIdByAnnotation(address, null);
+                    AddressKey key = AddressKey.of(address);
+                    Long id = findIdByContent(lease, key, interner);
+                    assignIds(unsaved.get(key), id != null ? id : insert(lease, address, key, interner));
+                }
+                return saved;
+            }
+            for (Address inserted : inserts) {
+                AddressKey key = AddressKey.of(inserted);
+                interner.inserted(key, inserted.id());
+                assignIds(unsaved.get(key), inserted.id());
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new UnableToSaveException("Tried to save batch of " + unsaved.size() + " distinct addresses");
+        }
+        return saved;
+    }
+
+    private void assignIds(Collection<Address> addresses, long id) {
+        for (Address address : addresses) {
+            assignId(address, id);
+        }
+    }
+
+    private void assignId(Address address, long id) {
+        setIdByAnnotation(address, id);
+        address.markUnchanged();
+    }
+
+    @Override
+    protected void invalidated(Address address) {
+        AddressInterner interner = this.interner;
+        if (interner != null && address.id() != null) interner.forget(address.id());
     }
 
     @Override
-    void mapForUpdate(Address entity, PreparedStatement ps) throws SQLException {
+    protected void invalidatedAll() {
+        AddressInterner interner = this.interner;
+        if (interner != null) interner.clear();
+    }
 
+    @Override
+    protected void afterRollback() {
+        AddressInterner interner = this.interner;
+        if (interner != null) interner.clear();
     }
 }
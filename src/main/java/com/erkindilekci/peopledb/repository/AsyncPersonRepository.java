@@ -0,0 +1,18 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.Person;
+
+/**
+ * Non-blocking front for a {@link PersonRepository}. Build the repository on a {@link ConnectionPool} and keep
+ * {@code maxInFlight} at or below the pool size, so concurrent operations never wait on the pool.
+ */
+public class AsyncPersonRepository extends AsyncRepository<Person> {
+
+    public AsyncPersonRepository(PersonRepository repository, int maxInFlight) {
+        super(repository, maxInFlight);
+    }
+
+    public AsyncPersonRepository(PersonRepository repository, ConnectionPool pool) {
+        this(repository, pool.getMaxSize());
+    }
+}
@@ -0,0 +1,130 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the operations of a repository off the calling thread and returns {@link CompletableFuture}s.
+ * <p>
+ * Each operation runs on its own virtual thread when the runtime supports them (Java 21+). A semaphore caps the number
+ * of operations talking to the database at once, so thousands of pending lookups queue up cheaply instead of all
+ * asking the connection pool for a connection. Without virtual threads, operations run on a fixed pool of
+ * {@code maxInFlight} platform threads instead, so waiting operations queue as tasks rather than each parking a
+ * thread of its own.
+ */
+public class AsyncRepository<T> implements AutoCloseable {
+
+    private final CrudRepository<T> repository;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final ExecutorService executor;
+
+    AsyncRepository(CrudRepository<T> repository, int maxInFlight) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        this.repository = repository;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.executor = newExecutor(maxInFlight);
+    }
+
+    public CompletableFuture<T> save(T entity) {
+        return submit(() -> repository.save(entity));
+    }
+
+    public CompletableFuture<Optional<T>> findById(Long id) {
+        return submit(() -> repository.findById(id));
+    }
+
+    public CompletableFuture<List<T>> findAll() {
+        return submit(repository::findAll);
+    }
+
+    public CompletableFuture<Long> count() {
+        return submit(repository::count);
+    }
+
+    public CompletableFuture<Void> delete(T entity) {
+        return submit(() -> {
+            repository.delete(entity);
+            return null;
+        });
+    }
+
+    @SafeVarargs
+    public final CompletableFuture<Void> delete(T... entities) {
+        // copied element by element, as handing the array itself on could let it escape
+        List<T> list = new ArrayList<>(entities.length);
+        for (T entity : entities) {
+            list.add(entity);
+        }
+        return delete(list);
+    }
+
+    public CompletableFuture<Void> delete(Collection<? extends T> entities) {
+        return submit(() -> {
+            repository.delete(entities);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> update(T entity) {
+        return submit(() -> {
+            repository.update(entity);
+            return null;
+        });
+    }
+
+    <R> CompletableFuture<R> submit(Supplier<R> operation) {
+        return CompletableFuture.supplyAsync(() -> {
+            inFlight.acquireUninterruptibly();
+            try {
+                return operation.get();
+            } finally {
+                inFlight.release();
+            }
+        }, executor);
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Stops accepting operations; already submitted ones still complete. The wrapped repository is left open.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static ExecutorService newExecutor(int maxInFlight) {
+        try {
+            return (ExecutorService) MethodHandles.publicLookup()
+                    .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class))
+                    .invoke();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            AtomicInteger threads = new AtomicInteger();
+            return Executors.newFixedThreadPool(maxInFlight, runnable -> {
+                Thread thread = new Thread(runnable, "async-repository-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to create executor", e);
+        }
+    }
+}
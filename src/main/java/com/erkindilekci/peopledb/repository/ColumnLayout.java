@@ -0,0 +1,37 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The column labels of a result shape, read from its metadata once when a {@link RowMapper} is compiled.
+ */
+final class ColumnLayout {
+
+    static final int ABSENT = 0;
+
+    private final Map<String, Integer> indexByLabel;
+
+    ColumnLayout(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        indexByLabel = new HashMap<>(columnCount * 2);
+        for (int colIdx = 1; colIdx <= columnCount; colIdx++) {
+            indexByLabel.putIfAbsent(metaData.getColumnLabel(colIdx), colIdx);
+        }
+    }
+
+    /**
+     * @return the 1-based index of the column, or {@link #ABSENT} if the shape does not have it
+     */
+    int indexOf(String label) {
+        return indexByLabel.getOrDefault(label, ABSENT);
+    }
+
+    int require(String label) throws SQLException {
+        int index = indexOf(label);
+        if (index == ABSENT) throw new SQLException("Result set has no column " + label);
+        return index;
+    }
+}
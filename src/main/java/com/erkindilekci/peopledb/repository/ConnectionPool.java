@@ -0,0 +1,273 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of connections opened from a {@link ConnectionSource}.
+ * <p>
+ * At most {@code maxSize} connections exist at once; a caller that finds them all checked out waits up to the
+ * acquire timeout and then gets an {@link SQLTransientConnectionException}. Idle connections are validated before
+ * they are handed out again and replaced if broken. A connection comes back in auto-commit mode with any open
+ * transaction rolled back. Each pooled connection keeps its own {@link StatementCache}, so repositories built on the
+ * pool reuse prepared statements across checkouts.
+ * <p>
+ * Repositories created with a pool check out a connection per operation, and can be shared between threads.
+ */
+public final class ConnectionPool implements ConnectionSource, ConnectionProvider {
+
+    public static final Duration DEFAULT_ACQUIRE_TIMEOUT = Duration.ofSeconds(30);
+    public static final int DEFAULT_VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final ConnectionSource factory;
+    private final int maxSize;
+    private final long acquireTimeoutNanos;
+    private final int validationTimeoutSeconds;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final ThreadLocal<ThreadLease> leases = new ThreadLocal<>();
+
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private volatile boolean closed;
+
+    public ConnectionPool(ConnectionSource factory, int maxSize) {
+        this(factory, maxSize, DEFAULT_ACQUIRE_TIMEOUT, DEFAULT_VALIDATION_TIMEOUT_SECONDS);
+    }
+
+    public ConnectionPool(ConnectionSource factory, int maxSize, Duration acquireTimeout, int validationTimeoutSeconds) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Checks out a connection for the caller. Closing it returns it to the pool.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        PooledConnection pooled = borrow();
+        ReturnOnClose handler = new ReturnOnClose(pooled);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    @Override
+    public Lease lease() throws SQLException {
+        ThreadLease lease = leases.get();
+        if (lease == null) {
+            lease = new ThreadLease(borrow());
+            leases.set(lease);
+        }
+        lease.depth++;
+        return lease;
+    }
+
+    private PooledConnection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTransientConnectionException("Timed out after " + Duration.ofNanos(acquireTimeoutNanos)
+                        + " waiting for one of " + maxSize + " connections");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isValid(pooled)) return pooled;
+                discard(pooled);
+            }
+            Connection connection = factory.getConnection();
+            open.incrementAndGet();
+            created.incrementAndGet();
+            return new PooledConnection(connection);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        try {
+            if (closed || pooled.connection.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        discarded.incrementAndGet();
+        open.decrementAndGet();
+        pooled.statementCache.close();
+        try {
+            pooled.connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getOpenConnections() {
+        return open.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getActiveConnections() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public long getCreatedConnections() {
+        return created.get();
+    }
+
+    public long getDiscardedConnections() {
+        return discarded.get();
+    }
+
+    public long getAcquireTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * Closes the idle connections now and every checked-out connection once it is returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool{" +
+                "maxSize=" + maxSize +
+                ", open=" + getOpenConnections() +
+                ", active=" + getActiveConnections() +
+                ", idle=" + getIdleConnections() +
+                ", timeouts=" + getAcquireTimeouts() +
+                '}';
+    }
+
+    private static final class PooledConnection {
+
+        private final Connection connection;
+        private final StatementCache statementCache;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.statementCache = new StatementCache(connection);
+        }
+    }
+
+    private final class ThreadLease implements Lease {
+
+        private final PooledConnection pooled;
+        private int depth;
+
+        private ThreadLease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Connection connection() {
+            return pooled.connection;
+        }
+
+        @Override
+        public StatementCache statementCache() {
+            return pooled.statementCache;
+        }
+
+        @Override
+        public void close() {
+            if (--depth > 0) return;
+            leases.remove();
+            giveBack(pooled);
+        }
+    }
+
+    private final class ReturnOnClose implements InvocationHandler {
+
+        private final PooledConnection pooled;
+        private boolean returned;
+
+        private ReturnOnClose(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        giveBack(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.connection;
+                default:
+                    if (returned) throw new SQLException("Connection has been returned to the pool");
+                    try {
+                        return method.invoke(pooled.connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
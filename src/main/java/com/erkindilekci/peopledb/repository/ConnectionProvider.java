@@ -0,0 +1,26 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Where a repository gets the connection for one operation. Leases are reentrant per thread: an operation that calls
+ * into another repository operation, e.g. save saving a person's addresses and children, runs on the same connection.
+ */
+interface ConnectionProvider extends AutoCloseable {
+
+    Lease lease() throws SQLException;
+
+    @Override
+    void close();
+
+    interface Lease extends AutoCloseable {
+
+        Connection connection();
+
+        StatementCache statementCache();
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,14 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Hands out connections to code that needs more than the single connection a repository is built with.
+ * The caller owns and closes every connection it gets.
+ */
+@FunctionalInterface
+public interface ConnectionSource {
+
+    Connection getConnection() throws SQLException;
+}
@@ -1,56 +1,90 @@
 package com.erkindilekci.peopledb.repository;
 
-import com.erkindilekci.peopledb.annotation.Id;
-import com.erkindilekci.peopledb.annotation.MultiSQL;
-import com.erkindilekci.peopledb.annotation.SQL;
 import com.erkindilekci.peopledb.exception.UnableToSaveException;
 import com.erkindilekci.peopledb.model.CrudOperation;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-abstract class CrudRepository<T> {
+abstract class CrudRepository<T> implements AutoCloseable {
 
-    protected Connection connection;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    protected final ConnectionProvider connections;
+
+    private final RepositoryMetadata<T> metadata;
+
+    private final Map<String, RowMapper<T>> rowMappers = new ConcurrentHashMap<>();
+
+    private final Map<String, RowReader<?>> rowReaders = new ConcurrentHashMap<>();
+
+    // keyed by the columns, so projections built on every call still share one entry
+    private final Map<List<String>, ProjectionSql> projectionSql = new ConcurrentHashMap<>();
+
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+    private volatile EntityCache<T> entityCache;
+
+    private volatile RepositoryMetrics metrics;
+
+    private volatile SlowQueryLog slowQueryLog;
+    private volatile IndexAdvisor indexAdvisor;
+
+    private final ThreadLocal<OperationProbe.Stack> probes = ThreadLocal.withInitial(OperationProbe.Stack::new);
 
     public CrudRepository(Connection connection) {
-        this.connection = connection;
+        this(new SingleConnectionProvider(connection));
     }
 
-    private String getSqlByAnnotation(CrudOperation operationType, Supplier<String> sqlGetter) {
-        Stream<SQL> multiSqlStream = Arrays.stream(this.getClass().getDeclaredMethods())
-                .filter(m -> m.isAnnotationPresent(MultiSQL.class))
-                .map(m -> m.getAnnotation(MultiSQL.class))
-                .flatMap(msql -> Arrays.stream(msql.value()));
-
-        Stream<SQL> sqlStream = Arrays.stream(this.getClass().getDeclaredMethods())
-                .filter(m -> m.isAnnotationPresent(SQL.class))
-                .map(m -> m.getAnnotation(SQL.class));
+    /**
+     * Checks out a connection from the pool for every operation instead of using one fixed connection.
+     */
+    public CrudRepository(ConnectionPool pool) {
+        this((ConnectionProvider) pool);
+    }
 
-        return Stream.concat(multiSqlStream, sqlStream)
-                .filter(a -> a.operationType().equals(operationType))
-                .map(SQL::value).findFirst().orElseGet(sqlGetter);
+    CrudRepository(ConnectionProvider connections) {
+        this.connections = connections;
+        this.metadata = RepositoryMetadata.of(this);
     }
 
     public T save(T entity) throws UnableToSaveException {
-        try {
-            PreparedStatement ps = connection.prepareStatement(getSqlByAnnotation(CrudOperation.SAVE, this::getSaveSql), Statement.RETURN_GENERATED_KEYS);
+        try (OperationProbe probe = probe(CrudOperation.SAVE);
+             ConnectionProvider.Lease lease = connections.lease()) {
+            PreparedStatement ps = lease.statementCache().prepare(metadata.sql(CrudOperation.SAVE), Statement.RETURN_GENERATED_KEYS);
+            probe.prepared(lease.statementCache());
             mapForSave(entity, ps);
+            probe.mapped(0);
 
-            ps.executeUpdate();
+            probe.wrote(ps.executeUpdate());
+            probe.executed();
 
-            ResultSet rs = ps.getGeneratedKeys();
-            while (rs.next()) {
-                long id = rs.getLong(1);
+            Long id = null;
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (rs.next()) id = rs.getLong(1);
+            }
+            // postSave may save children through this same statement, so the keys must be read first
+            if (id != null) {
                 setIdByAnnotation(entity, id);
+                markUnchanged(entity);
+                invalidateRelated(entity);
                 postSave(entity, id);
             }
+            probe.succeeded();
         } catch (SQLException e) {
             e.printStackTrace();
             throw new UnableToSaveException("Tried to save entity: " + entity);
@@ -59,54 +93,581 @@ abstract class CrudRepository<T> {
         return entity;
     }
 
+    /**
+     * Saves the entities in chunks of {@link #getBatchSize()} rows, each sent as one JDBC batch. Generated IDs are
+     * assigned in iteration order. On a connection in auto-commit mode every chunk runs in a transaction of its own,
+     * so only the chunk in flight is lost if a later one fails. Otherwise the caller owns the transaction, e.g. one
+     * it began itself or a {@link Session#flush()}: saveAll neither commits nor rolls back, and the saved rows only
+     * persist once the caller commits, which it must also roll back if saveAll fails.
+     *
+     * @return the number of entities saved
+     */
+    public long saveAll(Iterable<? extends T> entities) throws UnableToSaveException {
+        return saveAll(entities, true);
+    }
+
+    /**
+     * @param cascade whether to call {@link #postSaveBatch} for every chunk
+     */
+    long saveAll(Iterable<? extends T> entities, boolean cascade) throws UnableToSaveException {
+        List<T> chunk = new ArrayList<>(Math.min(batchSize, 1024));
+        long saved = 0;
+        for (T entity : entities) {
+            chunk.add(entity);
+            if (chunk.size() == batchSize) {
+                saved += saveBatch(chunk, cascade);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) saved += saveBatch(chunk, cascade);
+        return saved;
+    }
+
+    private int saveBatch(List<T> chunk, boolean cascade) throws UnableToSaveException {
+        try (OperationProbe probe = probe(CrudOperation.SAVE);
+             ConnectionProvider.Lease lease = connections.lease()) {
+            Connection connection = lease.connection();
+            boolean ownsTransaction = connection.getAutoCommit();
+            if (ownsTransaction) connection.setAutoCommit(false);
+            try {
+                preSaveBatch(chunk);
+
+                PreparedStatement ps = lease.statementCache().prepare(metadata.sql(CrudOperation.SAVE), Statement.RETURN_GENERATED_KEYS);
+                probe.prepared(lease.statementCache());
+                for (T entity : chunk) {
+                    mapForSave(entity, ps);
+                    ps.addBatch();
+                }
+                probe.mapped(0);
+                ps.executeBatch();
+                probe.executed();
+                probe.wrote(chunk.size());
+
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    for (T entity : chunk) {
+                        if (!rs.next()) throw new SQLException("Missing generated key for entity: " + entity);
+                        setIdByAnnotation(entity, rs.getLong(1));
+                        markUnchanged(entity);
+                    }
+                }
+
+                if (cascade) postSaveBatch(chunk);
+                if (ownsTransaction) connection.commit();
+                chunk.forEach(this::invalidateRelated);
+                probe.succeeded();
+            } catch (SQLException e) {
+                if (ownsTransaction) rollbackQuietly(connection);
+                afterRollback();
+                throw e;
+            } finally {
+                if (ownsTransaction) connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new UnableToSaveException("Tried to save batch of " + chunk.size() + " entities");
+        }
+        return chunk.size();
+    }
+
+    /**
+     * Updates the entities in JDBC batches of {@link #getBatchSize()} rows without committing or marking them
+     * unchanged. With a {@link #partialUpdate()} the entities are grouped by the set of columns they changed, one
+     * batch per group, and unchanged entities are skipped.
+     */
+    void updateAll(List<T> entities) throws SQLException {
+        PartialUpdate<T, ?> partial = partialUpdate();
+        try (OperationProbe probe = probe(CrudOperation.UPDATE);
+             ConnectionProvider.Lease lease = connections.lease()) {
+            preUpdate(entities);
+            if (partial == null) {
+                updateBatch(lease, probe, metadata.sql(CrudOperation.UPDATE), entities, (entity, ps) -> {
+                    mapForUpdate(entity, ps);
+                    return metadata.updateIdParameterIndex();
+                });
+                probe.succeeded();
+                return;
+            }
+            Map<Integer, List<T>> entitiesByMask = new LinkedHashMap<>();
+            for (T entity : entities) {
+                int mask = partial.changedMask(entity);
+                if (mask != 0) entitiesByMask.computeIfAbsent(mask, m -> new ArrayList<>()).add(entity);
+            }
+            for (Map.Entry<Integer, List<T>> group : entitiesByMask.entrySet()) {
+                int mask = group.getKey();
+                updateBatch(lease, probe, partial.sql(mask), group.getValue(), (entity, ps) -> partial.bind(entity, mask, ps));
+            }
+            probe.succeeded();
+        } finally {
+            entities.forEach(this::invalidate);
+        }
+    }
+
+    @FunctionalInterface
+    private interface UpdateBinder<T> {
+        /**
+         * @return the index of the ID parameter
+         */
+        int bind(T entity, PreparedStatement ps) throws SQLException;
+    }
+
+    private void updateBatch(ConnectionProvider.Lease lease, OperationProbe probe, String sql, List<T> entities,
+                             UpdateBinder<T> binder) throws SQLException {
+        PreparedStatement ps = lease.statementCache().prepare(sql);
+        probe.prepared(lease.statementCache());
+        int pending = 0;
+        for (T entity : entities) {
+            ps.setLong(binder.bind(entity, ps), getIdByAnnotation(entity));
+            ps.addBatch();
+            if (++pending == batchSize) {
+                probe.mapped(0);
+                ps.executeBatch();
+                probe.executed();
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            probe.mapped(0);
+            ps.executeBatch();
+            probe.executed();
+        }
+        probe.wrote(entities.size());
+    }
+
+    /**
+     * Deletes the entities in JDBC batches of {@link #getBatchSize()} rows without committing.
+     */
+    void deleteAll(List<T> entities) throws SQLException {
+        try (OperationProbe probe = probe(CrudOperation.DELETE_IN);
+             ConnectionProvider.Lease lease = connections.lease()) {
+            PreparedStatement ps = lease.statementCache().prepare(metadata.sql(CrudOperation.DELETE));
+            probe.prepared(lease.statementCache());
+            int pending = 0;
+            for (T entity : entities) {
+                ps.setLong(1, getIdByAnnotation(entity));
+                ps.addBatch();
+                if (++pending == batchSize) {
+                    ps.executeBatch();
+                    probe.executed();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                ps.executeBatch();
+                probe.executed();
+            }
+            probe.wrote(entities.size());
+            probe.succeeded();
+        } finally {
+            entities.forEach(this::invalidate);
+        }
+    }
+
+    /**
+     * Opens a unit of work that tracks entities of this repository and writes them in one {@link Session#flush()}.
+     */
+    public Session<T> openSession() {
+        return new Session<>(this);
+    }
+
+    static void rollbackQuietly(Connection connection) {
+        try {
+            if (!connection.getAutoCommit()) connection.rollback();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Serves {@link #findById} from {@code entityCache} before querying, or stops caching when {@code null}. Writes
+     * through this repository invalidate the entries they affect; writes made elsewhere are only picked up once an
+     * entry is evicted or expires.
+     */
+    public void setEntityCache(EntityCache<T> entityCache) {
+        this.entityCache = entityCache;
+    }
+
+    public EntityCache<T> getEntityCache() {
+        return entityCache;
+    }
+
+    /**
+     * Starts recording latencies and counters per operation into {@code metrics}; {@code null} stops recording.
+     */
+    public void setMetrics(RepositoryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public RepositoryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Starts logging statements that take at least the threshold of {@code slowQueryLog} to execute; {@code null}
+     * stops logging.
+     */
+    public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    /**
+     * Starts showing every statement this repository executes to {@code indexAdvisor}, which may be shared with other
+     * repositories; {@code null} stops.
+     */
+    public void setIndexAdvisor(IndexAdvisor indexAdvisor) {
+        this.indexAdvisor = indexAdvisor;
+    }
+
+    public IndexAdvisor getIndexAdvisor() {
+        return indexAdvisor;
+    }
+
+    /**
+     * Starts measuring an operation; close the probe when it ends.
+     */
+    OperationProbe probe(CrudOperation operation) {
+        RepositoryMetrics metrics = this.metrics;
+        SlowQueryLog slowQueryLog = this.slowQueryLog;
+        IndexAdvisor indexAdvisor = this.indexAdvisor;
+        if (metrics == null && slowQueryLog == null && indexAdvisor == null) return OperationProbe.DISABLED;
+        OperationProbe probe = probes.get().push();
+        probe.begin(operation, metrics, slowQueryLog, indexAdvisor);
+        return probe;
+    }
+
     public Optional<T> findById(Long id) {
+        EntityCache<T> cache = entityCache;
+        if (cache == null) return Optional.ofNullable(loadById(id));
+
+        T cached = cache.get(id);
+        if (cached != null) return Optional.of(copyEntity(cached));
+
+        long loadToken = cache.beginLoad();
+        T entity = loadById(id);
+        if (entity != null) cache.putIfNotInvalidated(id, copyEntity(entity), loadToken);
+        return Optional.ofNullable(entity);
+    }
+
+    private T loadById(Long id) {
         T entity = null;
 
-        try {
-            PreparedStatement ps = connection.prepareStatement(getSqlByAnnotation(CrudOperation.FIND_BY_ID, this::getFindByIdSql));
-            ps.setLong(1, id);
+        try (OperationProbe probe = probe(CrudOperation.FIND_BY_ID);
+             ConnectionProvider.Lease lease = connections.lease()) {
+            PreparedStatement ps = lease.statementCache().prepare(metadata.sql(CrudOperation.FIND_BY_ID));
+            probe.prepared(lease.statementCache());
+            ParameterBinder binder = statement -> statement.setLong(1, id);
+            binder.bind(ps);
+            probe.bound(binder);
 
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                entity = extractEntityFromResultSet(rs);
+            try (ResultSet rs = ps.executeQuery()) {
+                probe.executed();
+                entity = groups(metadata.sql(CrudOperation.FIND_BY_ID), rs).nextGroup();
+                probe.mapped(entity == null ? 0 : 1);
             }
+            probe.succeeded();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
 
-        return Optional.ofNullable(entity);
+        return entity;
     }
 
     public List<T> findAll() {
         List<T> entities = new ArrayList<>();
 
-        try {
-            PreparedStatement ps = connection.prepareStatement(
-                    getSqlByAnnotation(CrudOperation.FIND_ALL, this::getFindAllSql),
-                    ResultSet.TYPE_SCROLL_INSENSITIVE,
-                    ResultSet.CONCUR_READ_ONLY);
+        try (OperationProbe probe = probe(CrudOperation.FIND_ALL);
+             ConnectionProvider.Lease lease = connections.lease()) {
+            PreparedStatement ps = lease.statementCache().prepare(metadata.sql(CrudOperation.FIND_ALL));
+            probe.prepared(lease.statementCache());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                probe.executed();
+                groups(metadata.sql(CrudOperation.FIND_ALL), rs).forEachRemaining(entities::add);
+                probe.mapped(entities.size());
+            }
+            probe.succeeded();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return entities;
+    }
+
+    public Stream<T> streamAll() {
+        return streamAll(DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Streams every entity, mapping rows only as the stream is consumed. The query runs on its own forward-only,
+     * read-only statement that asks the driver for {@code fetchSize} rows at a time, so the whole result is never
+     * held in memory. The statement, and the connection it runs on, stay checked out until the stream is closed;
+     * use it in a try-with-resources block on the thread that opened it.
+     */
+    public Stream<T> streamAll(int fetchSize) {
+        String sql = metadata.sql(CrudOperation.FIND_ALL);
+        return stream(sql, ParameterBinder.NONE, fetchSize, rs -> groups(sql, rs));
+    }
+
+    /**
+     * Streams the rows of a query, one value per row, with the same resource rules as {@link #streamAll(int)}.
+     */
+    <R> Stream<R> streamRows(String sql, ParameterBinder binder, RowReader.Compiler<R> compiler) {
+        return stream(sql, binder, DEFAULT_FETCH_SIZE, rs -> new RowSpliterator<>(rs, rowReader(sql, rs, compiler)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> RowReader<R> rowReader(String sql, ResultSet rs, RowReader.Compiler<R> compiler) throws SQLException {
+        RowReader<R> reader = (RowReader<R>) rowReaders.get(sql);
+        if (reader == null) {
+            reader = compiler.compile(new ColumnLayout(rs.getMetaData()));
+            rowReaders.putIfAbsent(sql, reader);
+        }
+        return reader;
+    }
+
+    private record ProjectionSql(String findAll, String findById) {
+    }
+
+    private ProjectionSql projectionSql(Projection<?> projection) {
+        return projectionSql.computeIfAbsent(projection.getColumns(), columns -> {
+            String select = "SELECT " + String.join(", ", columns) + " FROM " + getTableName();
+            return new ProjectionSql(select, select + " WHERE ID = ?");
+        });
+    }
+
+    /**
+     * Reads only the columns of {@code projection} from every row, without building entities or their relations.
+     */
+    public <R> List<R> findAll(Projection<R> projection) {
+        return project(CrudOperation.FIND_ALL, projectionSql(projection).findAll(), ParameterBinder.NONE, projection);
+    }
+
+    public <R> Optional<R> findById(Long id, Projection<R> projection) {
+        return project(CrudOperation.FIND_BY_ID, projectionSql(projection).findById(), ps -> ps.setLong(1, id), projection)
+                .stream().findFirst();
+    }
+
+    /**
+     * Streams the columns of {@code projection} from every row, with the same resource rules as
+     * {@link #streamAll(int)}.
+     */
+    public <R> Stream<R> streamAll(Projection<R> projection) {
+        return stream(projectionSql(projection).findAll(), ParameterBinder.NONE, DEFAULT_FETCH_SIZE,
+                rs -> new RowSpliterator<>(rs, projection::read));
+    }
+
+    private <R> List<R> project(CrudOperation operation, String sql, ParameterBinder binder, Projection<R> projection) {
+        List<R> values = new ArrayList<>();
+        try (OperationProbe probe = probe(operation);
+             ConnectionProvider.Lease lease = connections.lease()) {
+            PreparedStatement ps = lease.statementCache().prepare(sql);
+            probe.prepared(lease.statementCache());
+            binder.bind(ps);
+            probe.bound(binder);
+            try (ResultSet rs = ps.executeQuery()) {
+                probe.executed();
+                while (rs.next()) {
+                    values.add(projection.read(rs));
+                }
+                probe.mapped(values.size());
+            }
+            probe.succeeded();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return values;
+    }
+
+    @FunctionalInterface
+    private interface SpliteratorFactory<R> {
+        Spliterator<R> over(ResultSet rs) throws SQLException;
+    }
 
+    private <R> Stream<R> stream(String sql, ParameterBinder binder, int fetchSize, SpliteratorFactory<R> spliterators) {
+        ConnectionProvider.Lease lease = null;
+        PreparedStatement ps = null;
+        try (OperationProbe probe = probe(CrudOperation.FIND_ALL)) {
+            lease = connections.lease();
+            ps = lease.connection().prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            probe.prepared(sql, ps);
+            ps.setFetchSize(fetchSize);
+            binder.bind(ps);
             ResultSet rs = ps.executeQuery();
+            probe.executed();
+            probe.succeeded();
+            PreparedStatement statement = ps;
+            ConnectionProvider.Lease streamLease = lease;
+            return StreamSupport.stream(spliterators.over(rs), false)
+                    .onClose(() -> {
+                        closeQuietly(statement);
+                        streamLease.close();
+                    });
+        } catch (SQLException e) {
+            if (ps != null) closeQuietly(ps);
+            if (lease != null) lease.close();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private RowGroupSpliterator groups(String sql, ResultSet rs) throws SQLException {
+        RowMapper<T> mapper = rowMappers.get(sql);
+        if (mapper == null) {
+            mapper = compileRowMapper(new ColumnLayout(rs.getMetaData()));
+            rowMappers.putIfAbsent(sql, mapper);
+        }
+        return new RowGroupSpliterator(rs, mapper);
+    }
+
+    /**
+     * Assembles entities from a result set in one forward pass. Consecutive rows with the same
+     * {@link RowMapper#extractGroupId group ID} belong to one entity: its first row is mapped by
+     * {@link RowMapper#extractEntity} and every row of the group is then handed to {@link RowMapper#mergeRow}.
+     * The row that starts the next group is kept for the following call, so the cursor never moves backwards and
+     * works on streaming result sets.
+     */
+    private final class RowGroupSpliterator extends Spliterators.AbstractSpliterator<T> {
 
-            while (rs.next()) {
-                entities.add(extractEntityFromResultSet(rs));
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private boolean started;
+        private boolean onRow;
+
+        private RowGroupSpliterator(ResultSet rs, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.rs = rs;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+                T entity = nextGroup();
+                if (entity == null) return false;
+                action.accept(entity);
+                return true;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        T nextGroup() throws SQLException {
+            if (!started) {
+                onRow = rs.next();
+                started = true;
             }
+            if (!onRow) return null;
+
+            long groupId = mapper.extractGroupId(rs);
+            T entity = mapper.extractEntity(rs);
+            do {
+                mapper.mergeRow(entity, rs);
+            } while ((onRow = rs.next()) && mapper.extractGroupId(rs) == groupId);
+            return entity;
+        }
+    }
+
+    private static final class RowSpliterator<R> extends Spliterators.AbstractSpliterator<R> {
+
+        private final ResultSet rs;
+        private final RowReader<R> reader;
+
+        private RowSpliterator(ResultSet rs, RowReader<R> reader) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.rs = rs;
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super R> action) {
+            try {
+                if (!rs.next()) return false;
+                action.accept(reader.read(rs));
+                return true;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
         } catch (SQLException e) {
             e.printStackTrace();
         }
+    }
+
+    /**
+     * Returns up to {@code limit} entities with an ID greater than {@code afterId}, in ID order. Pass {@code null} for
+     * the first page and {@link Page#nextKey()} for the following ones. Each page is an index range scan, so fetching
+     * a deep page costs the same as the first one.
+     */
+    public Page<T, Long> findPage(Long afterId, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive: " + limit);
+        List<T> rows = query(CrudOperation.FIND_PAGE, metadata.sql(CrudOperation.FIND_PAGE), ps -> {
+            ps.setLong(1, afterId == null ? Long.MIN_VALUE : afterId);
+            ps.setInt(2, limit + 1);
+        });
+        return Page.of(rows, limit, this::getIdByAnnotation);
+    }
+
+    /**
+     * Runs a query on a cached forward-only statement and assembles its rows into entities.
+     */
+    List<T> query(String sql, ParameterBinder binder) {
+        return query(CrudOperation.FIND_ALL, sql, binder);
+    }
 
+    /**
+     * @param operation what to record the query as in the {@link #getMetrics() metrics}
+     */
+    List<T> query(CrudOperation operation, String sql, ParameterBinder binder) {
+        List<T> entities = new ArrayList<>();
+        try (OperationProbe probe = probe(operation);
+             ConnectionProvider.Lease lease = connections.lease()) {
+            PreparedStatement ps = lease.statementCache().prepare(sql);
+            probe.prepared(lease.statementCache());
+            binder.bind(ps);
+            probe.bound(binder);
+            try (ResultSet rs = ps.executeQuery()) {
+                probe.executed();
+                groups(sql, rs).forEachRemaining(entities::add);
+                probe.mapped(entities.size());
+            }
+            probe.succeeded();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
         return entities;
     }
 
     public long count() {
         long count = 0;
 
-        try {
-            PreparedStatement ps = connection.prepareStatement(getSqlByAnnotation(CrudOperation.ALL_COUNT, this::getAllCountSql));
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                count = rs.getLong(1);
+        try (OperationProbe probe = probe(CrudOperation.ALL_COUNT);
+             ConnectionProvider.Lease lease = connections.lease()) {
+            PreparedStatement ps = lease.statementCache().prepare(metadata.sql(CrudOperation.ALL_COUNT));
+            probe.prepared(lease.statementCache());
+            try (ResultSet rs = ps.executeQuery()) {
+                probe.executed();
+                while (rs.next()) {
+                    count = rs.getLong(1);
+                }
+                probe.mapped(1);
             }
+            probe.succeeded();
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -115,86 +676,386 @@ abstract class CrudRepository<T> {
     }
 
     public void delete(T entity) {
-        try {
-            PreparedStatement ps = connection.prepareStatement(getSqlByAnnotation(CrudOperation.DELETE, this::getDeleteEntitySql));
+        try (OperationProbe probe = probe(CrudOperation.DELETE);
+             ConnectionProvider.Lease lease = connections.lease()) {
+            PreparedStatement ps = lease.statementCache().prepare(metadata.sql(CrudOperation.DELETE));
+            probe.prepared(lease.statementCache());
             ps.setLong(1, getIdByAnnotation(entity));
 
-            ps.executeUpdate();
+            probe.wrote(ps.executeUpdate());
+            probe.executed();
+            probe.succeeded();
         } catch (SQLException e) {
             e.printStackTrace();
+        } finally {
+            invalidate(entity);
         }
     }
 
     public void delete(T... entities) {
-        try {
-            Statement statement = connection.createStatement();
-            String ids = Arrays.stream(entities)
-                    .map(this::getIdByAnnotation)
-                    .map(String::valueOf)
-                    .collect(Collectors.joining(","));
+        delete(Arrays.asList(entities));
+    }
 
-            statement.executeUpdate(getSqlByAnnotation(CrudOperation.DELETE_IN, this::getDeleteInSql).replace(":ids", ids));
+    public void delete(Collection<? extends T> entities) {
+        try {
+            deleteChunks(entities.stream().map(this::getIdByAnnotation).toArray(Long[]::new));
         } catch (SQLException e) {
             e.printStackTrace();
+        } finally {
+            entities.forEach(this::invalidate);
         }
     }
 
-    private Long getIdByAnnotation(T entity) {
-        return Arrays.stream(entity.getClass().getDeclaredFields())
-                .filter(f -> f.isAnnotationPresent(Id.class))
-                .map(f -> {
-                    f.setAccessible(true);
-                    Long id = null;
-                    try {
-                        id = (long) f.get(entity);
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
-                    }
-                    return id;
-                })
-                .findFirst().orElseThrow(() -> new RuntimeException("No ID annotated field found."));
-    }
-
-    private void setIdByAnnotation(T entity, Long id) {
-        Arrays.stream(entity.getClass().getDeclaredFields())
-                .filter(f -> f.isAnnotationPresent(Id.class))
-                .forEach(f -> {
-                    f.setAccessible(true);
-                    try {
-                        f.set(entity, id);
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
+    /**
+     * Deletes the rows with the given IDs, {@link #getBatchSize()} at a time. Every chunk is one statement with the
+     * IDs as a single array parameter, so the SQL text never depends on the number of IDs and the prepared statement
+     * is reused. On a connection in auto-commit mode every chunk commits on its own, so a large purge never holds
+     * its locks for longer than one chunk; otherwise the chunks join the caller's transaction.
+     *
+     * @return the number of rows deleted
+     */
+    public long deleteAllById(Collection<Long> ids) {
+        try {
+            return deleteChunks(ids.toArray(Long[]::new));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    private long deleteChunks(Long[] ids) throws SQLException {
+        String sql = metadata.sql(CrudOperation.DELETE_IN);
+        long deleted = 0;
+        try (OperationProbe probe = probe(CrudOperation.DELETE_IN)) {
+            for (int from = 0; from < ids.length; from += batchSize) {
+                Long[] chunk = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + batchSize));
+                deleted += runChunk(lease -> {
+                    PreparedStatement ps = lease.statementCache().prepare(sql);
+                    probe.prepared(lease.statementCache());
+                    ps.setObject(1, chunk);
+                    int rows = ps.executeUpdate();
+                    probe.executed();
+                    return rows;
+                });
+            }
+            probe.wrote(deleted);
+            probe.succeeded();
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes every row matching {@code condition}, {@link #getBatchSize()} rows per statement and transaction like
+     * {@link #deleteAllById}. The condition is an SQL expression over the table's columns with {@code ?} placeholders
+     * for {@code parameters}, e.g. {@code "SALARY < ?"}; it becomes part of the statement, so it must never come from
+     * user input.
+     *
+     * @return the number of rows deleted
+     */
+    public long deleteWhere(String condition, Object... parameters) {
+        String sql = "DELETE FROM " + getTableName() + " WHERE ID IN (SELECT ID FROM " + getTableName()
+                + " WHERE " + condition + " FETCH FIRST ? ROWS ONLY)";
+        int limit = batchSize;
+        long deleted = 0;
+        try (OperationProbe probe = probe(CrudOperation.DELETE_IN)) {
+            int rows;
+            do {
+                rows = runChunk(lease -> {
+                    PreparedStatement ps = lease.statementCache().prepare(sql);
+                    probe.prepared(lease.statementCache());
+                    for (int i = 0; i < parameters.length; i++) {
+                        ps.setObject(i + 1, parameters[i]);
                     }
+                    ps.setInt(parameters.length + 1, limit);
+                    int deletedRows = ps.executeUpdate();
+                    probe.executed();
+                    return deletedRows;
                 });
+                deleted += rows;
+            } while (rows == limit);
+            probe.wrote(deleted);
+            probe.succeeded();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            invalidateAll();
+        }
+        return deleted;
     }
 
+    @FunctionalInterface
+    interface ChunkWork {
+        /**
+         * @return the number of rows affected
+         */
+        int run(ConnectionProvider.Lease lease) throws SQLException;
+    }
+
+    /**
+     * Runs one chunk of a bulk operation in its own transaction when the connection is in auto-commit mode: committed
+     * if it succeeds, rolled back if it fails. Otherwise the chunk joins the caller's transaction, which the caller
+     * commits or rolls back.
+     */
+    int runChunk(ChunkWork work) throws SQLException {
+        try (ConnectionProvider.Lease lease = connections.lease()) {
+            Connection connection = lease.connection();
+            boolean ownsTransaction = connection.getAutoCommit();
+            if (ownsTransaction) connection.setAutoCommit(false);
+            try {
+                int rows = work.run(lease);
+                if (ownsTransaction) connection.commit();
+                return rows;
+            } catch (SQLException | RuntimeException e) {
+                if (ownsTransaction) rollbackQuietly(connection);
+                afterRollback();
+                throw e;
+            } finally {
+                if (ownsTransaction) connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Drops every cached entity after a bulk operation, whose rows, and the cached entities that include them, are
+     * not known individually.
+     */
+    void invalidateAll() {
+        invalidatedAll();
+        EntityCache<T> cache = entityCache;
+        if (cache != null) cache.clear();
+    }
+
+    private void invalidate(T entity) {
+        invalidated(entity);
+        EntityCache<T> cache = entityCache;
+        if (cache == null) return;
+        Long id = getIdByAnnotation(entity);
+        if (id != null) cache.invalidate(id);
+        relatedCacheKeys(entity).forEach(cache::invalidate);
+    }
+
+    private void invalidateRelated(T entity) {
+        EntityCache<T> cache = entityCache;
+        if (cache != null) relatedCacheKeys(entity).forEach(cache::invalidate);
+    }
+
+    Long getIdByAnnotation(T entity) {
+        return metadata.getId(entity);
+    }
+
+    void setIdByAnnotation(T entity, Long id) {
+        metadata.setId(entity, id);
+    }
+
+    /**
+     * Writes the entity. With a {@link #partialUpdate()} only the changed columns are written, and an entity without
+     * changes is not written at all.
+     */
     public void update(T entity) {
-        try {
-            PreparedStatement ps = connection.prepareStatement(getSqlByAnnotation(CrudOperation.UPDATE, this::getUpdateEntitySql));
-            mapForUpdate(entity, ps);
-            ps.setLong(5, getIdByAnnotation(entity));
+        PartialUpdate<T, ?> partial = partialUpdate();
+        int mask = partial == null ? 0 : partial.changedMask(entity);
+        if (partial != null && mask == 0) return;
+
+        try (OperationProbe probe = probe(CrudOperation.UPDATE);
+             ConnectionProvider.Lease lease = connections.lease()) {
+            preUpdate(List.of(entity));
+            PreparedStatement ps;
+            if (partial == null) {
+                ps = lease.statementCache().prepare(metadata.sql(CrudOperation.UPDATE));
+                probe.prepared(lease.statementCache());
+                mapForUpdate(entity, ps);
+                ps.setLong(metadata.updateIdParameterIndex(), getIdByAnnotation(entity));
+            } else {
+                ps = lease.statementCache().prepare(partial.sql(mask));
+                probe.prepared(lease.statementCache());
+                ps.setLong(partial.bind(entity, mask, ps), getIdByAnnotation(entity));
+            }
+            probe.mapped(0);
 
-            ps.executeUpdate();
+            probe.wrote(ps.executeUpdate());
+            probe.executed();
+            markUnchanged(entity);
+            probe.succeeded();
         } catch (SQLException e) {
             throw new RuntimeException(e);
+        } finally {
+            invalidate(entity);
         }
     }
 
-    abstract T extractEntityFromResultSet(ResultSet rs) throws SQLException;
+    /**
+     * The statement cache of a repository built on a single connection. Pooled repositories have one cache per
+     * pooled connection and throw {@link IllegalStateException}.
+     */
+    public StatementCache getStatementCache() {
+        if (connections instanceof SingleConnectionProvider single) return single.statementCache();
+        throw new IllegalStateException("Pooled repositories have one statement cache per pooled connection");
+    }
 
-    abstract void mapForSave(T entity, PreparedStatement ps) throws SQLException;
+    /**
+     * Closes the cached statements of a single-connection repository. A pool is left open; close it separately.
+     */
+    @Override
+    public void close() {
+        if (connections instanceof SingleConnectionProvider) connections.close();
+    }
+
+    /**
+     * Builds the mapper for one result shape. Called once per SQL statement, with the labels of its result set;
+     * the mapper should resolve every column index it needs here and read rows by index with typed getters.
+     */
+    RowMapper<T> compileRowMapper(ColumnLayout columns) throws SQLException {
+        EntityMapper<T> mapper = requireEntityMapper();
+        int id = columns.require(mapper.columns().get(0));
+        int[] indices = mapper.resolve(columns::indexOf);
+        return new RowMapper<>() {
+            @Override
+            public long extractGroupId(ResultSet rs) throws SQLException {
+                return rs.getLong(id);
+            }
+
+            @Override
+            public T extractEntity(ResultSet rs) throws SQLException {
+                T entity = mapper.read(rs, indices);
+                if (entity != null) markUnchanged(entity);
+                return entity;
+            }
+        };
+    }
 
-    abstract void mapForUpdate(T entity, PreparedStatement ps) throws SQLException;
+    void mapForSave(T entity, PreparedStatement ps) throws SQLException {
+        requireEntityMapper().bind(entity, ps, 1);
+    }
+
+    void mapForUpdate(T entity, PreparedStatement ps) throws SQLException {
+        requireEntityMapper().bind(entity, ps, 1);
+    }
+
+    private EntityMapper<T> requireEntityMapper() {
+        EntityMapper<T> mapper = entityMapper();
+        if (mapper == null) throw new IllegalStateException("No entity mapper in " + getClass().getName());
+        return mapper;
+    }
 
     protected void postSave(T entity, long id) {
     }
 
+    /**
+     * Called after an entity was updated or deleted, to drop anything derived from its previous row.
+     */
+    protected void invalidated(T entity) {
+    }
+
+    /**
+     * Called after a bulk operation changed or deleted rows that are not known individually, the bulk counterpart of
+     * {@link #invalidated}.
+     */
+    protected void invalidatedAll() {
+    }
+
+    /**
+     * Called when a write of this repository fails, after it rolled back its own transaction or before it leaves
+     * rolling back the caller's to the caller, to drop anything derived from rows it had written.
+     */
+    protected void afterRollback() {
+    }
+
+    /**
+     * How to write only the changed columns of an entity, or {@code null} to always write every column with the
+     * {@link CrudOperation#UPDATE} SQL.
+     */
+    PartialUpdate<T, ?> partialUpdate() {
+        return null;
+    }
+
+    /**
+     * The generated mapper of the entity, or {@code null} to reach its {@link com.erkindilekci.peopledb.annotation.Id}
+     * field reflectively. With a mapper, the repository defaults to the mapper's SQL for operations it has no
+     * {@link com.erkindilekci.peopledb.annotation.SQL} for, and to the mapper's columns for saving, updating and reading entities.
+     */
+    EntityMapper<T> entityMapper() {
+        return null;
+    }
+
+    /**
+     * The SQL this repository declares with {@link com.erkindilekci.peopledb.annotation.SQL} on its methods. The
+     * annotation processor collects it at compile time into {@code BY_OPERATION} of a generated class named after the
+     * repository, e.g. {@code PersonRepositorySql}, which a repository using the annotation must return here.
+     */
+    Map<CrudOperation, String> declaredSql() {
+        return Map.of();
+    }
+
+    void markUnchanged(T entity) {
+        PartialUpdate<T, ?> partial = partialUpdate();
+        if (partial != null) partial.markUnchanged(entity);
+    }
+
+    /**
+     * Copies an entity on its way into or out of the {@link EntityCache}. The default shares the instance, which is
+     * only safe for immutable entities.
+     */
+    protected T copyEntity(T entity) {
+        return entity;
+    }
+
+    /**
+     * IDs of other cached entities whose loaded state includes {@code entity} and must be dropped when it is written.
+     */
+    protected Collection<Long> relatedCacheKeys(T entity) {
+        return List.of();
+    }
+
+    /**
+     * Records the IDs of the entities and of everything {@link #saveAll} cascades to from them, for a caller that
+     * rolls the save back to put them back as they were.
+     *
+     * @return restores the recorded IDs
+     */
+    Runnable snapshotIds(Collection<? extends T> entities) {
+        Map<T, Long> ids = new IdentityHashMap<>();
+        for (T entity : entities) {
+            ids.put(entity, getIdByAnnotation(entity));
+        }
+        return () -> ids.forEach(this::setIdByAnnotation);
+    }
+
+    /**
+     * Called before changed entities are written by {@link #update} or a {@link Session#flush()}, e.g. to save rows
+     * they now reference.
+     */
+    protected void preUpdate(Collection<T> entities) throws SQLException {
+    }
+
+    /**
+     * Called before a chunk of {@link #saveAll} is bound, e.g. to batch-save rows the chunk references.
+     */
+    protected void preSaveBatch(List<T> entities) throws SQLException {
+    }
+
+    /**
+     * Called once a chunk of {@link #saveAll} has its IDs, the batch counterpart of {@link #postSave}.
+     */
+    protected void postSaveBatch(List<T> entities) throws SQLException {
+    }
+
+    /**
+     * The table that {@link Projection projections} select from.
+     */
+    protected String getTableName() {
+        throw new RuntimeException("Table not defined.");
+    }
+
     protected String getUpdateEntitySql() {
         throw new RuntimeException("SQL not defined.");
     }
 
+    /**
+     * Deletes the rows whose IDs are in the single array parameter.
+     */
     protected String getDeleteInSql() {
-        throw new RuntimeException("SQL not defined.");
+        return "DELETE FROM " + getTableName() + " WHERE ID = ANY(?)";
     }
 
     protected String getDeleteEntitySql() {
@@ -216,4 +1077,8 @@ abstract class CrudRepository<T> {
     protected String getFindByIdSql() {
         throw new RuntimeException("SQL not defined.");
     }
+
+    protected String getFindPageSql() {
+        throw new RuntimeException("SQL not defined.");
+    }
 }
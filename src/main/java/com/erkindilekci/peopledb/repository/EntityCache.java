@@ -0,0 +1,201 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * A bounded cache of entities by ID that a repository consults before running its find-by-ID query.
+ * <p>
+ * When full, the cache evicts the least recently used ({@link EvictionPolicy#LRU}) or least frequently used
+ * ({@link EvictionPolicy#LFU}, ties broken by age) entry; entries can additionally expire a fixed time after they
+ * were loaded. The repository stores and hands out copies, so callers never share an instance with the cache.
+ */
+public final class EntityCache<T> {
+
+    public enum EvictionPolicy {
+        LRU,
+        LFU
+    }
+
+    private static final class Entry<T> {
+
+        private final long id;
+        private T value;
+        private long expiresAt;
+        private int frequency = 1;
+
+        private Entry(long id) {
+            this.id = id;
+        }
+    }
+
+    private final int maxSize;
+    private final EvictionPolicy policy;
+    private final long ttlNanos;
+    private final LinkedHashMap<Long, Entry<T>> entries;
+    private final Map<Integer, LinkedHashSet<Entry<T>>> entriesByFrequency = new HashMap<>();
+    private int minFrequency;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    public EntityCache(int maxSize, EvictionPolicy policy) {
+        this(maxSize, policy, Duration.ZERO);
+    }
+
+    /**
+     * @param timeToLive how long an entry stays valid after it was loaded; {@link Duration#ZERO} for no expiry
+     */
+    public EntityCache(int maxSize, EvictionPolicy policy, Duration timeToLive) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        this.maxSize = maxSize;
+        this.policy = policy;
+        this.ttlNanos = timeToLive.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, policy == EvictionPolicy.LRU);
+    }
+
+    synchronized T get(long id) {
+        Entry<T> entry = entries.get(id);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (ttlNanos > 0 && System.nanoTime() - entry.expiresAt > 0) {
+            remove(entry);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        if (policy == EvictionPolicy.LFU) touch(entry);
+        return entry.value;
+    }
+
+    /**
+     * A token to pass to {@link #putIfNotInvalidated} after loading an entity that was not cached.
+     */
+    synchronized long beginLoad() {
+        return invalidations;
+    }
+
+    /**
+     * Caches a loaded entity unless an invalidation happened since {@link #beginLoad()}, in which case the loaded
+     * state may already be stale.
+     */
+    synchronized void putIfNotInvalidated(long id, T value, long loadToken) {
+        if (loadToken != invalidations) return;
+        Entry<T> entry = entries.get(id);
+        if (entry == null) {
+            if (entries.size() >= maxSize) evict();
+            entry = new Entry<>(id);
+            entries.put(id, entry);
+            if (policy == EvictionPolicy.LFU) {
+                entriesByFrequency.computeIfAbsent(1, f -> new LinkedHashSet<>()).add(entry);
+                minFrequency = 1;
+            }
+        }
+        entry.value = value;
+        entry.expiresAt = System.nanoTime() + ttlNanos;
+    }
+
+    synchronized void invalidate(long id) {
+        invalidations++;
+        Entry<T> entry = entries.get(id);
+        if (entry != null) remove(entry);
+    }
+
+    public synchronized void clear() {
+        invalidations++;
+        entries.clear();
+        entriesByFrequency.clear();
+    }
+
+    private void evict() {
+        Entry<T> victim;
+        if (policy == EvictionPolicy.LFU) {
+            victim = entriesByFrequency.get(minFrequency).iterator().next();
+        } else {
+            Iterator<Entry<T>> eldest = entries.values().iterator();
+            victim = eldest.next();
+        }
+        remove(victim);
+        evictions++;
+    }
+
+    private void touch(Entry<T> entry) {
+        LinkedHashSet<Entry<T>> bucket = entriesByFrequency.get(entry.frequency);
+        bucket.remove(entry);
+        if (bucket.isEmpty()) {
+            entriesByFrequency.remove(entry.frequency);
+            if (minFrequency == entry.frequency) minFrequency++;
+        }
+        entry.frequency++;
+        entriesByFrequency.computeIfAbsent(entry.frequency, f -> new LinkedHashSet<>()).add(entry);
+    }
+
+    private void remove(Entry<T> entry) {
+        entries.remove(entry.id);
+        if (policy == EvictionPolicy.LFU) {
+            LinkedHashSet<Entry<T>> bucket = entriesByFrequency.get(entry.frequency);
+            bucket.remove(entry);
+            if (!bucket.isEmpty()) return;
+            entriesByFrequency.remove(entry.frequency);
+            if (entry.frequency == minFrequency && !entriesByFrequency.isEmpty()) {
+                minFrequency = entriesByFrequency.keySet().stream().min(Integer::compare).get();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public EvictionPolicy getPolicy() {
+        return policy;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getExpirations() {
+        return expirations;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EntityCache{" +
+                "policy=" + policy +
+                ", size=" + entries.size() +
+                ", maxSize=" + maxSize +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", expirations=" + expirations +
+                ", invalidations=" + invalidations +
+                '}';
+    }
+}
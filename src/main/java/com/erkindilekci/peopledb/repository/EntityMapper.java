@@ -0,0 +1,72 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.CrudOperation;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Reads and writes the columns of an entity without reflection. Implementations are generated at compile time for
+ * every entity annotated with {@link com.erkindilekci.peopledb.annotation.Table}, together with SQL constants for its
+ * table, so a repository of such an entity only needs to return its mapper from {@link CrudRepository#entityMapper()}.
+ * <p>
+ * The mapped columns are the entity's fields of simple types, e.g. strings, numbers, dates and enums, named in upper
+ * snake case, so {@code firstName} maps to {@code FIRST_NAME}. Relations such as other entities or collections are
+ * left to the repository.
+ */
+public interface EntityMapper<T> {
+
+    String table();
+
+    /**
+     * The SQL for {@code operation} over every mapped column, used for any operation a repository does not define
+     * itself with {@link com.erkindilekci.peopledb.annotation.SQL}.
+     */
+    String sql(CrudOperation operation);
+
+    /**
+     * The labels of the mapped columns, the {@link com.erkindilekci.peopledb.annotation.Id} column first, in the order
+     * {@link #read} expects their indices.
+     */
+    List<String> columns();
+
+    Long getId(T entity);
+
+    void setId(T entity, Long id);
+
+    /**
+     * Binds every mapped column but the ID, in the order of {@link #columns()}, starting at {@code parameterIndex}.
+     *
+     * @return the next parameter index after the bound columns
+     */
+    int bind(T entity, PreparedStatement ps, int parameterIndex) throws SQLException;
+
+    /**
+     * Binds the single mapped column at index {@code column} of {@link #columns()}, which must not be the ID.
+     */
+    void bindColumn(T entity, int column, PreparedStatement ps, int parameterIndex) throws SQLException;
+
+    /**
+     * Resolves the index of every column in {@link #columns()} with {@code indexOf}, which returns {@code 0} for a
+     * column the result shape does not have.
+     */
+    default int[] resolve(ToIntFunction<String> indexOf) {
+        List<String> columns = columns();
+        int[] indices = new int[columns.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = indexOf.applyAsInt(columns.get(i));
+        }
+        return indices;
+    }
+
+    /**
+     * Maps the entity on the current row from the column indices returned by {@link #resolve}. Absent columns leave
+     * their field at its default.
+     *
+     * @return the entity, or {@code null} if the shape has no ID column or the ID is {@code NULL}
+     */
+    T read(ResultSet rs, int[] columns) throws SQLException;
+}
@@ -0,0 +1,280 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Records which columns the statements of repositories filter and join on, enabled with
+ * {@link CrudRepository#setIndexAdvisor}, and reports the ones the database has to scan a whole table for.
+ * <p>
+ * The first time a statement runs, its SQL is explained against the database. The plan names, for every table the
+ * statement reads, whether it is looked up through an index or scanned, and qualifies each column of its WHERE and ON
+ * conditions. After that, every execution only counts towards its statement, with the time it took.
+ * {@link #getMissingIndexes} then turns the columns of scanned tables that no index starts with into suggestions,
+ * measuring how many rows one scan of each table reads with {@code EXPLAIN ANALYZE}.
+ */
+public final class IndexAdvisor {
+
+    private static final int MAX_STATEMENTS = 512;
+
+    private static final Pattern ACCESS = Pattern.compile(
+            "\\b(?:FROM|JOIN|UPDATE)\\s+\"([^\"]+)\"\\.\"([^\"]+)\"(?:\\s+\"([^\"]+)\")?\\s*/\\*(.*?)\\*/", Pattern.DOTALL);
+    private static final Pattern COMMENT_OR_LITERAL = Pattern.compile("/\\*.*?\\*/|'(?:[^']|'')*'", Pattern.DOTALL);
+    private static final Pattern CONDITION = Pattern.compile(
+            "\\b(?:WHERE|ON)\\b(.*?)(?=\\b(?:ORDER BY|GROUP BY|HAVING|FETCH|OFFSET|LIMIT|UNION|EXCEPT|INTERSECT"
+                    + "|(?:INNER|LEFT OUTER|RIGHT OUTER|FULL OUTER|CROSS) JOIN|SELECT|FOR UPDATE|QUALIFY|WINDOW)\\b|$)",
+            Pattern.DOTALL);
+    private static final Pattern COLUMN = Pattern.compile("(?:\"([^\"]+)\"\\.)?\"([^\"]+)\"(?!\\s*\\.)");
+    private static final Pattern SCAN_COUNT = Pattern.compile("scanCount: (\\d+)");
+
+    /**
+     * A column that repository statements filter or join on.
+     *
+     * @param executions     how often a statement using it ran
+     * @param scanExecutions how many of those executions scanned the column's table instead of looking it up
+     */
+    public record ColumnUse(String table, String column, long executions, long scanExecutions) {
+    }
+
+    /**
+     * A column that statements filtered or joined a scanned table on, with no index starting with it.
+     *
+     * @param executions   how often those statements ran
+     * @param elapsedNanos how long those executions took in total
+     * @param rowsPerScan  how many rows one scan of the table read when measured
+     * @param statements   the SQL of those statements
+     */
+    public record MissingIndex(String table, String column, long executions, long elapsedNanos, long rowsPerScan,
+                               List<String> statements) {
+
+        /**
+         * Rows read by scans that the index would have avoided, had the table always been this big.
+         */
+        public long scannedRows() {
+            return executions * rowsPerScan;
+        }
+
+        public String createIndexSql() {
+            return "CREATE INDEX IF NOT EXISTS " + table + "_" + column + " ON " + table + "(" + column + ")";
+        }
+    }
+
+    /**
+     * A column condition in a statement's plan, on a table that is either looked up through an index or scanned.
+     */
+    record Predicate(String table, String column, boolean scanned) {
+    }
+
+    private static final class Usage {
+
+        private final List<Predicate> predicates;
+        private long executions;
+        private long elapsedNanos;
+
+        private Usage(List<Predicate> predicates) {
+            this.predicates = predicates;
+        }
+    }
+
+    private final Map<String, Usage> statements = new HashMap<>();
+
+    /**
+     * Counts one execution of a statement. Must be called while its connection is still leased, as a statement seen
+     * for the first time is explained on it.
+     */
+    void observe(String sql, PreparedStatement statement, long elapsedNanos) {
+        Usage usage;
+        synchronized (this) {
+            usage = statements.get(sql);
+        }
+        if (usage == null) {
+            List<Predicate> predicates = predicates(sql, statement);
+            synchronized (this) {
+                if (statements.size() >= MAX_STATEMENTS && !statements.containsKey(sql)) return;
+                usage = statements.computeIfAbsent(sql, k -> new Usage(predicates));
+            }
+        }
+        synchronized (this) {
+            usage.executions++;
+            usage.elapsedNanos += elapsedNanos;
+        }
+    }
+
+    private static List<Predicate> predicates(String sql, PreparedStatement statement) {
+        try (PreparedStatement explain = statement.getConnection().prepareStatement("EXPLAIN " + sql);
+             ResultSet rs = explain.executeQuery()) {
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append(rs.getString(1)).append('\n');
+            }
+            return parse(plan.toString());
+        } catch (SQLException e) {
+            // a statement H2 cannot explain, e.g. an INSERT, has no conditions worth indexing for
+            return List.of();
+        }
+    }
+
+    /**
+     * Finds the columns each WHERE and ON condition of an H2 plan uses. Columns qualified by an alias belong to the
+     * table with that alias; unqualified ones to the closest table before the condition.
+     */
+    static List<Predicate> parse(String plan) {
+        record Access(String table, String alias, int position, boolean scanned) {
+        }
+        List<Access> accesses = new ArrayList<>();
+        Matcher access = ACCESS.matcher(plan);
+        while (access.find()) {
+            String alias = access.group(3) != null ? access.group(3) : access.group(2);
+            // a lookup comment names the indexed condition after a colon; a scan's only names the table or index
+            accesses.add(new Access(access.group(2), alias, access.start(), !access.group(4).contains(":")));
+        }
+
+        Matcher hidden = COMMENT_OR_LITERAL.matcher(plan);
+        StringBuilder conditions = new StringBuilder(plan);
+        while (hidden.find()) {
+            for (int i = hidden.start(); i < hidden.end(); i++) {
+                conditions.setCharAt(i, ' ');
+            }
+        }
+
+        Set<Predicate> predicates = new LinkedHashSet<>();
+        Matcher condition = CONDITION.matcher(conditions);
+        while (condition.find()) {
+            Matcher column = COLUMN.matcher(condition.group(1));
+            while (column.find()) {
+                Access table = null;
+                for (Access candidate : accesses) {
+                    if (column.group(1) != null ? candidate.alias().equals(column.group(1)) : candidate.position() < condition.start()) {
+                        table = candidate;
+                        if (column.group(1) != null) break;
+                    }
+                }
+                if (table != null) predicates.add(new Predicate(table.table(), column.group(2), table.scanned()));
+            }
+        }
+        return List.copyOf(predicates);
+    }
+
+    /**
+     * Every column the observed statements filter or join on, most executed first.
+     */
+    public synchronized List<ColumnUse> getColumnUses() {
+        Map<List<String>, long[]> counts = new LinkedHashMap<>();
+        for (Usage usage : statements.values()) {
+            // a column can be both looked up and scanned in one statement, e.g. a self join, which counts as a scan
+            Map<List<String>, Boolean> columns = new LinkedHashMap<>();
+            for (Predicate predicate : usage.predicates) {
+                columns.merge(List.of(predicate.table(), predicate.column()), predicate.scanned(), Boolean::logicalOr);
+            }
+            columns.forEach((column, scanned) -> {
+                long[] count = counts.computeIfAbsent(column, k -> new long[2]);
+                count[0] += usage.executions;
+                if (scanned) count[1] += usage.executions;
+            });
+        }
+        List<ColumnUse> uses = new ArrayList<>(counts.size());
+        counts.forEach((column, count) -> uses.add(new ColumnUse(column.get(0), column.get(1), count[0], count[1])));
+        uses.sort(Comparator.comparingLong(ColumnUse::executions).reversed());
+        return uses;
+    }
+
+    /**
+     * The columns that observed statements filtered or joined a scanned table on and that no index of
+     * {@code connection}'s database starts with, costliest first. Each table is scanned once to measure it.
+     */
+    public List<MissingIndex> getMissingIndexes(Connection connection) {
+        Map<Predicate, List<Map.Entry<String, Usage>>> scans = new LinkedHashMap<>();
+        synchronized (this) {
+            for (Map.Entry<String, Usage> statement : statements.entrySet()) {
+                for (Predicate predicate : statement.getValue().predicates) {
+                    if (predicate.scanned()) scans.computeIfAbsent(predicate, k -> new ArrayList<>()).add(statement);
+                }
+            }
+        }
+
+        List<MissingIndex> missing = new ArrayList<>();
+        try {
+            DatabaseMetaData metaData = connection.getMetaData();
+            Map<String, Long> rowsPerScan = new HashMap<>();
+            for (Map.Entry<Predicate, List<Map.Entry<String, Usage>>> scan : scans.entrySet()) {
+                String table = scan.getKey().table();
+                String column = scan.getKey().column();
+                if (!isTable(metaData, table) || SchemaManager.isCovered(connection, table, List.of(column))) continue;
+
+                long executions = 0;
+                long elapsedNanos = 0;
+                List<String> sql = new ArrayList<>();
+                synchronized (this) {
+                    for (Map.Entry<String, Usage> statement : scan.getValue()) {
+                        executions += statement.getValue().executions;
+                        elapsedNanos += statement.getValue().elapsedNanos;
+                        sql.add(statement.getKey());
+                    }
+                }
+                Long rows = rowsPerScan.get(table);
+                if (rows == null) rowsPerScan.put(table, rows = measureScan(connection, table, column));
+                missing.add(new MissingIndex(table, column, executions, elapsedNanos, rows, List.copyOf(sql)));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        missing.sort(Comparator.comparingLong(MissingIndex::scannedRows).thenComparingLong(MissingIndex::elapsedNanos).reversed());
+        return missing;
+    }
+
+    private static boolean isTable(DatabaseMetaData metaData, String table) throws SQLException {
+        // common table expressions show up in plans like tables, but are not in the catalog
+        try (ResultSet rs = metaData.getTables(null, null, table, null)) {
+            while (rs.next()) {
+                String type = rs.getString("TABLE_TYPE").toUpperCase(Locale.ROOT);
+                if (Arrays.asList("TABLE", "BASE TABLE").contains(type)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads every row of {@code table} once, filtering on {@code column} so the scan is not answered from metadata.
+     */
+    private static long measureScan(Connection connection, String table, String column) throws SQLException {
+        String sql = "EXPLAIN ANALYZE SELECT 1 FROM \"" + table + "\" WHERE \"" + column + "\" IS NULL";
+        try (PreparedStatement explain = connection.prepareStatement(sql);
+             ResultSet rs = explain.executeQuery()) {
+            long rows = 0;
+            while (rs.next()) {
+                Matcher scanCount = SCAN_COUNT.matcher(rs.getString(1));
+                while (scanCount.find()) rows += Long.parseLong(scanCount.group(1));
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Forgets every observed statement.
+     */
+    public synchronized void clear() {
+        statements.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "IndexAdvisor{" +
+                "statements=" + statements.size() +
+                '}';
+    }
+}
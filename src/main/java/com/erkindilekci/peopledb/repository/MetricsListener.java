@@ -0,0 +1,14 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.CrudOperation;
+
+/**
+ * Receives every operation recorded by a {@link RepositoryMetrics}, e.g. to forward it to a metrics library. Called
+ * synchronously on the thread that ran the operation, so implementations must be fast and must not throw.
+ */
+@FunctionalInterface
+public interface MetricsListener {
+
+    void operationCompleted(String repository, CrudOperation operation, long elapsedNanos, long rowsRead,
+                            long rowsWritten, boolean failed);
+}
@@ -0,0 +1,166 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.CrudOperation;
+
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+
+/**
+ * Measures one operation of a repository between {@link CrudRepository#probe} and {@link #close()}. Each phase mark
+ * attributes the time since the previous mark to that phase, and the totals go to the repository's
+ * {@link RepositoryMetrics} and {@link SlowQueryLog}, whichever are set. Every executed statement is also shown to
+ * its {@link IndexAdvisor}, if it has one.
+ * <p>
+ * Probes are reused per thread, so measuring allocates nothing until a statement turns out to be slow;
+ * {@link #DISABLED} is handed out when a repository has none of them and ignores every call.
+ */
+final class OperationProbe implements AutoCloseable {
+
+    static final OperationProbe DISABLED = new OperationProbe(null);
+
+    /**
+     * The probes of one thread, one per level of nesting, as an operation can run others, e.g. saving a person saves
+     * their children.
+     */
+    static final class Stack {
+
+        private OperationProbe[] probes = new OperationProbe[4];
+        private int depth;
+
+        OperationProbe push() {
+            if (depth == probes.length) probes = Arrays.copyOf(probes, depth * 2);
+            OperationProbe probe = probes[depth];
+            if (probe == null) probe = probes[depth] = new OperationProbe(this);
+            depth++;
+            return probe;
+        }
+    }
+
+    private final Stack stack;
+
+    private RepositoryMetrics metrics;
+    private SlowQueryLog slowQueries;
+    private IndexAdvisor indexAdvisor;
+
+    CrudOperation operation;
+    long start;
+    long last;
+    long prepareNanos;
+    long executeNanos;
+    long mapNanos;
+    long rowsRead;
+    long rowsWritten;
+    long prepares;
+    boolean succeeded;
+
+    private String sql;
+    private PreparedStatement statement;
+    private ParameterBinder binder;
+    private SlowQueryLog.Capture slowest;
+
+    private OperationProbe(Stack stack) {
+        this.stack = stack;
+    }
+
+    void begin(CrudOperation operation, RepositoryMetrics metrics, SlowQueryLog slowQueries, IndexAdvisor indexAdvisor) {
+        this.operation = operation;
+        this.metrics = metrics;
+        this.slowQueries = slowQueries;
+        this.indexAdvisor = indexAdvisor;
+        start = last = System.nanoTime();
+        prepareNanos = executeNanos = mapNanos = 0;
+        rowsRead = rowsWritten = prepares = 0;
+        succeeded = false;
+        sql = null;
+        statement = null;
+        binder = null;
+        slowest = null;
+    }
+
+    /**
+     * Marks the end of taking a statement from {@code cache}, counting it as a prepare if the cache had to create it.
+     */
+    void prepared(StatementCache cache) {
+        if (stack == null) return;
+        if (cache.lastPrepareMissed()) prepares++;
+        mark(cache.lastPreparedSql(), cache.lastPrepared());
+    }
+
+    /**
+     * Marks the end of preparing {@code statement} outside a {@link StatementCache}, which always counts as a prepare.
+     */
+    void prepared(String sql, PreparedStatement statement) {
+        if (stack == null) return;
+        prepares++;
+        mark(sql, statement);
+    }
+
+    private void mark(String sql, PreparedStatement statement) {
+        long now = System.nanoTime();
+        prepareNanos += now - last;
+        last = now;
+        this.sql = sql;
+        this.statement = statement;
+        this.binder = null;
+    }
+
+    /**
+     * Records how the parameters of the statement prepared last were bound, so a slow one can be explained with the
+     * same values.
+     */
+    void bound(ParameterBinder binder) {
+        if (stack == null) return;
+        this.binder = binder;
+    }
+
+    /**
+     * Marks the end of executing the statement prepared last. Must be called while its connection is still leased,
+     * as a slow or first seen statement is explained on it.
+     */
+    void executed() {
+        if (stack == null) return;
+        long now = System.nanoTime();
+        long elapsed = now - last;
+        executeNanos += elapsed;
+        SlowQueryLog slowQueries = this.slowQueries;
+        if (slowQueries != null && statement != null && slowQueries.isSlow(elapsed)
+                && (slowest == null || slowest.elapsedNanos() < elapsed)) {
+            slowest = slowQueries.capture(sql, statement, binder, elapsed);
+        }
+        if (indexAdvisor != null && statement != null) indexAdvisor.observe(sql, statement, elapsed);
+        last = System.nanoTime();
+    }
+
+    void mapped(long rows) {
+        if (stack == null) return;
+        long now = System.nanoTime();
+        mapNanos += now - last;
+        last = now;
+        rowsRead += rows;
+    }
+
+    void wrote(long rows) {
+        if (stack == null) return;
+        rowsWritten += rows;
+    }
+
+    /**
+     * Marks the operation as successful; a probe closed without this counts as an error.
+     */
+    void succeeded() {
+        if (stack == null) return;
+        succeeded = true;
+    }
+
+    @Override
+    public void close() {
+        if (stack == null) return;
+        long elapsed = System.nanoTime() - start;
+        stack.depth--;
+        if (metrics != null) metrics.record(this, elapsed);
+        if (slowest != null) slowQueries.add(operation, slowest, rowsRead + rowsWritten);
+        statement = null;
+        binder = null;
+        slowest = null;
+    }
+}
@@ -0,0 +1,114 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A point-in-time copy of the statistics of one operation of a repository, see {@link RepositoryMetrics#get}.
+ * Times are in nanoseconds; the percentiles are upper bounds accurate to within 12.5%.
+ */
+public final class OperationStats {
+
+    private final String operation;
+    private final long calls;
+    private final long errors;
+    private final long rowsRead;
+    private final long rowsWritten;
+    private final long prepares;
+    private final long prepareNanos;
+    private final long executeNanos;
+    private final long mapNanos;
+    private final long totalNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+
+    @ConstructorProperties({"operation", "calls", "errors", "rowsRead", "rowsWritten", "prepares", "prepareNanos",
+            "executeNanos", "mapNanos", "totalNanos", "p50Nanos", "p99Nanos"})
+    public OperationStats(String operation, long calls, long errors, long rowsRead, long rowsWritten, long prepares,
+                          long prepareNanos, long executeNanos, long mapNanos, long totalNanos, long p50Nanos, long p99Nanos) {
+        this.operation = operation;
+        this.calls = calls;
+        this.errors = errors;
+        this.rowsRead = rowsRead;
+        this.rowsWritten = rowsWritten;
+        this.prepares = prepares;
+        this.prepareNanos = prepareNanos;
+        this.executeNanos = executeNanos;
+        this.mapNanos = mapNanos;
+        this.totalNanos = totalNanos;
+        this.p50Nanos = p50Nanos;
+        this.p99Nanos = p99Nanos;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * Statements that were actually prepared rather than taken from a {@link StatementCache}.
+     */
+    public long getPrepares() {
+        return prepares;
+    }
+
+    public long getPrepareNanos() {
+        return prepareNanos;
+    }
+
+    public long getExecuteNanos() {
+        return executeNanos;
+    }
+
+    /**
+     * Time spent binding entities to parameters and building them from rows.
+     */
+    public long getMapNanos() {
+        return mapNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMeanNanos() {
+        return calls == 0 ? 0 : totalNanos / calls;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "OperationStats{" +
+                "operation=" + operation +
+                ", calls=" + calls +
+                ", errors=" + errors +
+                ", rowsRead=" + rowsRead +
+                ", rowsWritten=" + rowsWritten +
+                ", prepares=" + prepares +
+                ", meanNanos=" + getMeanNanos() +
+                ", p50Nanos=" + p50Nanos +
+                ", p99Nanos=" + p99Nanos +
+                '}';
+    }
+}
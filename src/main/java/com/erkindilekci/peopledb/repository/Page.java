@@ -0,0 +1,25 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated query. {@code nextKey} is the sort key of the last entity on the page and is passed
+ * back to fetch the following page; it is {@code null} on the last page.
+ */
+public record Page<T, K>(List<T> content, K nextKey) {
+
+    public boolean hasNext() {
+        return nextKey != null;
+    }
+
+    /**
+     * Builds a page from a query that asked for {@code limit + 1} rows, the extra row only telling whether another
+     * page follows.
+     */
+    static <T, K> Page<T, K> of(List<T> rows, int limit, Function<T, K> keyOf) {
+        if (rows.size() <= limit) return new Page<>(List.copyOf(rows), null);
+        List<T> content = List.copyOf(rows.subList(0, limit));
+        return new Page<>(content, keyOf.apply(content.get(limit - 1)));
+    }
+}
@@ -0,0 +1,13 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+@FunctionalInterface
+interface ParameterBinder {
+
+    ParameterBinder NONE = ps -> {
+    };
+
+    void bind(PreparedStatement ps) throws SQLException;
+}
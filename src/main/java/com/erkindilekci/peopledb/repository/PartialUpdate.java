@@ -0,0 +1,151 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Writes only the columns of an entity that changed since it was loaded or last written.
+ * <p>
+ * Each tracked field maps to one column and a binder for it. The changed fields of an entity form a bit mask by
+ * ordinal, and the {@code UPDATE} for every mask is generated once and reused, so all updates touching the same
+ * columns share one SQL string and therefore one cached prepared statement.
+ */
+final class PartialUpdate<T, F extends Enum<F>> {
+
+    @FunctionalInterface
+    interface ColumnBinder<T> {
+        void bind(T entity, PreparedStatement ps, int parameterIndex) throws SQLException;
+    }
+
+    private final String table;
+    private final String[] columns;
+    private final List<ColumnBinder<T>> binders;
+    private final Function<T, Set<F>> changedFields;
+    private final Consumer<T> markUnchanged;
+    private final AtomicReferenceArray<String> sqlByMask;
+
+    private PartialUpdate(String table, Class<F> fieldType, Map<F, String> columns, Map<F, ColumnBinder<T>> binders,
+                          Function<T, Set<F>> changedFields, Consumer<T> markUnchanged) {
+        F[] fields = fieldType.getEnumConstants();
+        if (fields.length > 16) throw new IllegalArgumentException("Too many columns to cache an UPDATE per column set: " + fields.length);
+        this.table = table;
+        this.columns = new String[fields.length];
+        List<ColumnBinder<T>> byOrdinal = new ArrayList<>(fields.length);
+        for (F field : fields) {
+            if (!columns.containsKey(field)) throw new IllegalStateException("No column for " + field);
+            this.columns[field.ordinal()] = columns.get(field);
+            byOrdinal.add(binders.get(field));
+        }
+        this.binders = List.copyOf(byOrdinal);
+        this.changedFields = changedFields;
+        this.markUnchanged = markUnchanged;
+        this.sqlByMask = new AtomicReferenceArray<>(1 << fields.length);
+    }
+
+    static <T, F extends Enum<F>> Builder<T, F> builder(String table, Class<F> fieldType) {
+        return new Builder<>(table, fieldType);
+    }
+
+    /**
+     * A builder for {@code mapper}'s table with every field named like one of its columns, e.g. {@code FIRST_NAME},
+     * already mapped to that column and bound by the mapper. Fields for columns the mapper does not know, such as
+     * references to other entities, are added with {@link Builder#column}.
+     */
+    static <T, F extends Enum<F>> Builder<T, F> builder(EntityMapper<T> mapper, Class<F> fieldType) {
+        Builder<T, F> builder = new Builder<>(mapper.table(), fieldType);
+        List<String> columns = mapper.columns();
+        for (F field : fieldType.getEnumConstants()) {
+            int column = columns.indexOf(field.name());
+            if (column > 0) builder.column(field, field.name(), (entity, ps, i) -> mapper.bindColumn(entity, column, ps, i));
+        }
+        return builder;
+    }
+
+    /**
+     * @return the changed fields of the entity as a bit mask by ordinal, {@code 0} if nothing changed
+     */
+    int changedMask(T entity) {
+        int mask = 0;
+        for (F field : changedFields.apply(entity)) {
+            mask |= 1 << field.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * The {@code UPDATE} for the columns in {@code mask}, with the ID as the last parameter.
+     */
+    String sql(int mask) {
+        String sql = sqlByMask.get(mask);
+        if (sql == null) {
+            StringBuilder update = new StringBuilder("UPDATE ").append(table).append(" SET ");
+            String separator = "";
+            for (int i = 0; i < columns.length; i++) {
+                if ((mask & 1 << i) == 0) continue;
+                update.append(separator).append(columns[i]).append("=?");
+                separator = ", ";
+            }
+            sql = update.append(" WHERE ID=?").toString();
+            sqlByMask.compareAndSet(mask, null, sql);
+        }
+        return sql;
+    }
+
+    /**
+     * Binds the columns in {@code mask} in the order {@link #sql} lists them.
+     *
+     * @return the index of the ID parameter
+     */
+    int bind(T entity, int mask, PreparedStatement ps) throws SQLException {
+        int parameterIndex = 1;
+        for (int i = 0; i < binders.size(); i++) {
+            if ((mask & 1 << i) != 0) binders.get(i).bind(entity, ps, parameterIndex++);
+        }
+        return parameterIndex;
+    }
+
+    void markUnchanged(T entity) {
+        markUnchanged.accept(entity);
+    }
+
+    static final class Builder<T, F extends Enum<F>> {
+
+        private final String table;
+        private final Class<F> fieldType;
+        private final Map<F, String> columns;
+        private final Map<F, ColumnBinder<T>> binders;
+        private Function<T, Set<F>> changedFields;
+        private Consumer<T> markUnchanged;
+
+        private Builder(String table, Class<F> fieldType) {
+            this.table = table;
+            this.fieldType = fieldType;
+            this.columns = new EnumMap<>(fieldType);
+            this.binders = new EnumMap<>(fieldType);
+        }
+
+        Builder<T, F> column(F field, String column, ColumnBinder<T> binder) {
+            columns.put(field, column);
+            binders.put(field, binder);
+            return this;
+        }
+
+        Builder<T, F> tracking(Function<T, Set<F>> changedFields, Consumer<T> markUnchanged) {
+            this.changedFields = changedFields;
+            this.markUnchanged = markUnchanged;
+            return this;
+        }
+
+        PartialUpdate<T, F> build() {
+            return new PartialUpdate<>(table, fieldType, columns, binders, changedFields, markUnchanged);
+        }
+    }
+}
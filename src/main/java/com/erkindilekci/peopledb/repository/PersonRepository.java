@@ -4,24 +4,46 @@ import com.erkindilekci.peopledb.annotation.SQL;
 import com.erkindilekci.peopledb.model.Address;
 import com.erkindilekci.peopledb.model.CrudOperation;
 import com.erkindilekci.peopledb.model.Person;
-import com.erkindilekci.peopledb.model.Region;
+import com.erkindilekci.peopledb.model.PersonMapper;
 
 import java.math.BigDecimal;
 import java.sql.*;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 public class PersonRepository extends CrudRepository<Person> {
 
-    public static final String DELETE_IN_SQL = "DELETE FROM PEOPLE WHERE ID IN (:ids)";
     private static final String SAVE_PERSON_SQL = """
             INSERT INTO PEOPLE (FIRST_NAME, LAST_NAME, DOB, SALARY, EMAIL, HOME_ADDRESS, BUSINESS_ADDRESS, PARENT_ID)
             VALUES (?, ?, ?, ?, ?, ?, ?, ?)""";
-    private static final String UPDATE_PEOPLE_SQL = "UPDATE PEOPLE SET FIRST_NAME=?, LAST_NAME=?, DOB=?, SALARY=? WHERE ID=?";
     private static final String FIND_PERSON_BY_ID_SQL = """
+            SELECT
+            PARENT.ID AS PARENT_ID, PARENT.FIRST_NAME AS PARENT_FIRST_NAME, PARENT.LAST_NAME AS PARENT_LAST_NAME, PARENT.DOB AS PARENT_DOB, PARENT.SALARY AS PARENT_SALARY, PARENT.EMAIL AS PARENT_EMAIL, PARENT.HOME_ADDRESS AS PARENT_HOME_ADDRESS, PARENT.BUSINESS_ADDRESS AS PARENT_BUSINESS_ADDRESS, PARENT.PARENT_ID AS PARENT_PARENT_ID
+            FROM PEOPLE AS PARENT
+            WHERE PARENT.ID = ?
+            """;
+    private static final String FIND_ALL_BY_ID_SQL = """
+            SELECT
+            PARENT.ID AS PARENT_ID, PARENT.FIRST_NAME AS PARENT_FIRST_NAME, PARENT.LAST_NAME AS PARENT_LAST_NAME, PARENT.DOB AS PARENT_DOB, PARENT.SALARY AS PARENT_SALARY, PARENT.EMAIL AS PARENT_EMAIL, PARENT.HOME_ADDRESS AS PARENT_HOME_ADDRESS, PARENT.BUSINESS_ADDRESS AS PARENT_BUSINESS_ADDRESS, PARENT.PARENT_ID AS PARENT_PARENT_ID
+            FROM PEOPLE AS PARENT
+            WHERE PARENT.ID = ANY(?)
+            """;
+    private static final String FIND_CHILDREN_SQL = """
+            SELECT
+            PARENT.ID AS PARENT_ID, PARENT.FIRST_NAME AS PARENT_FIRST_NAME, PARENT.LAST_NAME AS PARENT_LAST_NAME, PARENT.DOB AS PARENT_DOB, PARENT.SALARY AS PARENT_SALARY, PARENT.EMAIL AS PARENT_EMAIL, PARENT.HOME_ADDRESS AS PARENT_HOME_ADDRESS, PARENT.BUSINESS_ADDRESS AS PARENT_BUSINESS_ADDRESS, PARENT.PARENT_ID AS PARENT_PARENT_ID
+            FROM PEOPLE AS PARENT
+            WHERE PARENT.PARENT_ID = ?
+            """;
+    private static final String FIND_CHILDREN_OF_ALL_SQL = """
+            SELECT
+            PARENT.ID AS PARENT_ID, PARENT.FIRST_NAME AS PARENT_FIRST_NAME, PARENT.LAST_NAME AS PARENT_LAST_NAME, PARENT.DOB AS PARENT_DOB, PARENT.SALARY AS PARENT_SALARY, PARENT.EMAIL AS PARENT_EMAIL, PARENT.HOME_ADDRESS AS PARENT_HOME_ADDRESS, PARENT.BUSINESS_ADDRESS AS PARENT_BUSINESS_ADDRESS, PARENT.PARENT_ID AS PARENT_PARENT_ID
+            FROM PEOPLE AS PARENT
+            WHERE PARENT.PARENT_ID = ANY(?)
+            """;
+    private static final String FIND_PERSON_BY_ID_WITH_RELATIONS_SQL = """
             SELECT
             PARENT.ID AS PARENT_ID, PARENT.FIRST_NAME AS PARENT_FIRST_NAME, PARENT.LAST_NAME AS PARENT_LAST_NAME, PARENT.DOB AS PARENT_DOB, PARENT.SALARY AS PARENT_SALARY, PARENT.EMAIL AS PARENT_EMAIL,
             CHILD.ID AS CHILD_ID, CHILD.FIRST_NAME AS CHILD_FIRST_NAME, CHILD.LAST_NAME AS CHILD_LAST_NAME, CHILD.DOB AS CHILD_DOB, CHILD.SALARY AS CHILD_SALARY, CHILD.EMAIL AS CHILD_EMAIL,
@@ -35,57 +57,502 @@ public class PersonRepository extends CrudRepository<Person> {
             """;
     private static final String FIND_ALL_SQL = """
             SELECT
-            PARENT.ID AS PARENT_ID, PARENT.FIRST_NAME AS PARENT_FIRST_NAME, PARENT.LAST_NAME AS PARENT_LAST_NAME, PARENT.DOB AS PARENT_DOB, PARENT.SALARY AS PARENT_SALARY, PARENT.EMAIL AS PARENT_EMAIL
+            PARENT.ID AS PARENT_ID, PARENT.FIRST_NAME AS PARENT_FIRST_NAME, PARENT.LAST_NAME AS PARENT_LAST_NAME, PARENT.DOB AS PARENT_DOB, PARENT.SALARY AS PARENT_SALARY, PARENT.EMAIL AS PARENT_EMAIL, PARENT.HOME_ADDRESS AS PARENT_HOME_ADDRESS, PARENT.BUSINESS_ADDRESS AS PARENT_BUSINESS_ADDRESS, PARENT.PARENT_ID AS PARENT_PARENT_ID
+            FROM PEOPLE AS PARENT
+            """;
+    private static final String FIND_ALL_WITH_RELATIONS_SQL = """
+            SELECT
+            PARENT.ID AS PARENT_ID, PARENT.FIRST_NAME AS PARENT_FIRST_NAME, PARENT.LAST_NAME AS PARENT_LAST_NAME, PARENT.DOB AS PARENT_DOB, PARENT.SALARY AS PARENT_SALARY, PARENT.EMAIL AS PARENT_EMAIL,
+            CHILD.ID AS CHILD_ID, CHILD.FIRST_NAME AS CHILD_FIRST_NAME, CHILD.LAST_NAME AS CHILD_LAST_NAME, CHILD.DOB AS CHILD_DOB, CHILD.SALARY AS CHILD_SALARY, CHILD.EMAIL AS CHILD_EMAIL,
+            HOME.ID AS HOME_ID, HOME.STREET_ADDRESS AS HOME_STREET_ADDRESS, HOME.ADDRESS2 AS HOME_ADDRESS2, HOME.CITY AS HOME_CITY, HOME.STATE AS HOME_STATE, HOME.POSTCODE AS HOME_POSTCODE, HOME.COUNTY AS HOME_COUNTY, HOME.REGION AS HOME_REGION, HOME.COUNTRY AS HOME_COUNTRY,
+            BUSINESS.ID AS BUSINESS_ID, BUSINESS.STREET_ADDRESS AS BUSINESS_STREET_ADDRESS, BUSINESS.ADDRESS2 AS BUSINESS_ADDRESS2, BUSINESS.CITY AS BUSINESS_CITY, BUSINESS.STATE AS BUSINESS_STATE, BUSINESS.POSTCODE AS BUSINESS_POSTCODE, BUSINESS.COUNTY AS BUSINESS_COUNTY, BUSINESS.REGION AS BUSINESS_REGION, BUSINESS.COUNTRY AS BUSINESS_COUNTRY
+            FROM PEOPLE AS PARENT
+            LEFT OUTER JOIN PEOPLE AS CHILD ON PARENT.ID = CHILD.PARENT_ID
+            LEFT OUTER JOIN ADDRESSES AS HOME ON PARENT.HOME_ADDRESS = HOME.ID
+            LEFT OUTER JOIN ADDRESSES AS BUSINESS ON PARENT.BUSINESS_ADDRESS = BUSINESS.ID
+            ORDER BY PARENT.ID
+            """;
+    private static final String FIND_PAGE_SQL = """
+            SELECT
+            PARENT.ID AS PARENT_ID, PARENT.FIRST_NAME AS PARENT_FIRST_NAME, PARENT.LAST_NAME AS PARENT_LAST_NAME, PARENT.DOB AS PARENT_DOB, PARENT.SALARY AS PARENT_SALARY, PARENT.EMAIL AS PARENT_EMAIL, PARENT.HOME_ADDRESS AS PARENT_HOME_ADDRESS, PARENT.BUSINESS_ADDRESS AS PARENT_BUSINESS_ADDRESS, PARENT.PARENT_ID AS PARENT_PARENT_ID
+            FROM PEOPLE AS PARENT
+            WHERE PARENT.ID > ?
+            ORDER BY PARENT.ID
+            FETCH FIRST ? ROWS ONLY
+            """;
+    private static final String FIND_FIRST_PAGE_BY_LAST_NAME_SQL = """
+            SELECT
+            PARENT.ID AS PARENT_ID, PARENT.FIRST_NAME AS PARENT_FIRST_NAME, PARENT.LAST_NAME AS PARENT_LAST_NAME, PARENT.DOB AS PARENT_DOB, PARENT.SALARY AS PARENT_SALARY, PARENT.EMAIL AS PARENT_EMAIL, PARENT.HOME_ADDRESS AS PARENT_HOME_ADDRESS, PARENT.BUSINESS_ADDRESS AS PARENT_BUSINESS_ADDRESS, PARENT.PARENT_ID AS PARENT_PARENT_ID
             FROM PEOPLE AS PARENT
+            ORDER BY PARENT.LAST_NAME NULLS FIRST, PARENT.ID
+            FETCH FIRST ? ROWS ONLY
             """;
-    private static final String ALL_COUNT_SQL = "SELECT COUNT(*) FROM PEOPLE";
-    private static final String DELETE_PERSON_SQL = "DELETE FROM PEOPLE WHERE ID = ?";
+    private static final String FIND_PAGE_BY_LAST_NAME_SQL = """
+            SELECT
+            PARENT.ID AS PARENT_ID, PARENT.FIRST_NAME AS PARENT_FIRST_NAME, PARENT.LAST_NAME AS PARENT_LAST_NAME, PARENT.DOB AS PARENT_DOB, PARENT.SALARY AS PARENT_SALARY, PARENT.EMAIL AS PARENT_EMAIL, PARENT.HOME_ADDRESS AS PARENT_HOME_ADDRESS, PARENT.BUSINESS_ADDRESS AS PARENT_BUSINESS_ADDRESS, PARENT.PARENT_ID AS PARENT_PARENT_ID
+            FROM PEOPLE AS PARENT
+            WHERE (CAST(? AS VARCHAR) IS NULL AND (PARENT.LAST_NAME IS NOT NULL OR PARENT.ID > ?))
+            OR PARENT.LAST_NAME > ? OR (PARENT.LAST_NAME = ? AND PARENT.ID > ?)
+            ORDER BY PARENT.LAST_NAME NULLS FIRST, PARENT.ID
+            FETCH FIRST ? ROWS ONLY
+            """;
+    private static final String FIND_DESCENDANTS_SQL = """
+            WITH RECURSIVE DESCENDANTS(ID, FIRST_NAME, LAST_NAME, DOB, SALARY, EMAIL, PARENT_ID, DEPTH) AS (
+              SELECT ID, FIRST_NAME, LAST_NAME, DOB, SALARY, EMAIL, PARENT_ID, 0 FROM PEOPLE WHERE ID = ?
+              UNION ALL
+              SELECT CHILD.ID, CHILD.FIRST_NAME, CHILD.LAST_NAME, CHILD.DOB, CHILD.SALARY, CHILD.EMAIL, CHILD.PARENT_ID, D.DEPTH + 1
+              FROM DESCENDANTS AS D JOIN PEOPLE AS CHILD ON CHILD.PARENT_ID = D.ID
+              WHERE D.DEPTH < ?
+            )
+            SELECT ID, FIRST_NAME, LAST_NAME, DOB, SALARY, EMAIL, PARENT_ID, DEPTH FROM DESCENDANTS
+            ORDER BY DEPTH, ID
+            """;
+    private static final String FIND_ANCESTORS_SQL = """
+            WITH RECURSIVE ANCESTORS(ID, FIRST_NAME, LAST_NAME, DOB, SALARY, EMAIL, PARENT_ID, DEPTH) AS (
+              SELECT ID, FIRST_NAME, LAST_NAME, DOB, SALARY, EMAIL, PARENT_ID, 0 FROM PEOPLE WHERE ID = ?
+              UNION ALL
+              SELECT PARENT.ID, PARENT.FIRST_NAME, PARENT.LAST_NAME, PARENT.DOB, PARENT.SALARY, PARENT.EMAIL, PARENT.PARENT_ID, A.DEPTH + 1
+              FROM ANCESTORS AS A JOIN PEOPLE AS PARENT ON PARENT.ID = A.PARENT_ID
+              WHERE A.DEPTH < ?
+            )
+            SELECT ID, FIRST_NAME, LAST_NAME, DOB, SALARY, EMAIL, PARENT_ID, DEPTH FROM ANCESTORS
+            ORDER BY DEPTH
+            """;
+    private static final String FIND_SALARIES_FOR_UPDATE_SQL = "SELECT ID, SALARY FROM PEOPLE WHERE ID = ANY(?) FOR UPDATE";
+
+    /**
+     * How many generations {@link #findAncestors(long)} and {@link #findWithAncestors} walk up at most.
+     */
+    public static final int MAX_ANCESTOR_DEPTH = 1000;
 
-    private AddressRepository addressRepository = null;
+    private static final PartialUpdate<Person, Person.Field> PARTIAL_UPDATE = PartialUpdate.builder(PersonMapper.INSTANCE, Person.Field.class)
+            .column(Person.Field.HOME_ADDRESS, "HOME_ADDRESS", (p, ps, i) -> bindAddressId(ps, i, p.getHomeAddress()))
+            .column(Person.Field.BUSINESS_ADDRESS, "BUSINESS_ADDRESS", (p, ps, i) -> bindAddressId(ps, i, p.getBusinessAddress()))
+            .tracking(Person::changedFields, Person::markUnchanged)
+            .build();
 
-    private Map<String, Integer> aliasColIdxMap = new HashMap<>();
+    private static final String UPDATE_SALARY_SQL = PARTIAL_UPDATE.sql(1 << Person.Field.SALARY.ordinal());
+
+    private final AddressRepository addressRepository;
 
     public PersonRepository(Connection connection) {
         super(connection);
-        addressRepository = new AddressRepository(connection);
+        addressRepository = new AddressRepository(connections);
     }
 
-    private static Timestamp convertDobToTimestamp(ZonedDateTime dob) {
-        return Timestamp.valueOf(dob.withZoneSameInstant(ZoneId.of("+0")).toLocalDateTime());
+    public PersonRepository(ConnectionPool pool) {
+        super(pool);
+        addressRepository = new AddressRepository(connections);
     }
 
-    private static void associateChildWithPerson(Person entity, PreparedStatement ps) throws SQLException {
+    private static void associateChildWithPerson(Person entity, PreparedStatement ps, int parameterIndex) throws SQLException {
         Optional<Person> parent = entity.getParent();
         if (parent.isPresent()) {
-            ps.setLong(8, parent.get().getId());
+            ps.setLong(parameterIndex, parent.get().getId());
         } else {
-            ps.setObject(8, null);
+            ps.setObject(parameterIndex, null);
         }
     }
 
     @Override
     @SQL(value = SAVE_PERSON_SQL, operationType = CrudOperation.SAVE)
     void mapForSave(Person entity, PreparedStatement ps) throws SQLException {
-        ps.setString(1, entity.getFirstName());
-        ps.setString(2, entity.getLastName());
-        ps.setTimestamp(3, convertDobToTimestamp(entity.getDob()));
-        ps.setBigDecimal(4, entity.getSalary());
-        ps.setString(5, entity.getEmail());
-        associateAddressWithPerson(ps, entity.getHomeAddress(), 6);
-        associateAddressWithPerson(ps, entity.getBusinessAddress(), 7);
-        associateChildWithPerson(entity, ps);
+        int parameterIndex = PersonMapper.INSTANCE.bind(entity, ps, 1);
+        associateAddressWithPerson(ps, entity.getHomeAddress(), parameterIndex);
+        associateAddressWithPerson(ps, entity.getBusinessAddress(), parameterIndex + 1);
+        associateChildWithPerson(entity, ps, parameterIndex + 2);
     }
 
     @Override
     protected void postSave(Person entity, long id) {
-        entity.getChildren().stream()
-                .forEach(this::save);
+        saveDescendants(List.of(entity));
+    }
+
+    /**
+     * Makes saving a person reuse stored addresses with the same content, see {@link AddressRepository#setInterner}.
+     */
+    public void setAddressInterner(AddressInterner interner) {
+        addressRepository.setInterner(interner);
+    }
+
+    public AddressInterner getAddressInterner() {
+        return addressRepository.getInterner();
+    }
+
+    @Override
+    protected void afterRollback() {
+        addressRepository.afterRollback();
+    }
+
+    @Override
+    protected Person copyEntity(Person entity) {
+        return entity.copy();
+    }
+
+    /**
+     * A cached person includes their parent's ID and their children, so writing a person affects both. Relations
+     * that were never loaded are not loaded just to find the keys: the parent's ID is known from the row, and
+     * children that were never loaded cannot have been written through this person.
+     */
+    @Override
+    protected Collection<Long> relatedCacheKeys(Person entity) {
+        List<Long> keys = new ArrayList<>();
+        if (entity.isLoaded(Person.Relation.PARENT)) {
+            entity.getParent().map(Person::getId).ifPresent(keys::add);
+        } else if (entity.getRelationLoader() instanceof LazyRelations lazy && lazy.parentId != null) {
+            keys.add(lazy.parentId);
+        }
+        if (entity.isLoaded(Person.Relation.CHILDREN)) {
+            for (Person child : entity.getChildren()) {
+                if (child.getId() != null) keys.add(child.getId());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Replaces the salary of each person in {@code ids} with {@code salaryFunction} applied to their current salary,
+     * without loading the people. IDs are handled {@link #getBatchSize()} at a time: each chunk locks its rows while
+     * reading their salaries, writes the new ones in one JDBC batch and commits on its own, like
+     * {@link #deleteAllById}. IDs without a person are skipped.
+     *
+     * @return the number of people updated
+     */
+    public long updateSalary(Collection<Long> ids, UnaryOperator<BigDecimal> salaryFunction) {
+        long updated = 0;
+        try (OperationProbe probe = probe(CrudOperation.UPDATE)) {
+            for (Long[] chunk : chunks(ids.toArray(Long[]::new))) {
+                updated += runChunk(lease -> {
+                    PreparedStatement select = lease.statementCache().prepare(FIND_SALARIES_FOR_UPDATE_SQL);
+                    probe.prepared(lease.statementCache());
+                    PreparedStatement update = lease.statementCache().prepare(UPDATE_SALARY_SQL);
+                    probe.prepared(lease.statementCache());
+                    select.setObject(1, chunk);
+                    int rows = 0;
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            update.setBigDecimal(1, salaryFunction.apply(rs.getBigDecimal(2)));
+                            update.setLong(2, rs.getLong(1));
+                            update.addBatch();
+                            rows++;
+                        }
+                    }
+                    probe.mapped(rows);
+                    if (rows > 0) update.executeBatch();
+                    probe.executed();
+                    return rows;
+                });
+            }
+            probe.wrote(updated);
+            probe.succeeded();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            invalidateAll();
+        }
+        return updated;
+    }
+
+    /**
+     * Loads a person together with their children and addresses in one joined query. {@link #findById} reads only
+     * the person's own row and loads each relation on first access instead.
+     */
+    public Optional<Person> findByIdWithRelations(Long id) {
+        return query(CrudOperation.FIND_BY_ID, FIND_PERSON_BY_ID_WITH_RELATIONS_SQL, ps -> ps.setLong(1, id)).stream().findFirst();
+    }
+
+    /**
+     * Loads {@code relations} of {@code people} with one query per relation instead of one per person and relation,
+     * so walking the relations of a page of people costs a fixed number of round trips. Only people read without
+     * their relations are affected, and only relations they have not loaded yet; each person picks up the fetched
+     * value on its first access.
+     */
+    public void fetchRelations(Collection<Person> people, Person.Relation... relations) {
+        for (Person.Relation relation : relations) {
+            Map<Person, LazyRelations> pending = new IdentityHashMap<>();
+            for (Person person : people) {
+                if (!person.isLoaded(relation) && person.getRelationLoader() instanceof LazyRelations lazy) {
+                    pending.put(person, lazy);
+                }
+            }
+            if (pending.isEmpty()) continue;
+            switch (relation) {
+                case CHILDREN -> fetchChildren(pending);
+                case HOME_ADDRESS -> fetchAddresses(pending, lazy -> lazy.homeAddressId, (lazy, a) -> lazy.homeAddress = a);
+                case BUSINESS_ADDRESS -> fetchAddresses(pending, lazy -> lazy.businessAddressId, (lazy, a) -> lazy.businessAddress = a);
+                case PARENT -> fetchParents(pending);
+            }
+        }
+    }
+
+    private void fetchChildren(Map<Person, LazyRelations> pending) {
+        Map<Long, List<Person>> childrenByParent = new HashMap<>();
+        Long[] parentIds = pending.keySet().stream().map(Person::getId).distinct().toArray(Long[]::new);
+        for (Long[] chunk : chunks(parentIds)) {
+            for (Person child : query(FIND_CHILDREN_OF_ALL_SQL, ps -> ps.setObject(1, chunk))) {
+                Long parentId = ((LazyRelations) child.getRelationLoader()).parentId;
+                childrenByParent.computeIfAbsent(parentId, id -> new ArrayList<>()).add(child);
+            }
+        }
+        pending.forEach((person, lazy) -> lazy.children = childrenByParent.getOrDefault(person.getId(), List.of()));
+    }
+
+    private void fetchAddresses(Map<Person, LazyRelations> pending, Function<LazyRelations, Long> addressId,
+                                BiConsumer<LazyRelations, Optional<Address>> prefetch) {
+        Map<Long, Address> addressesById = new HashMap<>();
+        Long[] ids = pending.values().stream().map(addressId).filter(Objects::nonNull).distinct().toArray(Long[]::new);
+        for (Long[] chunk : chunks(ids)) {
+            for (Address address : addressRepository.findAllById(chunk)) {
+                addressesById.put(address.id(), address);
+            }
+        }
+        for (LazyRelations lazy : pending.values()) {
+            Long id = addressId.apply(lazy);
+            prefetch.accept(lazy, Optional.ofNullable(id == null ? null : addressesById.get(id)));
+        }
+    }
+
+    private void fetchParents(Map<Person, LazyRelations> pending) {
+        Map<Long, Person> parentsById = new HashMap<>();
+        Long[] ids = pending.values().stream().map(lazy -> lazy.parentId).filter(Objects::nonNull).distinct().toArray(Long[]::new);
+        for (Long[] chunk : chunks(ids)) {
+            for (Person parent : query(FIND_ALL_BY_ID_SQL, ps -> ps.setObject(1, chunk))) {
+                parentsById.put(parent.getId(), parent);
+            }
+        }
+        for (LazyRelations lazy : pending.values()) {
+            lazy.parent = Optional.ofNullable(lazy.parentId == null ? null : parentsById.get(lazy.parentId));
+        }
+    }
+
+    /**
+     * Splits IDs into arrays of at most {@link #getBatchSize()}, so a single array parameter stays bounded.
+     */
+    private List<Long[]> chunks(Long[] ids) {
+        List<Long[]> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.length; from += getBatchSize()) {
+            chunks.add(Arrays.copyOfRange(ids, from, Math.min(ids.length, from + getBatchSize())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Loads every person together with their children and addresses in one joined query, assembled in a single pass.
+     */
+    public List<Person> findAllWithRelations() {
+        return query(FIND_ALL_WITH_RELATIONS_SQL, ParameterBinder.NONE);
+    }
+
+    /**
+     * Keyset pagination in {@code LAST_NAME, ID} order, people without a last name first. Pass {@code null} for the
+     * first page and {@link Page#nextKey()} for the following ones.
+     */
+    public Page<Person, LastNameKey> findPageByLastName(LastNameKey after, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive: " + limit);
+        List<Person> rows;
+        if (after == null) {
+            rows = query(CrudOperation.FIND_PAGE, FIND_FIRST_PAGE_BY_LAST_NAME_SQL, ps -> ps.setInt(1, limit + 1));
+        } else {
+            rows = query(CrudOperation.FIND_PAGE, FIND_PAGE_BY_LAST_NAME_SQL, ps -> {
+                ps.setString(1, after.lastName());
+                ps.setLong(2, after.id());
+                ps.setString(3, after.lastName());
+                ps.setString(4, after.lastName());
+                ps.setLong(5, after.id());
+                ps.setInt(6, limit + 1);
+            });
+        }
+        return Page.of(rows, limit, p -> new LastNameKey(p.getLastName(), p.getId()));
+    }
+
+    public record LastNameKey(String lastName, long id) {
+    }
+
+    /**
+     * A person found by walking a family tree, {@code depth} generations away from where the walk started.
+     */
+    public record Relative(Person person, Long parentId, int depth) {
+    }
+
+    /**
+     * Streams the person with {@code id} at depth 0 followed by their descendants down to {@code maxDepth}
+     * generations, in one recursive query. Relatives come generation by generation, so every parent precedes their
+     * children. Close the stream, see {@link #streamAll(int)}.
+     */
+    public Stream<Relative> findDescendants(long id, int maxDepth) {
+        if (maxDepth < 0) throw new IllegalArgumentException("maxDepth must not be negative: " + maxDepth);
+        return streamRows(FIND_DESCENDANTS_SQL, ps -> {
+            ps.setLong(1, id);
+            ps.setInt(2, maxDepth);
+        }, PersonRepository::compileRelativeReader);
+    }
+
+    /**
+     * Streams the person with {@code id} at depth 0 followed by their parent, grandparent and so on, up to
+     * {@link #MAX_ANCESTOR_DEPTH} generations. Close the stream, see {@link #streamAll(int)}.
+     */
+    public Stream<Relative> findAncestors(long id) {
+        return findAncestors(id, MAX_ANCESTOR_DEPTH);
+    }
+
+    /**
+     * Streams the person with {@code id} at depth 0 followed by their ancestors up to {@code maxDepth} generations, in
+     * one recursive query. The limit also ends the walk if PARENT_IDs form a cycle, which the schema does not prevent.
+     * Close the stream, see {@link #streamAll(int)}.
+     */
+    public Stream<Relative> findAncestors(long id, int maxDepth) {
+        if (maxDepth < 0) throw new IllegalArgumentException("maxDepth must not be negative: " + maxDepth);
+        return streamRows(FIND_ANCESTORS_SQL, ps -> {
+            ps.setLong(1, id);
+            ps.setInt(2, maxDepth);
+        }, PersonRepository::compileRelativeReader);
+    }
+
+    /**
+     * Loads the person with {@code id} with their descendants down to {@code maxDepth} generations linked through
+     * {@link Person#getChildren()} and {@link Person#getParent()}. Addresses are not loaded.
+     */
+    public Optional<Person> findFamilyTree(long id, int maxDepth) {
+        try (Stream<Relative> relatives = findDescendants(id, maxDepth)) {
+            Map<Long, Person> peopleById = new HashMap<>();
+            Person root = null;
+            for (Iterator<Relative> it = relatives.iterator(); it.hasNext(); ) {
+                Relative relative = it.next();
+                Person person = relative.person();
+                peopleById.put(person.getId(), person);
+                if (relative.depth() == 0) root = person;
+                else peopleById.get(relative.parentId()).addChild(person);
+            }
+            return Optional.ofNullable(root);
+        }
+    }
+
+    /**
+     * Loads the person with {@code id} with up to {@link #MAX_ANCESTOR_DEPTH} generations of ancestors linked through
+     * {@link Person#getParent()}. Each ancestor's children only hold the line leading down to that person. Addresses
+     * are not loaded.
+     */
+    public Optional<Person> findWithAncestors(long id) {
+        try (Stream<Relative> relatives = findAncestors(id)) {
+            Person person = null;
+            Person youngest = null;
+            for (Iterator<Relative> it = relatives.iterator(); it.hasNext(); ) {
+                Person ancestor = it.next().person();
+                if (youngest == null) person = ancestor;
+                else ancestor.addChild(youngest);
+                youngest = ancestor;
+            }
+            return Optional.ofNullable(person);
+        }
+    }
+
+    private static RowReader<Relative> compileRelativeReader(ColumnLayout columns) throws SQLException {
+        PersonColumns person = new PersonColumns(columns, "");
+        int parentId = columns.require("PARENT_ID");
+        int depth = columns.require("DEPTH");
+        return rs -> {
+            Person relative = person.read(rs);
+            long parent = rs.getLong(parentId);
+            return new Relative(relative, rs.wasNull() ? null : parent, rs.getInt(depth));
+        };
+    }
+
+    @Override
+    protected void preSaveBatch(List<Person> people) {
+        Set<Address> addresses = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Person person : people) {
+            person.getHomeAddress().filter(a -> a.id() == null).ifPresent(addresses::add);
+            person.getBusinessAddress().filter(a -> a.id() == null).ifPresent(addresses::add);
+        }
+        addressRepository.saveAll(addresses);
+    }
+
+    /**
+     * Saves the addresses people were given since they were loaded: new ones are inserted and changed ones written
+     * through {@link AddressRepository#update}, which with an interner moves the address to the row holding its new
+     * content rather than changing a row other people may share.
+     */
+    @Override
+    protected void preUpdate(Collection<Person> people) {
+        for (Person person : people) {
+            if (person.changedFields().contains(Person.Field.HOME_ADDRESS)) person.getHomeAddress().ifPresent(this::saveAddress);
+            if (person.changedFields().contains(Person.Field.BUSINESS_ADDRESS)) person.getBusinessAddress().ifPresent(this::saveAddress);
+        }
+    }
+
+    private void saveAddress(Address address) {
+        if (address.id() == null) addressRepository.save(address);
+        else addressRepository.update(address);
+    }
+
+    @Override
+    protected void postSaveBatch(List<Person> people) {
+        saveDescendants(people);
+    }
+
+    /**
+     * Includes the unsaved descendants {@link #saveDescendants} walks to and the addresses of everyone involved.
+     */
+    @Override
+    Runnable snapshotIds(Collection<? extends Person> people) {
+        List<Person> cascade = new ArrayList<>(people);
+        for (List<Person> generation = unsavedChildren(people); !generation.isEmpty(); generation = unsavedChildren(generation)) {
+            cascade.addAll(generation);
+        }
+        Set<Address> addresses = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Person person : cascade) {
+            person.getHomeAddress().ifPresent(addresses::add);
+            person.getBusinessAddress().ifPresent(addresses::add);
+        }
+        Runnable restorePeople = super.snapshotIds(cascade);
+        Runnable restoreAddresses = addressRepository.snapshotIds(addresses);
+        return () -> {
+            restorePeople.run();
+            restoreAddresses.run();
+        };
+    }
+
+    /**
+     * Saves the unsaved descendants of {@code people} breadth-first: every generation is inserted through
+     * {@link #saveAll} batches once the one above it has its IDs, so each child can reference its parent. The walk is
+     * a loop over generations rather than a recursion, so the depth of a family tree does not grow the stack.
+     */
+    private void saveDescendants(Collection<Person> people) {
+        List<Person> generation = unsavedChildren(people);
+        while (!generation.isEmpty()) {
+            saveAll(generation, false);
+            generation = unsavedChildren(generation);
+        }
+    }
+
+    private static List<Person> unsavedChildren(Collection<? extends Person> parents) {
+        List<Person> children = new ArrayList<>();
+        for (Person parent : parents) {
+            // children that were never loaded are stored already
+            if (!parent.isLoaded(Person.Relation.CHILDREN)) continue;
+            for (Person child : parent.getChildren()) {
+                // a child registered on its own in a session may already have been saved
+                if (child.getId() == null) children.add(child);
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Binds the ID of an address that {@link #preUpdate} has saved.
+     */
+    private static void bindAddressId(PreparedStatement ps, int parameterIndex, Optional<Address> address) throws SQLException {
+        if (address.isPresent()) {
+            ps.setLong(parameterIndex, address.get().id());
+        } else {
+            ps.setObject(parameterIndex, null);
+        }
     }
 
     private void associateAddressWithPerson(PreparedStatement ps, Optional<Address> address, int parameterIndex) throws SQLException {
         Address savedAddress;
         if (address.isPresent()) {
-            savedAddress = addressRepository.save(address.get());
+            savedAddress = address.get().id() != null ? address.get() : addressRepository.save(address.get());
             ps.setLong(parameterIndex, savedAddress.id());
         } else {
             ps.setObject(parameterIndex, null);
@@ -93,87 +560,171 @@ public class PersonRepository extends CrudRepository<Person> {
     }
 
     @Override
-    @SQL(value = UPDATE_PEOPLE_SQL, operationType = CrudOperation.UPDATE)
-    void mapForUpdate(Person entity, PreparedStatement ps) throws SQLException {
-        ps.setString(1, entity.getFirstName());
-        ps.setString(2, entity.getLastName());
-        ps.setTimestamp(3, convertDobToTimestamp(entity.getDob()));
-        ps.setBigDecimal(4, entity.getSalary());
-        ps.setString(5, entity.getEmail());
+    protected String getTableName() {
+        return PersonMapper.TABLE;
+    }
+
+    @Override
+    EntityMapper<Person> entityMapper() {
+        return PersonMapper.INSTANCE;
+    }
+
+    @Override
+    Map<CrudOperation, String> declaredSql() {
+        return PersonRepositorySql.BY_OPERATION;
+    }
+
+    @Override
+    PartialUpdate<Person, Person.Field> partialUpdate() {
+        return PARTIAL_UPDATE;
     }
 
     @Override
     @SQL(value = FIND_PERSON_BY_ID_SQL, operationType = CrudOperation.FIND_BY_ID)
     @SQL(value = FIND_ALL_SQL, operationType = CrudOperation.FIND_ALL)
-    @SQL(value = ALL_COUNT_SQL, operationType = CrudOperation.ALL_COUNT)
-    @SQL(value = DELETE_PERSON_SQL, operationType = CrudOperation.DELETE)
-    @SQL(value = DELETE_IN_SQL, operationType = CrudOperation.DELETE_IN)
-    Person extractEntityFromResultSet(ResultSet rs) throws SQLException {
-        Person finalParent = null;
-        do {
-            Person currentParent = extractPerson(rs, "PARENT_").get();
-
-            if (finalParent == null) finalParent = currentParent;
-            if (!finalParent.equals(currentParent)) {
-                rs.previous();
-                break;
-            }
+    @SQL(value = FIND_PAGE_SQL, operationType = CrudOperation.FIND_PAGE)
+    RowMapper<Person> compileRowMapper(ColumnLayout columns) throws SQLException {
+        return new PersonRowMapper(columns);
+    }
 
-            Optional<Person> child = extractPerson(rs, "CHILD_");
-
-            Address homeAddress = extractAddress(rs, "HOME_");
-            Address businessAddress = extractAddress(rs, "BUSINESS_");
-
-            finalParent.setHomeAddress(homeAddress);
-            finalParent.setBusinessAddress(businessAddress);
-            child.ifPresent(finalParent::addChild);
-        } while (rs.next());
-        return finalParent;
-    }
-
-    private Optional<Person> extractPerson(ResultSet rs, String aliasPrefix) throws SQLException {
-        BigDecimal personId = getValueByAlias(aliasPrefix + "ID", rs, BigDecimal.class);
-        if (personId == null) return Optional.empty();
-        String firstName = getValueByAlias(aliasPrefix + "FIRST_NAME", rs, String.class);
-        String lastName = getValueByAlias(aliasPrefix + "LAST_NAME", rs, String.class);
-        ZonedDateTime dob = ZonedDateTime.of(getValueByAlias(aliasPrefix + "DOB", rs, Timestamp.class).toLocalDateTime(), ZoneId.of("+0"));
-        BigDecimal salary = getValueByAlias(aliasPrefix + "SALARY", rs, BigDecimal.class);
-        Person person = new Person(personId.longValue(), firstName, lastName, dob, salary);
-        return Optional.of(person);
-    }
-
-    private Address extractAddress(ResultSet rs, String aliasPrefix) throws SQLException {
-        BigDecimal addressId = getValueByAlias(aliasPrefix + "ID", rs, BigDecimal.class);
-        if (addressId == null) return null;
-        String streetAddress = getValueByAlias(aliasPrefix + "STREET_ADDRESS", rs, String.class);
-        String address2 = getValueByAlias(aliasPrefix + "ADDRESS2", rs, String.class);
-        String city = getValueByAlias(aliasPrefix + "CITY", rs, String.class);
-        String state = getValueByAlias(aliasPrefix + "STATE", rs, String.class);
-        String postcode = getValueByAlias(aliasPrefix + "POSTCODE", rs, String.class);
-        String county = getValueByAlias(aliasPrefix + "COUNTY", rs, String.class);
-        Region region = Region.valueOf(getValueByAlias(aliasPrefix + "REGION", rs, String.class).toUpperCase());
-        String country = getValueByAlias(aliasPrefix + "COUNTRY", rs, String.class);
-        Address address = new Address(addressId.longValue(), streetAddress, address2, city, state, postcode, country, county, region);
-        return address;
-    }
-
-    private <T> T getValueByAlias(String alias, ResultSet rs, Class<T> clazz) throws SQLException {
-        int columnCount = rs.getMetaData().getColumnCount();
-        int foundIdx = getIndexForAlias(alias, rs, columnCount);
-        return foundIdx == 0 ? null : (T) rs.getObject(foundIdx);
-    }
-
-    private int getIndexForAlias(String alias, ResultSet rs, int columnCount) throws SQLException {
-        Integer foundIdx = aliasColIdxMap.getOrDefault(alias, 0);
-        if (foundIdx == 0) {
-            for (int colIdx = 1; colIdx <= columnCount; colIdx++) {
-                if (alias.equals(rs.getMetaData().getColumnLabel(colIdx))) {
-                    foundIdx = colIdx;
-                    aliasColIdxMap.put(alias, foundIdx);
-                    break;
-                }
+    /**
+     * Maps rows of PEOPLE aliased as {@code PARENT}, optionally joined with a {@code CHILD} per row and the
+     * {@code HOME} and {@code BUSINESS} addresses. A shape that carries the person's own foreign keys instead
+     * ({@code PARENT_HOME_ADDRESS}, {@code PARENT_BUSINESS_ADDRESS}, {@code PARENT_PARENT_ID}) yields people whose
+     * relations load on first access.
+     */
+    private final class PersonRowMapper implements RowMapper<Person> {
+
+        private final PersonColumns parent;
+        private final PersonColumns child;
+        private final AddressColumns home;
+        private final AddressColumns business;
+        private final int homeAddressId;
+        private final int businessAddressId;
+        private final int parentId;
+
+        private PersonRowMapper(ColumnLayout columns) throws SQLException {
+            columns.require("PARENT_ID");
+            parent = new PersonColumns(columns, "PARENT_");
+            child = new PersonColumns(columns, "CHILD_");
+            home = new AddressColumns(columns, "HOME_");
+            business = new AddressColumns(columns, "BUSINESS_");
+            homeAddressId = columns.indexOf("PARENT_HOME_ADDRESS");
+            businessAddressId = columns.indexOf("PARENT_BUSINESS_ADDRESS");
+            parentId = columns.indexOf("PARENT_PARENT_ID");
+        }
+
+        @Override
+        public long extractGroupId(ResultSet rs) throws SQLException {
+            return rs.getLong(parent.id);
+        }
+
+        @Override
+        public Person extractEntity(ResultSet rs) throws SQLException {
+            Person person = parent.read(rs);
+            if (home.isPresent()) person.setHomeAddress(home.read(rs));
+            if (business.isPresent()) person.setBusinessAddress(business.read(rs));
+            person.markUnchanged();
+            if (parentId != ColumnLayout.ABSENT) {
+                person.setRelationLoader(new LazyRelations(readId(rs, homeAddressId), readId(rs, businessAddressId), readId(rs, parentId)));
             }
+            return person;
+        }
+
+        private static Long readId(ResultSet rs, int column) throws SQLException {
+            if (column == ColumnLayout.ABSENT) return null;
+            long id = rs.getLong(column);
+            return rs.wasNull() ? null : id;
+        }
+
+        @Override
+        public void mergeRow(Person person, ResultSet rs) throws SQLException {
+            Person found = child.read(rs);
+            if (found != null) person.addChild(found);
+        }
+    }
+
+    /**
+     * Loads the relations of a person read from its own row through the foreign keys on that row, or hands out what
+     * {@link #fetchRelations} fetched for it. Every copy of the person gets a loader of its own with copies of the
+     * fetched people, so handing a value out to one copy never changes what another one sees.
+     */
+    private final class LazyRelations implements Person.RelationLoader {
+
+        private final Long homeAddressId;
+        private final Long businessAddressId;
+        private final Long parentId;
+        private Collection<Person> children;
+        private Optional<Address> homeAddress;
+        private Optional<Address> businessAddress;
+        private Optional<Person> parent;
+
+        private LazyRelations(Long homeAddressId, Long businessAddressId, Long parentId) {
+            this.homeAddressId = homeAddressId;
+            this.businessAddressId = businessAddressId;
+            this.parentId = parentId;
+        }
+
+        @Override
+        public Collection<Person> loadChildren(Person person) {
+            Collection<Person> fetched = children;
+            children = null;
+            return fetched != null ? fetched : query(FIND_CHILDREN_SQL, ps -> ps.setLong(1, person.getId()));
+        }
+
+        @Override
+        public Optional<Address> loadHomeAddress(Person person) {
+            Optional<Address> fetched = homeAddress;
+            homeAddress = null;
+            if (fetched != null) return fetched;
+            return homeAddressId == null ? Optional.empty() : addressRepository.findById(homeAddressId);
+        }
+
+        @Override
+        public Optional<Address> loadBusinessAddress(Person person) {
+            Optional<Address> fetched = businessAddress;
+            businessAddress = null;
+            if (fetched != null) return fetched;
+            return businessAddressId == null ? Optional.empty() : addressRepository.findById(businessAddressId);
+        }
+
+        @Override
+        public Optional<Person> loadParent(Person person) {
+            Optional<Person> fetched = parent;
+            parent = null;
+            if (fetched != null) return fetched;
+            return parentId == null ? Optional.empty() : findById(parentId);
+        }
+
+        @Override
+        public LazyRelations copy() {
+            LazyRelations copy = new LazyRelations(homeAddressId, businessAddressId, parentId);
+            copy.children = children == null ? null : children.stream().map(Person::copy).toList();
+            copy.homeAddress = homeAddress;
+            copy.businessAddress = businessAddress;
+            copy.parent = parent == null ? null : parent.map(Person::copy);
+            return copy;
+        }
+    }
+
+    private static final class PersonColumns {
+
+        private final int[] columns;
+        private final int id;
+
+        private PersonColumns(ColumnLayout columns, String aliasPrefix) {
+            this.columns = PersonMapper.INSTANCE.resolve(label -> columns.indexOf(aliasPrefix + label));
+            this.id = this.columns[0];
+        }
+
+        /**
+         * @return the person on the current row, or {@code null} if the shape has no such person or an outer join
+         * found none
+         */
+        private Person read(ResultSet rs) throws SQLException {
+            Person person = PersonMapper.INSTANCE.read(rs, columns);
+            if (person != null) person.markUnchanged();
+            return person;
         }
-        return foundIdx;
     }
 }
@@ -0,0 +1,167 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A subset of a table's columns read into a lightweight value instead of a full entity, see
+ * {@link CrudRepository#findAll(Projection)}.
+ * <p>
+ * The mapper reads the columns by position, in the order they were given. A projection is immutable and best kept in
+ * a constant, as building one for a record resolves its reader. Each repository generates the SQL for a set of
+ * columns once and reuses it, and with it the cached prepared statement.
+ */
+public final class Projection<R> {
+
+    /**
+     * Maps the current row, whose columns {@code 1..n} are the projected columns in order.
+     */
+    @FunctionalInterface
+    public interface Mapper<R> {
+        R map(ResultSet rs) throws SQLException;
+    }
+
+    private static final Pattern COLUMN_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final List<String> columns;
+    private final Mapper<R> mapper;
+
+    private Projection(List<String> columns, Mapper<R> mapper) {
+        if (columns.isEmpty()) throw new IllegalArgumentException("A projection needs at least one column");
+        for (String column : columns) {
+            if (!COLUMN_NAME.matcher(column).matches()) throw new IllegalArgumentException("Not a column name: " + column);
+        }
+        this.columns = columns;
+        this.mapper = mapper;
+    }
+
+    public static <R> Projection<R> of(Mapper<R> mapper, String... columns) {
+        return new Projection<>(List.of(columns), mapper);
+    }
+
+    /**
+     * Maps the columns to the components of a record, in order. Without columns, each component reads the column
+     * named after it in upper snake case, so {@code lastName} reads {@code LAST_NAME}. The reader is bound once, here,
+     * into a single method handle that reads every column with a getter of its component's type and passes the values
+     * straight to the canonical constructor, so rows are mapped without reflection, an argument array or boxing.
+     */
+    public static <R extends Record> Projection<R> of(Class<R> type, String... columns) {
+        RecordComponent[] components = type.getRecordComponents();
+        List<String> names = columns.length > 0
+                ? List.of(columns)
+                : Arrays.stream(components).map(c -> toColumnName(c.getName())).toList();
+        if (names.size() != components.length) {
+            throw new IllegalArgumentException(type.getSimpleName() + " has " + components.length + " components but "
+                    + names.size() + " columns were given");
+        }
+        MethodHandle reader;
+        try {
+            Class<?>[] parameterTypes = Arrays.stream(components).map(RecordComponent::getType).toArray(Class<?>[]::new);
+            Constructor<R> canonical = type.getDeclaredConstructor(parameterTypes);
+            canonical.setAccessible(true);
+            reader = LOOKUP.unreflectConstructor(canonical);
+            for (int i = 0; i < parameterTypes.length; i++) {
+                reader = MethodHandles.filterArguments(reader, i, getterFor(parameterTypes[i], i + 1));
+            }
+            // every getter takes the same ResultSet
+            reader = MethodHandles.permuteArguments(reader, MethodType.methodType(type, ResultSet.class), new int[parameterTypes.length]);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot construct " + type.getName(), e);
+        }
+        MethodHandle rowReader = reader.asType(MethodType.methodType(Object.class, ResultSet.class));
+        return new Projection<>(names, rs -> {
+            try {
+                return type.cast(rowReader.invokeExact(rs));
+            } catch (SQLException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new SQLException("Cannot construct " + type.getName(), e);
+            }
+        });
+    }
+
+    private static String toColumnName(String componentName) {
+        return componentName.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase();
+    }
+
+    /**
+     * A handle reading {@code column} of a {@code ResultSet} as {@code type}.
+     */
+    private static MethodHandle getterFor(Class<?> type, int column) throws ReflectiveOperationException {
+        MethodHandle getter;
+        if (type == long.class) getter = resultSetGetter("getLong", type);
+        else if (type == int.class) getter = resultSetGetter("getInt", type);
+        else if (type == double.class) getter = resultSetGetter("getDouble", type);
+        else if (type == boolean.class) getter = resultSetGetter("getBoolean", type);
+        else if (type == String.class) getter = resultSetGetter("getString", type);
+        else if (type == BigDecimal.class) getter = resultSetGetter("getBigDecimal", type);
+        else if (type == Long.class || type == Integer.class || type == Double.class || type == Boolean.class
+                || type == LocalDateTime.class || type == LocalDate.class) {
+            getter = LOOKUP.findStatic(Projection.class, "get" + type.getSimpleName(), MethodType.methodType(type, ResultSet.class, int.class));
+        } else {
+            getter = MethodHandles.insertArguments(LOOKUP.findVirtual(ResultSet.class, "getObject",
+                    MethodType.methodType(Object.class, int.class, Class.class)), 2, type).asType(MethodType.methodType(type, ResultSet.class, int.class));
+        }
+        return MethodHandles.insertArguments(getter, 1, column);
+    }
+
+    private static MethodHandle resultSetGetter(String name, Class<?> type) throws ReflectiveOperationException {
+        return LOOKUP.findVirtual(ResultSet.class, name, MethodType.methodType(type, int.class));
+    }
+
+    private static Long getLong(ResultSet rs, int column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Integer getInteger(ResultSet rs, int column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Double getDouble(ResultSet rs, int column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Boolean getBoolean(ResultSet rs, int column) throws SQLException {
+        boolean value = rs.getBoolean(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static LocalDateTime getLocalDateTime(ResultSet rs, int column) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp(column);
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+
+    private static LocalDate getLocalDate(ResultSet rs, int column) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp(column);
+        return timestamp == null ? null : timestamp.toLocalDateTime().toLocalDate();
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    R read(ResultSet rs) throws SQLException {
+        return mapper.map(rs);
+    }
+
+    @Override
+    public String toString() {
+        return "Projection" + columns;
+    }
+}
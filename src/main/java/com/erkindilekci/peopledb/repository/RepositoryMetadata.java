@@ -0,0 +1,166 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.annotation.Id;
+import com.erkindilekci.peopledb.model.CrudOperation;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Everything {@link CrudRepository} needs to know about a repository class, resolved once and shared by all
+ * instances of that class: the SQL for every {@link CrudOperation} and accessors for the entity's {@link Id} field.
+ * Entities with a generated {@link EntityMapper} are accessed through it; the others through method handles on the
+ * field.
+ */
+final class RepositoryMetadata<T> {
+
+    private static final Map<Class<?>, RepositoryMetadata<?>> REGISTRY = new ConcurrentHashMap<>();
+
+    private static final MethodType ID_GETTER_TYPE = MethodType.methodType(Long.class, Object.class);
+    private static final MethodType ID_SETTER_TYPE = MethodType.methodType(void.class, Object.class, Long.class);
+
+    private final Class<T> entityType;
+    private final EnumMap<CrudOperation, String> sqlByOperation;
+    private final EntityMapper<T> mapper;
+    private final MethodHandle idGetter;
+    private final MethodHandle idSetter;
+    private final int updateIdParameterIndex;
+
+    private RepositoryMetadata(Class<T> entityType, EnumMap<CrudOperation, String> sqlByOperation, EntityMapper<T> mapper) {
+        this.entityType = entityType;
+        this.sqlByOperation = sqlByOperation;
+        this.mapper = mapper;
+        this.idGetter = null;
+        this.idSetter = null;
+        this.updateIdParameterIndex = countParameters(sqlByOperation.get(CrudOperation.UPDATE));
+    }
+
+    private RepositoryMetadata(Class<T> entityType, EnumMap<CrudOperation, String> sqlByOperation, Field idField) {
+        this.entityType = entityType;
+        this.sqlByOperation = sqlByOperation;
+        this.mapper = null;
+        try {
+            idField.setAccessible(true);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            this.idGetter = lookup.unreflectGetter(idField).asType(ID_GETTER_TYPE);
+            this.idSetter = lookup.unreflectSetter(idField).asType(ID_SETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access @Id field " + idField, e);
+        }
+        this.updateIdParameterIndex = countParameters(sqlByOperation.get(CrudOperation.UPDATE));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> RepositoryMetadata<T> of(CrudRepository<T> repository) {
+        return (RepositoryMetadata<T>) REGISTRY.computeIfAbsent(repository.getClass(), c -> build(repository));
+    }
+
+    private static <T> RepositoryMetadata<T> build(CrudRepository<T> repository) {
+        Class<?> repositoryType = repository.getClass();
+        EnumMap<CrudOperation, String> sqlByOperation = new EnumMap<>(CrudOperation.class);
+        sqlByOperation.putAll(repository.declaredSql());
+
+        EntityMapper<T> mapper = repository.entityMapper();
+        if (mapper != null) {
+            for (CrudOperation operation : CrudOperation.values()) {
+                sqlByOperation.putIfAbsent(operation, mapper.sql(operation));
+            }
+        }
+
+        resolveFallback(sqlByOperation, CrudOperation.SAVE, repository::getSaveSql);
+        resolveFallback(sqlByOperation, CrudOperation.UPDATE, repository::getUpdateEntitySql);
+        resolveFallback(sqlByOperation, CrudOperation.FIND_BY_ID, repository::getFindByIdSql);
+        resolveFallback(sqlByOperation, CrudOperation.FIND_ALL, repository::getFindAllSql);
+        resolveFallback(sqlByOperation, CrudOperation.DELETE, repository::getDeleteEntitySql);
+        resolveFallback(sqlByOperation, CrudOperation.DELETE_IN, repository::getDeleteInSql);
+        resolveFallback(sqlByOperation, CrudOperation.ALL_COUNT, repository::getAllCountSql);
+        resolveFallback(sqlByOperation, CrudOperation.FIND_PAGE, repository::getFindPageSql);
+
+        Set<CrudOperation> missing = EnumSet.complementOf(EnumSet.copyOf(sqlByOperation.keySet()));
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("SQL not defined for " + missing + " in " + repositoryType.getName());
+        }
+
+        Class<T> entityType = resolveEntityType(repositoryType);
+        if (mapper != null) return new RepositoryMetadata<>(entityType, sqlByOperation, mapper);
+
+        Field idField = Arrays.stream(entityType.getDeclaredFields())
+                .filter(f -> f.isAnnotationPresent(Id.class))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No ID annotated field found in " + entityType.getName()));
+        if (idField.getType() != Long.class) {
+            throw new IllegalStateException("@Id field " + idField + " must be of type Long");
+        }
+
+        return new RepositoryMetadata<>(entityType, sqlByOperation, idField);
+    }
+
+    private static void resolveFallback(EnumMap<CrudOperation, String> sqlByOperation, CrudOperation operationType, Supplier<String> sqlGetter) {
+        if (sqlByOperation.containsKey(operationType)) return;
+        try {
+            sqlByOperation.put(operationType, sqlGetter.get());
+        } catch (RuntimeException e) {
+            // left unresolved, reported together with any other missing operation
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Class<T> resolveEntityType(Class<?> repositoryType) {
+        for (Class<?> type = repositoryType; type != null && type != Object.class; type = type.getSuperclass()) {
+            Type superType = type.getGenericSuperclass();
+            if (superType instanceof ParameterizedType parameterized && parameterized.getRawType() == CrudRepository.class) {
+                Type argument = parameterized.getActualTypeArguments()[0];
+                if (argument instanceof Class<?> entityType) return (Class<T>) entityType;
+            }
+        }
+        throw new IllegalStateException("Cannot resolve entity type of " + repositoryType.getName());
+    }
+
+    private static int countParameters(String sql) {
+        return (int) sql.chars().filter(c -> c == '?').count();
+    }
+
+    Class<T> entityType() {
+        return entityType;
+    }
+
+    String sql(CrudOperation operationType) {
+        return sqlByOperation.get(operationType);
+    }
+
+    int updateIdParameterIndex() {
+        return updateIdParameterIndex;
+    }
+
+    Long getId(T entity) {
+        if (mapper != null) return mapper.getId(entity);
+        try {
+            return (Long) idGetter.invokeExact((Object) entity);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to read @Id of " + entity, e);
+        }
+    }
+
+    void setId(T entity, Long id) {
+        if (mapper != null) {
+            mapper.setId(entity, id);
+            return;
+        }
+        try {
+            idSetter.invokeExact((Object) entity, id);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to set @Id of " + entity, e);
+        }
+    }
+}
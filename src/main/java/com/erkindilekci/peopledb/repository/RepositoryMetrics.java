@@ -0,0 +1,166 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.CrudOperation;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and counters for every {@link CrudOperation} of a repository, enabled with
+ * {@link CrudRepository#setMetrics}.
+ * <p>
+ * Each operation records its calls, errors, rows read and written, the statements it had to prepare, and how its
+ * time splits into preparing statements, executing them and mapping entities. Only database round trips are
+ * measured, so {@link CrudRepository#findById} served from an {@link EntityCache} records nothing. Streams record
+ * the query when it is opened; their rows are mapped while the caller consumes them and are not counted.
+ * <p>
+ * A repository without metrics pays one volatile read per operation. With metrics, recording reuses a per-thread
+ * {@link OperationProbe} and only updates counters, so it does not allocate once warmed up.
+ */
+public final class RepositoryMetrics implements RepositoryMetricsMXBean {
+
+    private static final class OperationMetrics {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rowsRead = new LongAdder();
+        private final LongAdder rowsWritten = new LongAdder();
+        private final LongAdder prepares = new LongAdder();
+        private final LongAdder prepareNanos = new LongAdder();
+        private final LongAdder executeNanos = new LongAdder();
+        private final LongAdder mapNanos = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        private void reset() {
+            calls.reset();
+            errors.reset();
+            rowsRead.reset();
+            rowsWritten.reset();
+            prepares.reset();
+            prepareNanos.reset();
+            executeNanos.reset();
+            mapNanos.reset();
+            totalNanos.reset();
+            latencies.reset();
+        }
+    }
+
+    private final String name;
+    private final OperationMetrics[] operations;
+    private volatile MetricsListener[] listeners = new MetricsListener[0];
+    private ObjectName objectName;
+
+    public RepositoryMetrics(String name) {
+        this.name = name;
+        this.operations = new OperationMetrics[CrudOperation.values().length];
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new OperationMetrics();
+        }
+    }
+
+    void record(OperationProbe probe, long elapsed) {
+        OperationMetrics metrics = operations[probe.operation.ordinal()];
+        metrics.calls.increment();
+        if (!probe.succeeded) metrics.errors.increment();
+        if (probe.rowsRead != 0) metrics.rowsRead.add(probe.rowsRead);
+        if (probe.rowsWritten != 0) metrics.rowsWritten.add(probe.rowsWritten);
+        if (probe.prepares != 0) metrics.prepares.add(probe.prepares);
+        metrics.prepareNanos.add(probe.prepareNanos);
+        metrics.executeNanos.add(probe.executeNanos);
+        metrics.mapNanos.add(probe.mapNanos);
+        metrics.totalNanos.add(elapsed);
+        metrics.latencies.record(elapsed);
+
+        MetricsListener[] listeners = this.listeners;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].operationCompleted(name, probe.operation, elapsed, probe.rowsRead, probe.rowsWritten, !probe.succeeded);
+        }
+    }
+
+    public synchronized void addListener(MetricsListener listener) {
+        MetricsListener[] grown = Arrays.copyOf(listeners, listeners.length + 1);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    public synchronized void removeListener(MetricsListener listener) {
+        listeners = Arrays.stream(listeners).filter(l -> l != listener).toArray(MetricsListener[]::new);
+    }
+
+    public OperationStats get(CrudOperation operation) {
+        OperationMetrics metrics = operations[operation.ordinal()];
+        return new OperationStats(operation.name(), metrics.calls.sum(), metrics.errors.sum(), metrics.rowsRead.sum(),
+                metrics.rowsWritten.sum(), metrics.prepares.sum(), metrics.prepareNanos.sum(), metrics.executeNanos.sum(),
+                metrics.mapNanos.sum(), metrics.totalNanos.sum(), metrics.latencies.percentile(50),
+                metrics.latencies.percentile(99));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public List<OperationStats> getOperations() {
+        List<OperationStats> stats = new ArrayList<>();
+        for (CrudOperation operation : CrudOperation.values()) {
+            if (operations[operation.ordinal()].calls.sum() > 0) stats.add(get(operation));
+        }
+        return stats;
+    }
+
+    @Override
+    public void reset() {
+        for (OperationMetrics metrics : operations) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server as
+     * {@code com.erkindilekci.peopledb:type=RepositoryMetrics,name=<name>}.
+     */
+    public synchronized void registerMBean() {
+        if (objectName != null) return;
+        try {
+            ObjectName name = new ObjectName("com.erkindilekci.peopledb:type=RepositoryMetrics,name=" + ObjectName.quote(this.name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalStateException("Metrics named " + name + " are already registered", e);
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public synchronized void unregisterMBean() {
+        if (objectName == null) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (InstanceNotFoundException e) {
+            // unregistered by someone else already
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        } finally {
+            objectName = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RepositoryMetrics{" +
+                "name='" + name + '\'' +
+                ", operations=" + getOperations() +
+                '}';
+    }
+}
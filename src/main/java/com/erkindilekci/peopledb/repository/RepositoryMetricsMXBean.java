@@ -0,0 +1,18 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.util.List;
+
+/**
+ * The JMX view of a {@link RepositoryMetrics}, registered by {@link RepositoryMetrics#registerMBean()}.
+ */
+public interface RepositoryMetricsMXBean {
+
+    String getName();
+
+    /**
+     * Statistics for every operation that was called at least once.
+     */
+    List<OperationStats> getOperations();
+
+    void reset();
+}
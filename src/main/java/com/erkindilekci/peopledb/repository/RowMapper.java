@@ -0,0 +1,28 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the rows of one result shape into entities, with every column index resolved when the mapper was compiled.
+ * Rows belonging to one entity must be adjacent; see {@link CrudRepository#compileRowMapper}.
+ */
+interface RowMapper<T> {
+
+    /**
+     * Identifies the entity the current row belongs to.
+     */
+    long extractGroupId(ResultSet rs) throws SQLException;
+
+    /**
+     * Maps the entity from the first row of its group. Must not move the cursor.
+     */
+    T extractEntity(ResultSet rs) throws SQLException;
+
+    /**
+     * Adds what a row of the entity's group contributes beyond the entity itself, e.g. a joined child. Called for every
+     * row of the group, including the first. Must not move the cursor.
+     */
+    default void mergeRow(T entity, ResultSet rs) throws SQLException {
+    }
+}
@@ -0,0 +1,21 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads one value from each row of a result set, for queries whose rows are not grouped into entities.
+ */
+@FunctionalInterface
+interface RowReader<R> {
+
+    R read(ResultSet rs) throws SQLException;
+
+    /**
+     * Builds the reader for one result shape, resolving column indices once per SQL statement.
+     */
+    @FunctionalInterface
+    interface Compiler<R> {
+        RowReader<R> compile(ColumnLayout columns) throws SQLException;
+    }
+}
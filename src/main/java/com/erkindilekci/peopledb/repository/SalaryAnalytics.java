@@ -0,0 +1,104 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Salary statistics of the people in a {@link PersonRepository}, grouped by a column of their home or business
+ * address.
+ * <p>
+ * Totals, averages and extremes are aggregated by the database, so only one row per group is transferred.
+ * Percentiles and histograms cannot be expressed that way; for those, {@link #snapshot} reads every salary once into
+ * primitive arrays and answers any number of such questions from memory.
+ */
+public final class SalaryAnalytics {
+
+    /**
+     * What to group people by. People without that address form a group of their own, named {@code null}.
+     */
+    public enum Dimension {
+        HOME_REGION("HOME_ADDRESS", "REGION"),
+        HOME_STATE("HOME_ADDRESS", "STATE"),
+        HOME_CITY("HOME_ADDRESS", "CITY"),
+        BUSINESS_REGION("BUSINESS_ADDRESS", "REGION"),
+        BUSINESS_STATE("BUSINESS_ADDRESS", "STATE"),
+        BUSINESS_CITY("BUSINESS_ADDRESS", "CITY");
+
+        private final String summarySql;
+        private final String snapshotSql;
+
+        Dimension(String addressColumn, String groupColumn) {
+            String from = " FROM PEOPLE AS P LEFT OUTER JOIN ADDRESSES AS A ON P." + addressColumn + " = A.ID";
+            summarySql = "SELECT A." + groupColumn + ", COUNT(P.SALARY), SUM(P.SALARY), AVG(P.SALARY), MIN(P.SALARY), MAX(P.SALARY)"
+                    + from + " GROUP BY A." + groupColumn + " ORDER BY A." + groupColumn + " NULLS FIRST";
+            // salaries are DECIMAL(15,2), so in cents they are whole numbers that fit a long
+            snapshotSql = "SELECT A." + groupColumn + ", CAST(P.SALARY * 100 AS BIGINT)" + from + " WHERE P.SALARY IS NOT NULL";
+        }
+    }
+
+    public record SalaryStats(String group, long count, BigDecimal total, BigDecimal average, BigDecimal min, BigDecimal max) {
+    }
+
+    private static final String OVERALL_SQL = "SELECT NULL, COUNT(SALARY), SUM(SALARY), AVG(SALARY), MIN(SALARY), MAX(SALARY) FROM PEOPLE";
+
+    private final ConnectionProvider connections;
+
+    public SalaryAnalytics(PersonRepository repository) {
+        this.connections = repository.connections;
+    }
+
+    /**
+     * Count, total, average, minimum and maximum salary over everyone.
+     */
+    public SalaryStats overall() {
+        return summarize(OVERALL_SQL).get(0);
+    }
+
+    /**
+     * Count, total, average, minimum and maximum salary per group, ordered by group.
+     */
+    public List<SalaryStats> summarize(Dimension dimension) {
+        return summarize(dimension.summarySql);
+    }
+
+    private List<SalaryStats> summarize(String sql) {
+        List<SalaryStats> stats = new ArrayList<>();
+        try (ConnectionProvider.Lease lease = connections.lease()) {
+            PreparedStatement ps = lease.statementCache().prepare(sql);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    stats.add(new SalaryStats(rs.getString(1), rs.getLong(2), rs.getBigDecimal(3), rs.getBigDecimal(4),
+                            rs.getBigDecimal(5), rs.getBigDecimal(6)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return stats;
+    }
+
+    /**
+     * Reads every salary with its group into a {@link SalarySnapshot}. The query streams through a forward-only
+     * cursor and each row becomes a {@code long} and an {@code int}, so no entity is ever built. The snapshot does
+     * not see later writes.
+     */
+    public SalarySnapshot snapshot(Dimension dimension) {
+        SalarySnapshot.Builder snapshot = new SalarySnapshot.Builder();
+        try (ConnectionProvider.Lease lease = connections.lease();
+             PreparedStatement ps = lease.connection().prepareStatement(dimension.snapshotSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(CrudRepository.DEFAULT_FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    snapshot.add(rs.getString(1), rs.getLong(2));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return snapshot.build();
+    }
+}
@@ -0,0 +1,251 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Salaries read once by {@link SalaryAnalytics#snapshot}, held as cents in {@code long} arrays.
+ * <p>
+ * The salaries are stored twice: all of them sorted, and laid out group after group with each group's range sorted.
+ * The sorting is the only expensive step and runs on the common fork-join pool when the snapshot is built; after
+ * that a percentile is a single array read and a histogram one binary search per bucket, for everyone or for any
+ * group. A snapshot is immutable and safe to share between threads.
+ */
+public final class SalarySnapshot {
+
+    /**
+     * The most buckets a {@link #histogram} may have, so a bucket width far too small for the salaries fails instead
+     * of allocating a count for every cent between the lowest and the highest salary.
+     */
+    public static final int MAX_BUCKETS = 10_000;
+
+    /**
+     * Counts of salaries in consecutive buckets, the first starting at {@code start}: bucket {@code i} holds salaries
+     * in {@code [start + i * bucketWidth, start + (i + 1) * bucketWidth)}. The counts are copied in and out, so a
+     * histogram cannot be changed once built.
+     */
+    public record Histogram(BigDecimal start, BigDecimal bucketWidth, long[] counts) {
+
+        public Histogram {
+            counts = counts.clone();
+        }
+
+        @Override
+        public long[] counts() {
+            return counts.clone();
+        }
+    }
+
+    private final long[] sorted;
+    private final long[] byGroup;
+    private final int[] groupOffsets;
+    private final List<String> groups;
+    private final Map<String, Integer> groupIndex;
+
+    private SalarySnapshot(long[] sorted, long[] byGroup, int[] groupOffsets, List<String> groups) {
+        this.sorted = sorted;
+        this.byGroup = byGroup;
+        this.groupOffsets = groupOffsets;
+        this.groups = Collections.unmodifiableList(groups);
+        this.groupIndex = new HashMap<>();
+        for (int i = 0; i < groups.size(); i++) {
+            groupIndex.put(groups.get(i), i);
+        }
+    }
+
+    public int size() {
+        return sorted.length;
+    }
+
+    /**
+     * The groups that have at least one salary, ordered by name with the {@code null} group first.
+     */
+    public List<String> getGroups() {
+        return groups;
+    }
+
+    public int size(String group) {
+        int index = indexOf(group);
+        return groupOffsets[index + 1] - groupOffsets[index];
+    }
+
+    /**
+     * The nearest-rank percentile of all salaries, e.g. {@code 50} for the median.
+     */
+    public BigDecimal percentile(double percentile) {
+        return percentile(sorted, 0, sorted.length, percentile);
+    }
+
+    public BigDecimal percentile(String group, double percentile) {
+        int index = indexOf(group);
+        return percentile(byGroup, groupOffsets[index], groupOffsets[index + 1], percentile);
+    }
+
+    /**
+     * The same percentile of every group, in {@link #getGroups()} order.
+     */
+    public Map<String, BigDecimal> percentiles(double percentile) {
+        Map<String, BigDecimal> percentiles = new LinkedHashMap<>();
+        for (int i = 0; i < groups.size(); i++) {
+            percentiles.put(groups.get(i), percentile(byGroup, groupOffsets[i], groupOffsets[i + 1], percentile));
+        }
+        return percentiles;
+    }
+
+    public Histogram histogram(BigDecimal bucketWidth) {
+        return histogram(sorted, 0, sorted.length, bucketWidth);
+    }
+
+    public Histogram histogram(String group, BigDecimal bucketWidth) {
+        int index = indexOf(group);
+        return histogram(byGroup, groupOffsets[index], groupOffsets[index + 1], bucketWidth);
+    }
+
+    private int indexOf(String group) {
+        Integer index = groupIndex.get(group);
+        if (index == null) throw new NoSuchElementException("No salaries in group " + group);
+        return index;
+    }
+
+    private static BigDecimal percentile(long[] cents, int from, int to, double percentile) {
+        if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("percentile must be within [0, 100]: " + percentile);
+        if (from == to) throw new NoSuchElementException("No salaries");
+        long rank = (long) Math.ceil(percentile / 100 * (to - from));
+        return BigDecimal.valueOf(cents[from + (int) Math.max(rank, 1) - 1], 2);
+    }
+
+    private static Histogram histogram(long[] cents, int from, int to, BigDecimal bucketWidth) {
+        long width;
+        try {
+            width = bucketWidth.movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("bucketWidth must be a whole number of cents: " + bucketWidth);
+        }
+        if (width < 1) throw new IllegalArgumentException("bucketWidth must be positive: " + bucketWidth);
+        if (from == to) return new Histogram(BigDecimal.ZERO, bucketWidth, new long[0]);
+
+        long firstBucket = Math.floorDiv(cents[from], width);
+        long buckets = Math.floorDiv(cents[to - 1], width) - firstBucket + 1;
+        if (buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("bucketWidth " + bucketWidth + " needs " + buckets + " buckets, more than " + MAX_BUCKETS);
+        }
+
+        long[] counts = new long[(int) buckets];
+        int lower = from;
+        for (int i = 0; i < counts.length; i++) {
+            int upper = i == counts.length - 1 ? to : firstIndexAtLeast(cents, lower, to, (firstBucket + i + 1) * width);
+            counts[i] = upper - lower;
+            lower = upper;
+        }
+        return new Histogram(BigDecimal.valueOf(firstBucket * width, 2), bucketWidth, counts);
+    }
+
+    private static int firstIndexAtLeast(long[] cents, int from, int to, long value) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cents[mid] < value) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Sorts the ranges of a run of groups, splitting the run in two until one task covers few enough salaries or a
+     * single group, which is then sorted by {@link Arrays#parallelSort} if it is large.
+     */
+    private static final class SortGroups extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 1 << 13;
+
+        private final long[] cents;
+        private final int[] offsets;
+        private final int fromGroup;
+        private final int toGroup;
+
+        private SortGroups(long[] cents, int[] offsets, int fromGroup, int toGroup) {
+            this.cents = cents;
+            this.offsets = offsets;
+            this.fromGroup = fromGroup;
+            this.toGroup = toGroup;
+        }
+
+        @Override
+        protected void compute() {
+            if (toGroup - fromGroup == 1) {
+                Arrays.parallelSort(cents, offsets[fromGroup], offsets[toGroup]);
+            } else if (offsets[toGroup] - offsets[fromGroup] <= THRESHOLD) {
+                for (int group = fromGroup; group < toGroup; group++) {
+                    Arrays.sort(cents, offsets[group], offsets[group + 1]);
+                }
+            } else {
+                int middle = (fromGroup + toGroup) >>> 1;
+                invokeAll(new SortGroups(cents, offsets, fromGroup, middle), new SortGroups(cents, offsets, middle, toGroup));
+            }
+        }
+    }
+
+    static final class Builder {
+
+        private final Map<String, Integer> groupIds = new HashMap<>();
+        private final List<String> groupNames = new ArrayList<>();
+        private long[] cents = new long[1024];
+        private int[] groupOfRow = new int[1024];
+        private int size;
+
+        void add(String group, long salaryCents) {
+            Integer groupId = groupIds.get(group);
+            if (groupId == null) {
+                groupId = groupNames.size();
+                groupIds.put(group, groupId);
+                groupNames.add(group);
+            }
+            if (size == cents.length) {
+                cents = Arrays.copyOf(cents, size * 2);
+                groupOfRow = Arrays.copyOf(groupOfRow, size * 2);
+            }
+            cents[size] = salaryCents;
+            groupOfRow[size] = groupId;
+            size++;
+        }
+
+        SalarySnapshot build() {
+            List<String> groups = new ArrayList<>(groupNames);
+            groups.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+            int[] position = new int[groups.size()];
+            for (int i = 0; i < groups.size(); i++) {
+                position[groupIds.get(groups.get(i))] = i;
+            }
+
+            int[] offsets = new int[groups.size() + 1];
+            for (int row = 0; row < size; row++) {
+                offsets[position[groupOfRow[row]] + 1]++;
+            }
+            for (int i = 0; i < groups.size(); i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            long[] byGroup = new long[size];
+            int[] next = Arrays.copyOf(offsets, groups.size());
+            for (int row = 0; row < size; row++) {
+                byGroup[next[position[groupOfRow[row]]]++] = cents[row];
+            }
+
+            long[] sorted = Arrays.copyOf(cents, size);
+            Arrays.parallelSort(sorted);
+            if (!groups.isEmpty()) ForkJoinPool.commonPool().invoke(new SortGroups(byGroup, offsets, 0, groups.size()));
+            return new SalarySnapshot(sorted, byGroup, offsets, groups);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.AddressMapper;
+import com.erkindilekci.peopledb.model.PersonMapper;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Creates the tables of {@link PersonRepository} and {@link AddressRepository} and brings existing ones up to date.
+ * Changes are applied as numbered migrations and the applied ones are recorded in SCHEMA_VERSION, so
+ * {@link #migrate()} only runs what a database has not seen yet.
+ * <p>
+ * Migrations are not transactional: H2 commits every DDL statement on its own, so one that fails partway leaves the
+ * changes made so far without recording its version. Every migration is therefore written to be idempotent, with
+ * {@code IF NOT EXISTS} and the like, and running {@link #migrate()} again after fixing the cause finishes it.
+ * <p>
+ * Besides the primary keys, the columns people are joined and looked up by are indexed: the parent and address
+ * references, LAST_NAME together with ID for paging by name, and EMAIL. An index is skipped when the database already
+ * has one starting with the same columns, as H2 creates for every foreign key.
+ */
+public final class SchemaManager {
+
+    /**
+     * An index the schema defines, created as {@code CREATE INDEX name ON table(columns)}.
+     */
+    public record Index(String name, String table, List<String> columns) {
+
+        public Index {
+            columns = List.copyOf(columns);
+        }
+
+        public String createSql() {
+            return "CREATE INDEX IF NOT EXISTS " + name + " ON " + table + "(" + String.join(", ", columns) + ")";
+        }
+    }
+
+    public static final List<Index> INDEXES = List.of(
+            new Index("PEOPLE_PARENT_ID", PersonMapper.TABLE, List.of("PARENT_ID")),
+            new Index("PEOPLE_HOME_ADDRESS", PersonMapper.TABLE, List.of("HOME_ADDRESS")),
+            new Index("PEOPLE_BUSINESS_ADDRESS", PersonMapper.TABLE, List.of("BUSINESS_ADDRESS")),
+            new Index("PEOPLE_LAST_NAME", PersonMapper.TABLE, List.of("LAST_NAME", "ID")),
+            new Index("PEOPLE_EMAIL", PersonMapper.TABLE, List.of("EMAIL")));
+
+    private static final String CREATE_VERSION_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS SCHEMA_VERSION (
+              VERSION INT PRIMARY KEY, DESCRIPTION VARCHAR(255) NOT NULL, APPLIED_AT TIMESTAMP NOT NULL)
+            """;
+    private static final String FIND_VERSION_SQL = "SELECT COALESCE(MAX(VERSION), 0) FROM SCHEMA_VERSION";
+    private static final String SAVE_VERSION_SQL = "INSERT INTO SCHEMA_VERSION (VERSION, DESCRIPTION, APPLIED_AT) VALUES (?, ?, ?)";
+    private static final String CREATE_ADDRESSES_SQL = """
+            CREATE TABLE IF NOT EXISTS ADDRESSES (
+              ID NUMERIC(19) GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, STREET_ADDRESS VARCHAR(300),
+              ADDRESS2 VARCHAR(300), CITY VARCHAR(300), STATE VARCHAR(50), POSTCODE VARCHAR(50), COUNTY VARCHAR(300),
+              REGION VARCHAR(300), COUNTRY VARCHAR(300))
+            """;
+    private static final String CREATE_PEOPLE_SQL = """
+            CREATE TABLE IF NOT EXISTS PEOPLE (
+              ID NUMERIC(19) GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, FIRST_NAME VARCHAR(255),
+              LAST_NAME VARCHAR(255), DOB TIMESTAMP, SALARY DECIMAL(15,2), EMAIL VARCHAR(255),
+              HOME_ADDRESS NUMERIC(19) REFERENCES ADDRESSES(ID), BUSINESS_ADDRESS NUMERIC(19) REFERENCES ADDRESSES(ID),
+              PARENT_ID NUMERIC(19) REFERENCES PEOPLE(ID) ON DELETE SET NULL)
+            """;
+
+    @FunctionalInterface
+    private interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Create ADDRESSES and PEOPLE", statements(CREATE_ADDRESSES_SQL, CREATE_PEOPLE_SQL)),
+            new Migration(2, "Add columns missing from tables created by hand", statements(
+                    addColumn(AddressMapper.TABLE, "STREET_ADDRESS VARCHAR(300)"),
+                    addColumn(AddressMapper.TABLE, "ADDRESS2 VARCHAR(300)"),
+                    addColumn(AddressMapper.TABLE, "CITY VARCHAR(300)"),
+                    addColumn(AddressMapper.TABLE, "STATE VARCHAR(50)"),
+                    addColumn(AddressMapper.TABLE, "POSTCODE VARCHAR(50)"),
+                    addColumn(AddressMapper.TABLE, "COUNTY VARCHAR(300)"),
+                    addColumn(AddressMapper.TABLE, "REGION VARCHAR(300)"),
+                    addColumn(AddressMapper.TABLE, "COUNTRY VARCHAR(300)"),
+                    addColumn(PersonMapper.TABLE, "FIRST_NAME VARCHAR(255)"),
+                    addColumn(PersonMapper.TABLE, "LAST_NAME VARCHAR(255)"),
+                    addColumn(PersonMapper.TABLE, "DOB TIMESTAMP"),
+                    addColumn(PersonMapper.TABLE, "SALARY DECIMAL(15,2)"),
+                    addColumn(PersonMapper.TABLE, "EMAIL VARCHAR(255)"),
+                    addColumn(PersonMapper.TABLE, "HOME_ADDRESS NUMERIC(19) REFERENCES ADDRESSES(ID)"),
+                    addColumn(PersonMapper.TABLE, "BUSINESS_ADDRESS NUMERIC(19) REFERENCES ADDRESSES(ID)"),
+                    addColumn(PersonMapper.TABLE, "PARENT_ID NUMERIC(19) REFERENCES PEOPLE(ID) ON DELETE SET NULL"))),
+            new Migration(3, "Index join and lookup columns", SchemaManager::createIndexes));
+
+    private final ConnectionProvider connections;
+
+    public SchemaManager(Connection connection) {
+        this(new SingleConnectionProvider(connection));
+    }
+
+    public SchemaManager(ConnectionPool pool) {
+        this((ConnectionProvider) pool);
+    }
+
+    SchemaManager(ConnectionProvider connections) {
+        this.connections = connections;
+    }
+
+    private static Step statements(String... sql) {
+        return connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (String s : sql) {
+                    statement.execute(s);
+                }
+            }
+        };
+    }
+
+    private static String addColumn(String table, String column) {
+        return "ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS " + column;
+    }
+
+    /**
+     * Applies every migration newer than the database's version.
+     *
+     * @return the version the schema is at afterwards
+     */
+    public int migrate() {
+        return migrate(getLatestVersion());
+    }
+
+    /**
+     * Applies the migrations newer than the database's version, up to and including {@code target}.
+     */
+    int migrate(int target) {
+        try (ConnectionProvider.Lease lease = connections.lease()) {
+            Connection connection = lease.connection();
+            int version = version(connection);
+            if (version < target) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(CREATE_VERSION_TABLE_SQL);
+                }
+            }
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version() <= version || migration.version() > target) continue;
+                apply(connection, migration);
+                version = migration.version();
+            }
+            return version;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The version of the last migration applied to the database, or 0 if it has never been migrated.
+     */
+    public int getVersion() {
+        try (ConnectionProvider.Lease lease = connections.lease()) {
+            return version(lease.connection());
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The version {@link #migrate()} brings a database to.
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    private static int version(Connection connection) throws SQLException {
+        // only look, as creating SCHEMA_VERSION would commit whatever the caller has pending
+        try (ResultSet tables = connection.getMetaData().getTables(null, null, "SCHEMA_VERSION", null)) {
+            if (!tables.next()) return 0;
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(FIND_VERSION_SQL)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void apply(Connection connection, Migration migration) throws SQLException {
+        migration.step().apply(connection);
+        try (PreparedStatement ps = connection.prepareStatement(SAVE_VERSION_SQL)) {
+            ps.setInt(1, migration.version());
+            ps.setString(2, migration.description());
+            ps.setTimestamp(3, Timestamp.from(Instant.now()));
+            ps.executeUpdate();
+        }
+    }
+
+    private static void createIndexes(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (Index index : INDEXES) {
+                if (!isCovered(connection, index.table(), index.columns())) statement.execute(index.createSql());
+            }
+        }
+    }
+
+    /**
+     * Whether {@code table} has an index whose leading columns are {@code columns}, in that order.
+     */
+    static boolean isCovered(Connection connection, String table, List<String> columns) throws SQLException {
+        for (List<String> indexed : indexedColumns(connection.getMetaData(), table).values()) {
+            if (indexed.size() >= columns.size() && indexed.subList(0, columns.size()).equals(columns)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The columns of each index on {@code table}, by index name, in index order.
+     */
+    static Map<String, List<String>> indexedColumns(DatabaseMetaData metaData, String table) throws SQLException {
+        Map<String, List<String>> indexes = new HashMap<>();
+        try (ResultSet rs = metaData.getIndexInfo(null, null, table.toUpperCase(Locale.ROOT), false, false)) {
+            while (rs.next()) {
+                String column = rs.getString("COLUMN_NAME");
+                if (column == null) continue;
+                List<String> columns = indexes.computeIfAbsent(rs.getString("INDEX_NAME"), k -> new ArrayList<>());
+                int position = rs.getShort("ORDINAL_POSITION");
+                while (columns.size() < position) columns.add(null);
+                columns.set(position - 1, column.toUpperCase(Locale.ROOT));
+            }
+        }
+        return indexes;
+    }
+}
@@ -0,0 +1,172 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.exception.UnableToSaveException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A unit of work over one repository.
+ * <p>
+ * Entities loaded through {@link #find} are kept in an identity map, so asking for the same ID again returns the
+ * same instance without a query. Changes are registered rather than written: {@link #registerNew},
+ * {@link #registerDirty} and {@link #registerRemoved} only record the entity, and {@link #flush()} writes everything
+ * in one transaction as batched inserts, then updates, then deletes. Inserts cascade the way
+ * {@link CrudRepository#saveAll} does, so register the root of a new graph rather than each of its members.
+ * <p>
+ * A session is meant for one thread and one request; it is not thread safe.
+ */
+public final class Session<T> implements AutoCloseable {
+
+    private final CrudRepository<T> repository;
+    private final Map<Long, T> identityMap = new HashMap<>();
+    private final Set<T> newEntities = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<T> dirtyEntities = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<T> removedEntities = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<T> insertOrder = new ArrayList<>();
+
+    Session(CrudRepository<T> repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Returns the instance this session already holds for {@code id}, loading it only the first time. Entities
+     * registered as removed are not found.
+     */
+    public Optional<T> find(Long id) {
+        T entity = identityMap.get(id);
+        if (entity == null) {
+            entity = repository.findById(id).orElse(null);
+            if (entity == null) return Optional.empty();
+            identityMap.put(id, entity);
+        }
+        return removedEntities.contains(entity) ? Optional.empty() : Optional.of(entity);
+    }
+
+    public boolean contains(T entity) {
+        Long id = repository.getIdByAnnotation(entity);
+        return newEntities.contains(entity) || id != null && identityMap.get(id) == entity;
+    }
+
+    public void registerNew(T entity) {
+        if (repository.getIdByAnnotation(entity) != null) {
+            throw new IllegalArgumentException("Entity already has an ID: " + entity);
+        }
+        if (newEntities.add(entity)) insertOrder.add(entity);
+    }
+
+    public void registerDirty(T entity) {
+        Long id = requireId(entity);
+        if (removedEntities.contains(entity)) throw new IllegalStateException("Entity is registered as removed: " + entity);
+        attach(id, entity);
+        dirtyEntities.add(entity);
+    }
+
+    /**
+     * Schedules the entity for deletion. A new entity that was never flushed is simply forgotten.
+     */
+    public void registerRemoved(T entity) {
+        if (newEntities.remove(entity)) {
+            insertOrder.remove(entity);
+            return;
+        }
+        attach(requireId(entity), entity);
+        dirtyEntities.remove(entity);
+        removedEntities.add(entity);
+    }
+
+    private Long requireId(T entity) {
+        Long id = repository.getIdByAnnotation(entity);
+        if (id == null) throw new IllegalArgumentException("Entity has no ID, register it as new instead: " + entity);
+        return id;
+    }
+
+    private void attach(Long id, T entity) {
+        T attached = identityMap.putIfAbsent(id, entity);
+        if (attached != null && attached != entity) {
+            throw new IllegalStateException("Session already holds another instance with ID " + id);
+        }
+    }
+
+    public boolean hasPendingChanges() {
+        return !newEntities.isEmpty() || !dirtyEntities.isEmpty() || !removedEntities.isEmpty();
+    }
+
+    /**
+     * Writes every registered change in one transaction. On a connection in auto-commit mode the flush begins that
+     * transaction and commits it, or rolls it back if anything fails. Otherwise the changes join the transaction the
+     * caller already has open, and committing or rolling it back is left to the caller. If anything fails, the IDs
+     * assigned to new entities and to everything their inserts cascaded to are put back and all registrations are
+     * kept, so the flush can be retried, after the caller rolled back its own transaction.
+     */
+    public void flush() {
+        if (!hasPendingChanges()) return;
+
+        List<T> inserts = new ArrayList<>(insertOrder);
+        List<T> updates = new ArrayList<>(dirtyEntities);
+        List<T> deletes = new ArrayList<>(removedEntities);
+        Runnable restoreIds = repository.snapshotIds(inserts);
+
+        try (ConnectionProvider.Lease lease = repository.connections.lease()) {
+            Connection connection = lease.connection();
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) connection.setAutoCommit(false);
+            try {
+                repository.saveAll(() -> inserts.stream().filter(e -> repository.getIdByAnnotation(e) == null).iterator());
+                if (!updates.isEmpty()) repository.updateAll(updates);
+                if (!deletes.isEmpty()) repository.deleteAll(deletes);
+                if (autoCommit) connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                if (autoCommit) CrudRepository.rollbackQuietly(connection);
+                repository.afterRollback();
+                restoreIds.run();
+                throw e;
+            } finally {
+                if (autoCommit) connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new UnableToSaveException("Tried to flush " + inserts.size() + " new, " + updates.size()
+                    + " dirty and " + deletes.size() + " removed entities");
+        }
+
+        updates.forEach(repository::markUnchanged);
+        for (T entity : inserts) {
+            identityMap.put(repository.getIdByAnnotation(entity), entity);
+        }
+        for (T entity : deletes) {
+            identityMap.remove(repository.getIdByAnnotation(entity));
+        }
+        newEntities.clear();
+        insertOrder.clear();
+        dirtyEntities.clear();
+        removedEntities.clear();
+    }
+
+    /**
+     * Forgets every loaded entity and pending change without writing anything.
+     */
+    public void clear() {
+        identityMap.clear();
+        newEntities.clear();
+        insertOrder.clear();
+        dirtyEntities.clear();
+        removedEntities.clear();
+    }
+
+    /**
+     * Discards the session. Pending changes that were not flushed are lost.
+     */
+    @Override
+    public void close() {
+        clear();
+    }
+}
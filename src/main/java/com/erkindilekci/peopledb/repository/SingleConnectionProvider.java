@@ -0,0 +1,49 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.sql.Connection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs every operation on one connection. Operations from different threads are serialized, since the connection and
+ * its cached statements can only serve one of them at a time.
+ */
+final class SingleConnectionProvider implements ConnectionProvider {
+
+    private final StatementCache statementCache;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Lease lease = new Lease() {
+        @Override
+        public Connection connection() {
+            return statementCache.getConnection();
+        }
+
+        @Override
+        public StatementCache statementCache() {
+            return statementCache;
+        }
+
+        @Override
+        public void close() {
+            lock.unlock();
+        }
+    };
+
+    SingleConnectionProvider(Connection connection) {
+        this.statementCache = new StatementCache(connection);
+    }
+
+    @Override
+    public Lease lease() {
+        lock.lock();
+        return lease;
+    }
+
+    StatementCache statementCache() {
+        return statementCache;
+    }
+
+    @Override
+    public void close() {
+        statementCache.close();
+    }
+}
@@ -0,0 +1,219 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.CrudOperation;
+
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Pattern;
+
+/**
+ * The most recent statements that took at least a threshold to execute, enabled with
+ * {@link CrudRepository#setSlowQueryLog}. Each operation of a repository contributes at most its slowest statement,
+ * with the SQL, the types of the parameters bound to it, the rows the operation read or wrote and how long the
+ * statement took to execute. Once {@code capacity} queries are logged, each new one replaces the oldest.
+ * <p>
+ * The first time a statement is slow, its SQL is explained against the database and the plan is kept with every
+ * later entry for it. Only threads that find the same statement slow meanwhile wait for its plan; the others go on.
+ * A query is explained with {@code EXPLAIN ANALYZE}, which runs it again and adds the rows each table scan read, when
+ * it has no parameters or the repository handed over how it bound them, as it does for its queries; JDBC cannot read
+ * bound values back. Everything else gets the plan of a plain {@code EXPLAIN}, including statements that write and
+ * queries that lock their rows with {@code FOR UPDATE}, which must not run twice.
+ */
+public final class SlowQueryLog {
+
+    public static final int DEFAULT_CAPACITY = 100;
+    private static final int MAX_PLANS = 256;
+    private static final Pattern FOR_UPDATE = Pattern.compile("\\bFOR\\s+UPDATE\\b");
+
+    public record SlowQuery(Instant at, CrudOperation operation, String sql, List<String> parameterTypes, long rows,
+                            long elapsedNanos, String plan) {
+    }
+
+    /**
+     * A slow statement seen while its operation is still running, before its rows are known.
+     */
+    record Capture(String sql, List<String> parameterTypes, long elapsedNanos, String plan) {
+    }
+
+    private final Duration threshold;
+    private final long thresholdNanos;
+    private final SlowQuery[] entries;
+    private final ConcurrentHashMap<String, CompletableFuture<String>> plans = new ConcurrentHashMap<>();
+    /**
+     * The SQL of {@link #plans} in the order they were explained, so the oldest is forgotten first.
+     */
+    private final ConcurrentLinkedQueue<String> planOrder = new ConcurrentLinkedQueue<>();
+
+    private int next;
+    private int size;
+    private long recorded;
+
+    public SlowQueryLog(Duration threshold) {
+        this(threshold, DEFAULT_CAPACITY);
+    }
+
+    public SlowQueryLog(Duration threshold, int capacity) {
+        if (threshold.isNegative()) throw new IllegalArgumentException("threshold must not be negative: " + threshold);
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.threshold = threshold;
+        this.thresholdNanos = threshold.toNanos();
+        this.entries = new SlowQuery[capacity];
+    }
+
+    boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    /**
+     * Reads what is needed of a slow statement while its parameters are still bound and its connection leased.
+     *
+     * @param binder how the statement's parameters were bound, or {@code null} if unknown
+     */
+    Capture capture(String sql, PreparedStatement statement, ParameterBinder binder, long elapsedNanos) {
+        List<String> parameterTypes = parameterTypes(statement);
+        return new Capture(sql, parameterTypes, elapsedNanos,
+                plan(sql, statement, parameterTypes.isEmpty() ? ParameterBinder.NONE : binder));
+    }
+
+    /**
+     * The plan of {@code sql}, explained by the first thread to ask for it while later ones wait for that plan
+     * instead of explaining the statement again.
+     */
+    private String plan(String sql, PreparedStatement statement, ParameterBinder binder) {
+        CompletableFuture<String> placeholder = new CompletableFuture<>();
+        CompletableFuture<String> plan = plans.putIfAbsent(sql, placeholder);
+        if (plan != null) return plan.join();
+
+        try {
+            placeholder.complete(explain(sql, statement, binder));
+        } catch (RuntimeException e) {
+            plans.remove(sql, placeholder);
+            placeholder.completeExceptionally(e);
+            throw e;
+        }
+        planOrder.add(sql);
+        while (plans.size() > MAX_PLANS) {
+            String oldest = planOrder.poll();
+            if (oldest == null) break;
+            plans.remove(oldest);
+        }
+        return placeholder.join();
+    }
+
+    synchronized void add(CrudOperation operation, Capture capture, long rows) {
+        entries[next] = new SlowQuery(Instant.now(), operation, capture.sql(), capture.parameterTypes(), rows,
+                capture.elapsedNanos(), capture.plan());
+        next = (next + 1) % entries.length;
+        if (size < entries.length) size++;
+        recorded++;
+    }
+
+    private static List<String> parameterTypes(PreparedStatement statement) {
+        try {
+            ParameterMetaData metaData = statement.getParameterMetaData();
+            List<String> types = new ArrayList<>(metaData.getParameterCount());
+            for (int i = 1; i <= metaData.getParameterCount(); i++) {
+                types.add(metaData.getParameterTypeName(i));
+            }
+            return List.copyOf(types);
+        } catch (SQLException e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * @param binder binds the statement's parameters to analyze it with, or {@code null} to only explain it
+     */
+    private static String explain(String sql, PreparedStatement statement, ParameterBinder binder) {
+        String keyword = sql.strip().toUpperCase(Locale.ROOT);
+        boolean analyze = binder != null && (keyword.startsWith("SELECT") || keyword.startsWith("WITH"))
+                && !FOR_UPDATE.matcher(keyword).find();
+        try {
+            Connection connection = statement.getConnection();
+            try (PreparedStatement explain = connection.prepareStatement((analyze ? "EXPLAIN ANALYZE " : "EXPLAIN ") + sql)) {
+                if (analyze) binder.bind(explain);
+                try (ResultSet rs = explain.executeQuery()) {
+                    StringBuilder plan = new StringBuilder();
+                    while (rs.next()) {
+                        if (!plan.isEmpty()) plan.append('\n');
+                        plan.append(rs.getString(1));
+                    }
+                    return plan.toString();
+                }
+            }
+        } catch (SQLException e) {
+            return "Unable to explain: " + e.getMessage();
+        }
+    }
+
+    public Duration getThreshold() {
+        return threshold;
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    /**
+     * The logged queries, oldest first.
+     */
+    public synchronized List<SlowQuery> getEntries() {
+        List<SlowQuery> logged = new ArrayList<>(size);
+        int first = (next - size + entries.length) % entries.length;
+        for (int i = 0; i < size; i++) {
+            logged.add(entries[(first + i) % entries.length]);
+        }
+        return logged;
+    }
+
+    /**
+     * How many queries have been logged since the last {@link #clear()}, including those replaced since.
+     */
+    public synchronized long getRecorded() {
+        return recorded;
+    }
+
+    /**
+     * The plan kept for {@code sql}, if a statement with exactly that SQL has been slow.
+     */
+    public Optional<String> getPlan(String sql) {
+        CompletableFuture<String> plan = plans.get(sql);
+        if (plan == null || !plan.isDone() || plan.isCompletedExceptionally()) return Optional.empty();
+        return Optional.of(plan.join());
+    }
+
+    /**
+     * Forgets the logged queries and their plans, so statements that are slow again are explained again.
+     */
+    public synchronized void clear() {
+        Arrays.fill(entries, null);
+        next = 0;
+        size = 0;
+        recorded = 0;
+        plans.clear();
+        planOrder.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SlowQueryLog{" +
+                "threshold=" + threshold +
+                ", capacity=" + entries.length +
+                ", size=" + size +
+                ", recorded=" + recorded +
+                '}';
+    }
+}
@@ -0,0 +1,159 @@
+package com.erkindilekci.peopledb.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the {@link PreparedStatement}s of one connection open between calls so their SQL is parsed and planned once.
+ * Statements are keyed by SQL text and result set options and evicted least recently used first; evicted statements
+ * are closed right away and the rest are closed together with the cache.
+ * <p>
+ * Callers must not close a statement handed out by the cache, only the result sets they open on it.
+ */
+public final class StatementCache implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    private record Key(String sql, int resultSetType, int resultSetConcurrency, int autoGeneratedKeys) {
+    }
+
+    private final Connection connection;
+    private final int maxSize;
+    private final LinkedHashMap<Key, PreparedStatement> statements;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private boolean lastPrepareMissed;
+    private Key lastKey;
+    private PreparedStatement lastPrepared;
+
+    public StatementCache(Connection connection) {
+        this(connection, DEFAULT_MAX_SIZE);
+    }
+
+    public StatementCache(Connection connection, int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() <= StatementCache.this.maxSize) return false;
+                evictions++;
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(new Key(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, Statement.NO_GENERATED_KEYS));
+    }
+
+    public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        return prepare(new Key(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, autoGeneratedKeys));
+    }
+
+    public PreparedStatement prepare(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+        return prepare(new Key(sql, resultSetType, resultSetConcurrency, Statement.NO_GENERATED_KEYS));
+    }
+
+    private synchronized PreparedStatement prepare(Key key) throws SQLException {
+        PreparedStatement ps = statements.get(key);
+        if (ps != null && !ps.isClosed()) {
+            hits++;
+            lastPrepareMissed = false;
+            lastKey = key;
+            lastPrepared = ps;
+            ps.clearParameters();
+            return ps;
+        }
+        misses++;
+        lastPrepareMissed = true;
+        if (key.autoGeneratedKeys() == Statement.RETURN_GENERATED_KEYS) {
+            ps = connection.prepareStatement(key.sql(), Statement.RETURN_GENERATED_KEYS);
+        } else {
+            ps = connection.prepareStatement(key.sql(), key.resultSetType(), key.resultSetConcurrency());
+        }
+        statements.put(key, ps);
+        lastKey = key;
+        lastPrepared = ps;
+        return ps;
+    }
+
+    /**
+     * Whether the last {@code prepare} had to create its statement; this and the SQL and statement it handed out are
+     * only meaningful to the holder of the connection's lease, right after its own call.
+     */
+    synchronized boolean lastPrepareMissed() {
+        return lastPrepareMissed;
+    }
+
+    synchronized String lastPreparedSql() {
+        return lastKey == null ? null : lastKey.sql();
+    }
+
+    synchronized PreparedStatement lastPrepared() {
+        return lastPrepared;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public synchronized void close() {
+        List<PreparedStatement> open = new ArrayList<>(statements.values());
+        statements.clear();
+        lastKey = null;
+        lastPrepared = null;
+        open.forEach(StatementCache::closeQuietly);
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StatementCache{" +
+                "size=" + statements.size() +
+                ", maxSize=" + maxSize +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+}
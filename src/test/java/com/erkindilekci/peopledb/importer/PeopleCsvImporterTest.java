@@ -0,0 +1,132 @@
+package com.erkindilekci.peopledb.importer;
+
+import com.erkindilekci.peopledb.exception.ImportException;
+import com.erkindilekci.peopledb.repository.SchemaManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PeopleCsvImporterTest {
+
+    private static final String URL = "jdbc:h2:mem:importer";
+    private static final String HEADER = "Emp ID,Name Prefix,First Name,Middle Initial,Last Name,Gender,E Mail,Father's Name,Mother's Name,"
+            + "Mother's Maiden Name,Date of Birth,Time of Birth,Age in Yrs.,Weight in Kgs.,Date of Joining,Quarter of Joining,"
+            + "Half of Joining,Year of Joining,Month of Joining,Month Name of Joining,Short Month,Day of Joining,DOW of Joining,"
+            + "Short DOW,Age in Company (Years),Salary";
+
+    // holds the in-memory database open while the importer's connections come and go; closing it drops the database
+    private Connection database;
+    private PeopleCsvImporter importer;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        database = DriverManager.getConnection(URL);
+        new SchemaManager(database).migrate();
+        importer = new PeopleCsvImporter(() -> DriverManager.getConnection(URL));
+        importer.setChunkSize(3);
+        importer.setQueueCapacity(2);
+        importer.setParserThreads(2);
+        importer.setWriterThreads(2);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Test
+    public void canImportAllRows() throws SQLException {
+        String csv = IntStream.range(0, 20).mapToObj(PeopleCsvImporterTest::row)
+                .collect(Collectors.joining("\n", HEADER + "\n", "\n"));
+
+        ImportResult result = importer.importFrom(new StringReader(csv));
+
+        assertThat(result.linesRead()).isEqualTo(20);
+        assertThat(result.rowsImported()).isEqualTo(20);
+        assertThat(result.rowsSkipped()).isZero();
+        assertThat(committedPeople()).isEqualTo(20);
+    }
+
+    @Test
+    public void storesEveryColumnOfARow() throws SQLException {
+        importer.importFrom(new StringReader(HEADER + "\n" + row(7) + "\n"));
+
+        try (Connection connection = DriverManager.getConnection(URL);
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT FIRST_NAME, LAST_NAME, DOB, SALARY, EMAIL FROM PEOPLE")) {
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString("FIRST_NAME")).isEqualTo("import7");
+            assertThat(rs.getString("LAST_NAME")).isEqualTo("test");
+            assertThat(rs.getObject("DOB", LocalDateTime.class)).isEqualTo(LocalDateTime.of(1985, 4, 12, 9, 15, 20));
+            assertThat(rs.getBigDecimal("SALARY")).isEqualByComparingTo("50007");
+            assertThat(rs.getString("EMAIL")).isEqualTo("import7@example.com");
+            assertThat(rs.next()).isFalse();
+        }
+    }
+
+    @Test
+    public void skipsBadRowsWhenAsked() throws SQLException {
+        String csv = HEADER + "\n" + row(1) + "\nnot,a,person\n" + row(2) + "\n";
+        importer.setErrorPolicy(ErrorPolicy.SKIP);
+
+        ImportResult result = importer.importFrom(new StringReader(csv));
+
+        assertThat(result.rowsImported()).isEqualTo(2);
+        assertThat(result.rowsSkipped()).isEqualTo(1);
+        assertThat(committedEmails()).containsExactlyInAnyOrder("import1@example.com", "import2@example.com");
+    }
+
+    @Test
+    public void abortsOnBadRowByDefault() {
+        String csv = HEADER + "\n" + row(1) + "\nnot,a,person\n" + row(2) + "\n";
+
+        assertThatThrownBy(() -> importer.importFrom(new StringReader(csv)))
+                .isInstanceOf(ImportException.class)
+                .hasMessageContaining("line 3");
+    }
+
+    /**
+     * The people another connection sees, which are only the committed ones.
+     */
+    private static long committedPeople() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL);
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM PEOPLE")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static List<String> committedEmails() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL);
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT EMAIL FROM PEOPLE")) {
+            List<String> emails = new ArrayList<>();
+            while (rs.next()) {
+                emails.add(rs.getString(1));
+            }
+            return emails;
+        }
+    }
+
+    private static String row(int i) {
+        return i + ",Mr.,import" + i + ",J,test,M,import" + i + "@example.com,Father,Mother,Maiden,"
+                + "4/12/1985,09:15:20 AM,38.5,60,6/4/2010,Q2,H1,2010,6,June,Jun,4,Friday,Fri,13.5,"
+                + (50000 + i);
+    }
+}
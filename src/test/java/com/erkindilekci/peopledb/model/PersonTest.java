@@ -24,4 +24,24 @@ class PersonTest {
 
         assertThat(p1).isNotEqualTo(p2);
     }
+
+    @Test
+    public void copySharesNoPersonWithOriginal() {
+        ZonedDateTime dob = ZonedDateTime.of(1990, 2, 4, 1, 30, 20, 0, ZoneId.of("+3"));
+        Person parent = new Person("parent", "smith", dob);
+        Person child = new Person("child", "smith", dob);
+        Person sibling = new Person("sibling", "smith", dob);
+        parent.addChild(child);
+        parent.addChild(sibling);
+
+        Person copy = child.copy();
+        Person parentCopy = copy.getParent().get();
+        parentCopy.setFirstName("changed");
+
+        assertThat(parentCopy).isNotSameAs(parent);
+        assertThat(parent.getFirstName()).isEqualTo("parent");
+        assertThat(parentCopy.getChildren()).anySatisfy(c -> assertThat(c).isSameAs(copy));
+        assertThat(parentCopy.getChildren()).noneSatisfy(c -> assertThat(c).isSameAs(sibling));
+        assertThat(parentCopy.getChildren()).hasSize(2);
+    }
 }
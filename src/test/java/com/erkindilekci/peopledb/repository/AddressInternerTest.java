@@ -0,0 +1,153 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.Address;
+import com.erkindilekci.peopledb.model.Person;
+import com.erkindilekci.peopledb.model.Region;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AddressInternerTest {
+
+    private static final ZonedDateTime DOB = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+
+    private Connection connection;
+    private AddressRepository addressRepo;
+    private PersonRepository personRepo;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        // a private in-memory database, since the unique content index changes which rows ADDRESSES accepts
+        connection = DriverManager.getConnection("jdbc:h2:mem:interner");
+        new SchemaManager(connection).migrate();
+        addressRepo = new AddressRepository(connection);
+        personRepo = new PersonRepository(connection);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        addressRepo.close();
+        personRepo.close();
+        connection.close();
+    }
+
+    @Test
+    public void mergesExistingDuplicatesWhenCreatingIndex() {
+        Person first = new Person("test", "test", DOB);
+        first.setBusinessAddress(office());
+        Person second = new Person("test", "test", DOB);
+        second.setBusinessAddress(office());
+        personRepo.save(first);
+        personRepo.save(second);
+        assertThat(addressRepo.count()).isEqualTo(2);
+
+        addressRepo.createContentHashIndex();
+        addressRepo.createContentHashIndex();
+
+        assertThat(addressRepo.count()).isEqualTo(1);
+        assertThat(personRepo.findById(second.getId()).get().getBusinessAddress().get().id())
+                .isEqualTo(first.getBusinessAddress().get().id());
+    }
+
+    @Test
+    public void reusesAddressesOnSingleSaves() {
+        addressRepo.createContentHashIndex();
+        personRepo.setAddressInterner(new AddressInterner(16));
+        Person first = new Person("test", "test", DOB);
+        first.setBusinessAddress(office());
+        personRepo.save(first);
+
+        // a fresh interner has to find the row through the database
+        personRepo.setAddressInterner(new AddressInterner(16));
+        Person second = new Person("test", "test", DOB);
+        second.setBusinessAddress(office());
+        second.setHomeAddress(office().withAddress2(null));
+        personRepo.save(second);
+
+        assertThat(second.getBusinessAddress().get().id()).isEqualTo(first.getBusinessAddress().get().id());
+        assertThat(second.getHomeAddress().get().id()).isNotEqualTo(first.getBusinessAddress().get().id());
+        assertThat(personRepo.getAddressInterner().getReused()).isEqualTo(1);
+        assertThat(addressRepo.count()).isEqualTo(2);
+    }
+
+    @Test
+    public void reusesAddressesOnBatchedSaves() throws SQLException {
+        addressRepo.createContentHashIndex();
+        AddressInterner interner = new AddressInterner(16);
+        personRepo.setAddressInterner(interner);
+        addressRepo.save(office());
+
+        List<Person> employees = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Person employee = new Person("test" + i, "test" + i, DOB);
+            employee.setBusinessAddress(office());
+            employees.add(employee);
+        }
+        personRepo.saveAll(employees);
+
+        assertThat(addressRepo.count()).isEqualTo(1);
+        assertThat(interner.getReused()).isEqualTo(1);
+        assertThat(interner.getInserted()).isZero();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(DISTINCT BUSINESS_ADDRESS) FROM PEOPLE")) {
+            rs.next();
+            assertThat(rs.getLong(1)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void changingSharedAddressMovesOnlyThatPerson() {
+        addressRepo.createContentHashIndex();
+        personRepo.setAddressInterner(new AddressInterner(16));
+        Person mover = new Person("test", "test", DOB);
+        mover.setBusinessAddress(office());
+        Person stayer = new Person("test", "test", DOB);
+        stayer.setBusinessAddress(office());
+        personRepo.saveAll(List.of(mover, stayer));
+        long sharedId = stayer.getBusinessAddress().get().id();
+
+        Person loaded = personRepo.findById(mover.getId()).get();
+        loaded.setBusinessAddress(loaded.getBusinessAddress().get().withCity("Boston"));
+        personRepo.update(loaded);
+
+        Address moved = personRepo.findById(mover.getId()).get().getBusinessAddress().get();
+        Address kept = personRepo.findById(stayer.getId()).get().getBusinessAddress().get();
+        assertThat(moved.city()).isEqualTo("Boston");
+        assertThat(moved.id()).isNotEqualTo(sharedId);
+        assertThat(kept.city()).isEqualTo("Washington");
+        assertThat(kept.id()).isEqualTo(sharedId);
+        assertThat(addressRepo.count()).isEqualTo(2);
+    }
+
+    @Test
+    public void forgetsDeletedAddresses() {
+        addressRepo.createContentHashIndex();
+        AddressInterner interner = new AddressInterner(16);
+        addressRepo.setInterner(interner);
+        Address deleted = addressRepo.save(office());
+        addressRepo.save(office().withCity("Boston"));
+
+        addressRepo.delete(deleted);
+        Address saved = addressRepo.save(office());
+
+        assertThat(saved.id()).isNotEqualTo(deleted.id());
+        assertThat(addressRepo.findById(saved.id())).isPresent();
+        assertThat(interner.size()).isEqualTo(2);
+    }
+
+    private static Address office() {
+        return new Address(null, "123 Cookie St", "Apt. 9B", "Washington", "WA", "30340", "United States", "Fulton County", Region.WEST);
+    }
+}
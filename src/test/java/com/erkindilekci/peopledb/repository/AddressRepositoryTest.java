@@ -0,0 +1,54 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.Address;
+import com.erkindilekci.peopledb.model.Region;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AddressRepositoryTest {
+
+    // every connection to an unnamed in-memory database gets a private one, dropped when it closes
+    private static final String URL = "jdbc:h2:mem:";
+
+    private Connection connection;
+    private AddressRepository repo;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection(URL);
+        new SchemaManager(connection).migrate();
+        connection.setAutoCommit(false);
+        repo = new AddressRepository(connection);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repo.close();
+        connection.rollback();
+        connection.close();
+    }
+
+    @Test
+    public void canUpdateChangedFields() {
+        Address saved = repo.save(new Address(null, "123 Cookie St", "Apt. 9B", "Washington", "WA", "30340", "United States", "Fulton County", Region.WEST));
+        Address loaded = repo.findById(saved.id()).get();
+        assertThat(loaded.changedFields()).isEmpty();
+
+        Address moved = loaded.withCity("Seattle").withPostcode("98101");
+        assertThat(moved.changedFields()).containsExactlyInAnyOrder(Address.Field.CITY, Address.Field.POSTCODE);
+        repo.update(moved);
+
+        Address found = repo.findById(saved.id()).get();
+        assertThat(found.city()).isEqualTo("Seattle");
+        assertThat(found.postcode()).isEqualTo("98101");
+        assertThat(found.streetAddress()).isEqualTo("123 Cookie St");
+        assertThat(moved.changedFields()).isEmpty();
+    }
+}
@@ -0,0 +1,78 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.Person;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AsyncPersonRepositoryTest {
+
+    private static final String URL = "jdbc:h2:mem:async";
+
+    // holds the in-memory database open while pooled connections come and go; closing it drops the database
+    private Connection database;
+
+    private ConnectionPool pool;
+    private AsyncPersonRepository repo;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        database = DriverManager.getConnection(URL);
+        new SchemaManager(database).migrate();
+        pool = new ConnectionPool(() -> DriverManager.getConnection(URL), 4);
+        repo = new AsyncPersonRepository(new PersonRepository(pool), pool);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repo.close();
+        pool.close();
+        database.close();
+    }
+
+    @Test
+    public void canFanOutManyLookups() {
+        Person saved = repo.save(new Person("async", "async", ZonedDateTime.now())).join();
+
+        List<CompletableFuture<Optional<Person>>> lookups = IntStream.range(0, 200)
+                .mapToObj(i -> repo.findById(saved.getId()))
+                .toList();
+        CompletableFuture.allOf(lookups.toArray(CompletableFuture[]::new)).join();
+
+        assertThat(lookups).allSatisfy(lookup -> assertThat(lookup.join()).contains(saved));
+        assertThat(pool.getOpenConnections()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    public void canDeleteAsynchronously() {
+        Person saved = repo.save(new Person("async", "async", ZonedDateTime.now())).join();
+        long startCount = repo.count().join();
+
+        repo.delete(saved).join();
+
+        assertThat(repo.count().join()).isEqualTo(startCount - 1);
+        assertThat(repo.findById(saved.getId()).join()).isEmpty();
+    }
+
+    @Test
+    public void canDeleteSeveralAsynchronously() {
+        Person first = repo.save(new Person("async", "async", ZonedDateTime.now())).join();
+        Person second = repo.save(new Person("async", "async", ZonedDateTime.now())).join();
+        long startCount = repo.count().join();
+
+        repo.delete(first, second).join();
+
+        assertThat(repo.count().join()).isEqualTo(startCount - 2);
+    }
+}
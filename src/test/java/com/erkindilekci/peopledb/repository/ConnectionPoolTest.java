@@ -0,0 +1,91 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.Person;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:h2:mem:pool";
+
+    // holds the in-memory database open while pooled connections come and go; closing it drops the database
+    private Connection database;
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        database = DriverManager.getConnection(URL);
+        new SchemaManager(database).migrate();
+        pool = new ConnectionPool(() -> DriverManager.getConnection(URL), 4, Duration.ofMillis(200), 1);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        pool.close();
+        database.close();
+    }
+
+    @Test
+    public void sharesOneRepositoryAcrossThreads() throws Exception {
+        PersonRepository repo = new PersonRepository(pool);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Person>> futures = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                int n = i;
+                futures.add(executor.submit(() -> {
+                    Person person = new Person("pooled" + n, "pooled" + n, ZonedDateTime.now());
+                    person.addChild(new Person("pooledchild" + n, "pooledchild" + n, ZonedDateTime.now()));
+                    repo.save(person);
+                    return repo.findById(person.getId()).get();
+                }));
+            }
+            for (Future<Person> future : futures) {
+                Person found = future.get();
+                assertThat(found.getChildren()).hasSize(1);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(pool.getOpenConnections()).isLessThanOrEqualTo(4);
+        assertThat(pool.getActiveConnections()).isZero();
+    }
+
+    @Test
+    public void timesOutWhenExhausted() throws SQLException {
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < pool.getMaxSize(); i++) {
+            connections.add(pool.getConnection());
+        }
+
+        assertThatThrownBy(() -> pool.getConnection()).isInstanceOf(SQLTransientConnectionException.class);
+
+        connections.get(0).close();
+        try (Connection connection = pool.getConnection()) {
+            assertThat(connection.isValid(1)).isTrue();
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        assertThat(pool.getAcquireTimeouts()).isEqualTo(1);
+        assertThat(pool.getIdleConnections()).isEqualTo(pool.getMaxSize());
+    }
+}
@@ -0,0 +1,71 @@
+package com.erkindilekci.peopledb.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntityCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        EntityCache<String> cache = new EntityCache<>(2, EntityCache.EvictionPolicy.LRU);
+        put(cache, 1, "one");
+        put(cache, 2, "two");
+        cache.get(1);
+
+        put(cache, 3, "three");
+
+        assertThat(cache.get(1)).isEqualTo("one");
+        assertThat(cache.get(2)).isNull();
+        assertThat(cache.get(3)).isEqualTo("three");
+        assertThat(cache.getEvictions()).isEqualTo(1);
+    }
+
+    @Test
+    public void evictsLeastFrequentlyUsed() {
+        EntityCache<String> cache = new EntityCache<>(2, EntityCache.EvictionPolicy.LFU);
+        put(cache, 1, "one");
+        put(cache, 2, "two");
+        cache.get(1);
+        cache.get(1);
+        cache.get(2);
+
+        put(cache, 3, "three");
+        put(cache, 4, "four");
+
+        assertThat(cache.get(1)).isEqualTo("one");
+        assertThat(cache.get(2)).isNull();
+        assertThat(cache.get(3)).isNull();
+        assertThat(cache.get(4)).isEqualTo("four");
+        assertThat(cache.getEvictions()).isEqualTo(2);
+    }
+
+    @Test
+    public void expiresEntriesAfterTimeToLive() throws InterruptedException {
+        EntityCache<String> cache = new EntityCache<>(2, EntityCache.EvictionPolicy.LRU, Duration.ofMillis(20));
+        put(cache, 1, "one");
+
+        Thread.sleep(50);
+
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.getExpirations()).isEqualTo(1);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void dropsLoadsThatRaceWithAnInvalidation() {
+        EntityCache<String> cache = new EntityCache<>(2, EntityCache.EvictionPolicy.LRU);
+        long loadToken = cache.beginLoad();
+
+        cache.invalidate(1);
+        cache.putIfNotInvalidated(1, "stale", loadToken);
+
+        assertThat(cache.get(1)).isNull();
+    }
+
+    private static void put(EntityCache<String> cache, long id, String value) {
+        cache.putIfNotInvalidated(id, value, cache.beginLoad());
+    }
+}
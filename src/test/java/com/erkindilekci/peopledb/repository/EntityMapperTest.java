@@ -0,0 +1,95 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.Address;
+import com.erkindilekci.peopledb.model.AddressMapper;
+import com.erkindilekci.peopledb.model.CrudOperation;
+import com.erkindilekci.peopledb.model.Person;
+import com.erkindilekci.peopledb.model.PersonMapper;
+import com.erkindilekci.peopledb.model.Region;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntityMapperTest {
+
+    private static final ZonedDateTime DOB = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+
+    private Connection connection;
+    private AddressRepository repo;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:mappers");
+        new SchemaManager(connection).migrate();
+        repo = new AddressRepository(connection);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repo.close();
+        connection.close();
+    }
+
+    @Test
+    public void generatesSqlFromFields() {
+        assertThat(PersonMapper.INSTANCE.columns()).containsExactly("ID", "FIRST_NAME", "LAST_NAME", "DOB", "SALARY", "EMAIL");
+        assertThat(PersonMapper.UPDATE_SQL)
+                .isEqualTo("UPDATE PEOPLE SET FIRST_NAME = ?, LAST_NAME = ?, DOB = ?, SALARY = ?, EMAIL = ? WHERE ID = ?");
+        assertThat(AddressMapper.INSTANCE.sql(CrudOperation.ALL_COUNT)).isEqualTo("SELECT COUNT(*) FROM ADDRESSES");
+    }
+
+    @Test
+    public void repositoryWithoutHandWrittenMappingCanSaveAndRead() {
+        Address saved = repo.save(new Address(null, "123 Cookie St", "Apt. 9B", "Washington", "WA", "30340", "United States", "Fulton County", Region.WEST));
+        Address updated = saved.withCity("Seattle");
+        repo.update(updated);
+
+        assertThat(repo.findById(saved.id())).contains(updated);
+        assertThat(repo.findById(saved.id()).orElseThrow().changedFields()).isEmpty();
+        assertThat(repo.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void readsRegionsStoredInAnyCase() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO ADDRESSES (CITY, REGION) VALUES ('Seattle', 'west')");
+        }
+
+        assertThat(repo.findAll()).extracting(Address::region).containsExactly(Region.WEST);
+    }
+
+    @Test
+    public void leavesAbsentColumnsAtTheirDefault() throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(PersonMapper.INSERT_SQL)) {
+            Person person = new Person(null, "test", "test", DOB, new BigDecimal("100.00"));
+            person.setEmail("test@test.com");
+            PersonMapper.INSTANCE.bind(person, ps, 1);
+            ps.executeUpdate();
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT ID AS P_ID, FIRST_NAME AS P_FIRST_NAME, DOB AS P_DOB FROM PEOPLE")) {
+            List<String> labels = List.of("P_ID", "P_FIRST_NAME", "P_DOB");
+            int[] columns = PersonMapper.INSTANCE.resolve(label -> labels.indexOf("P_" + label) + 1);
+            rs.next();
+
+            Person read = PersonMapper.INSTANCE.read(rs, columns);
+            assertThat(read.getFirstName()).isEqualTo("test");
+            assertThat(read.getDob().toInstant()).isEqualTo(DOB.toInstant());
+            assertThat(read.getLastName()).isNull();
+            assertThat(read.getEmail()).isNull();
+        }
+    }
+}
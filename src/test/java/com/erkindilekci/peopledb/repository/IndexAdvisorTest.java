@@ -0,0 +1,143 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.Person;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class IndexAdvisorTest {
+
+    private static final ZonedDateTime DOB = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+    private static final int PEOPLE = 20;
+
+    private Connection connection;
+    private PersonRepository repo;
+    private IndexAdvisor advisor;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:advisor");
+        repo = new PersonRepository(connection);
+        advisor = new IndexAdvisor();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repo.close();
+        connection.close();
+    }
+
+    /**
+     * The tables as the schema defines them, with only the indexes H2 creates for keys, not the ones it adds for lookups.
+     */
+    private void createTablesWithoutIndexes() {
+        new SchemaManager(connection).migrate(2);
+    }
+
+    private long saveFamily() {
+        Person parent = new Person("parent", "test", DOB);
+        for (int i = 1; i < PEOPLE; i++) {
+            parent.addChild(new Person("child" + i, "test" + i, DOB));
+        }
+        repo.save(parent);
+        return parent.getId();
+    }
+
+    private void runQueries(long id) {
+        repo.findById(id);
+        repo.findPageByLastName(null, 5);
+        repo.findPageByLastName(new PersonRepository.LastNameKey("test", id), 5);
+        try (Stream<PersonRepository.Relative> descendants = repo.findDescendants(id, 2)) {
+            assertThat(descendants).hasSize(PEOPLE);
+        }
+    }
+
+    @Test
+    public void countsAFullUpdateBatchOnce() throws SQLException {
+        new SchemaManager(connection).migrate();
+        Person first = repo.save(new Person("first", "test", DOB));
+        Person second = repo.save(new Person("second", "test", DOB));
+        repo.setBatchSize(2);
+        repo.setIndexAdvisor(advisor);
+        first.setSalary(BigDecimal.ONE);
+        second.setSalary(BigDecimal.TEN);
+
+        repo.updateAll(List.of(first, second));
+
+        assertThat(advisor.getColumnUses()).containsExactly(new IndexAdvisor.ColumnUse("PEOPLE", "ID", 1, 0));
+    }
+
+    @Test
+    public void reportsScannedColumnsWithoutAnIndex() {
+        createTablesWithoutIndexes();
+        long id = saveFamily();
+        repo.setIndexAdvisor(advisor);
+        runQueries(id);
+
+        List<IndexAdvisor.MissingIndex> missing = advisor.getMissingIndexes(connection);
+        assertThat(missing).extracting(IndexAdvisor.MissingIndex::table, IndexAdvisor.MissingIndex::column)
+                .containsExactly(tuple("PEOPLE", "LAST_NAME"));
+        IndexAdvisor.MissingIndex lastName = missing.get(0);
+        assertThat(lastName.executions()).isEqualTo(1);
+        assertThat(lastName.elapsedNanos()).isPositive();
+        assertThat(lastName.rowsPerScan()).isGreaterThanOrEqualTo(PEOPLE);
+        assertThat(lastName.createIndexSql()).isEqualTo("CREATE INDEX IF NOT EXISTS PEOPLE_LAST_NAME ON PEOPLE(LAST_NAME)");
+    }
+
+    @Test
+    public void recordsLookupsAsWellAsScans() {
+        createTablesWithoutIndexes();
+        long id = saveFamily();
+        repo.setIndexAdvisor(advisor);
+        repo.findById(id);
+        repo.findById(id);
+
+        assertThat(advisor.getColumnUses()).extracting(IndexAdvisor.ColumnUse::table, IndexAdvisor.ColumnUse::column,
+                        IndexAdvisor.ColumnUse::executions, IndexAdvisor.ColumnUse::scanExecutions)
+                .containsExactly(tuple("PEOPLE", "ID", 2L, 0L));
+        assertThat(advisor.getMissingIndexes(connection)).isEmpty();
+    }
+
+    @Test
+    public void reportsNothingOnceTheSchemaIsMigrated() {
+        new SchemaManager(connection).migrate();
+        long id = saveFamily();
+        repo.setIndexAdvisor(advisor);
+        runQueries(id);
+
+        assertThat(advisor.getColumnUses()).extracting(IndexAdvisor.ColumnUse::column).contains("PARENT_ID", "LAST_NAME");
+        assertThat(advisor.getMissingIndexes(connection)).isEmpty();
+    }
+
+    @Test
+    public void findsColumnsOfJoinConditions() {
+        List<IndexAdvisor.Predicate> predicates = IndexAdvisor.parse("""
+                SELECT
+                    "P"."ID"
+                FROM "PUBLIC"."PEOPLE" "P"
+                    /* PUBLIC.PRIMARY_KEY_8: ID = ?1 */
+                    /* WHERE P.ID = ?1
+                    */
+                LEFT OUTER JOIN "PUBLIC"."PEOPLE" "C"
+                    /* PUBLIC.PRIMARY_KEY_8 */
+                    ON "P"."ID" = "C"."PARENT_ID"
+                WHERE "P"."ID" = ?1
+                """);
+
+        assertThat(predicates).containsExactly(
+                new IndexAdvisor.Predicate("PEOPLE", "ID", false),
+                new IndexAdvisor.Predicate("PEOPLE", "PARENT_ID", true));
+    }
+}
@@ -1,5 +1,7 @@
 package com.erkindilekci.peopledb.repository;
 
+import com.erkindilekci.peopledb.importer.ImportResult;
+import com.erkindilekci.peopledb.importer.PeopleCsvImporter;
 import com.erkindilekci.peopledb.model.Address;
 import com.erkindilekci.peopledb.model.Person;
 import com.erkindilekci.peopledb.model.Region;
@@ -8,36 +10,42 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
-import java.io.IOException;
 import java.math.BigDecimal;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.time.*;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 public class PersonRepositoryTest {
 
+    // every connection to an unnamed in-memory database gets a private one, dropped when it closes
+    private static final String URL = "jdbc:h2:mem:";
+    private static final String DATA_URL = "jdbc:h2:~/peopletest".replace("~", System.getProperty("user.home"));
+
     private Connection connection;
     private PersonRepository repo;
 
     @BeforeEach
     void setUp() throws SQLException {
-        connection = DriverManager.getConnection("jdbc:h2:~/peopletest".replace("~", System.getProperty("user.home")));
+        connection = DriverManager.getConnection(URL);
+        new SchemaManager(connection).migrate();
         connection.setAutoCommit(false);
         repo = new PersonRepository(connection);
     }
 
     @AfterEach
     void tearDown() throws SQLException {
+        repo.close();
         if (connection != null) {
             connection.close();
         }
@@ -158,6 +166,46 @@ public class PersonRepositoryTest {
                 .contains("childtest1", "childtest2", "childtest3");
     }
 
+    @Test
+    public void canFindAllWithRelationsInOnePass() {
+        ZonedDateTime timestampOfJohn = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+        Person john = new Person("test1", "test1", timestampOfJohn);
+        john.setHomeAddress(new Address(null, "123 Cookie St", "Apt. 9B", "Washington", "WA", "30340", "United States", "Fulton County", Region.WEST));
+        john.addChild(new Person("childtest1", "childtest1", timestampOfJohn.minusYears(24)));
+        john.addChild(new Person("childtest2", "childtest2", timestampOfJohn.minusYears(26)));
+        Person jane = repo.save(new Person("test2", "test2", timestampOfJohn));
+        repo.save(john);
+
+        List<Person> people = repo.findAllWithRelations();
+
+        Person foundJohn = people.stream().filter(p -> p.getId().equals(john.getId())).findFirst().get();
+        Person foundJane = people.stream().filter(p -> p.getId().equals(jane.getId())).findFirst().get();
+        assertThat(foundJohn.getChildren()).extracting(Person::getFirstName).containsExactlyInAnyOrder("childtest1", "childtest2");
+        assertThat(foundJohn.getHomeAddress().get().city()).isEqualTo("Washington");
+        assertThat(foundJane.getChildren()).isEmpty();
+        assertThat(people).extracting(Person::getId).doesNotHaveDuplicates();
+    }
+
+    @Test
+    public void canMixQueriesWithDifferentResultShapes() {
+        ZonedDateTime timestampOfJohn = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+        Person john = new Person("test1", "test1", timestampOfJohn);
+        john.setEmail("john@example.com");
+        john.setBusinessAddress(new Address(null, "123 Cookie St", "Apt. 9B", "Washington", "WA", "30340", "United States", "Fulton County", Region.WEST));
+        repo.save(john);
+
+        Person beforeFindAll = repo.findById(john.getId()).get();
+        List<Person> people = repo.findPage(john.getId() - 1, 1).content();
+        Person afterFindAll = repo.findById(john.getId()).get();
+
+        assertThat(people).containsExactly(john);
+        assertThat(people.get(0).isLoaded(Person.Relation.BUSINESS_ADDRESS)).isFalse();
+        assertThat(people.get(0).getBusinessAddress().get().city()).isEqualTo("Washington");
+        assertThat(beforeFindAll.getBusinessAddress().get().region()).isEqualTo(Region.WEST);
+        assertThat(afterFindAll.getBusinessAddress().get().county()).isEqualTo("Fulton County");
+        assertThat(afterFindAll.getEmail()).isEqualTo("john@example.com");
+    }
+
     @Test
     public void testPersonIdNotFound() {
         Optional<Person> foundPerson = repo.findById(-1L);
@@ -182,6 +230,67 @@ public class PersonRepositoryTest {
         assertThat(people.size()).isGreaterThanOrEqualTo(10);
     }
 
+    @Test
+    public void canStreamAll() {
+        repo.save(new Person("test1", "test1", ZonedDateTime.now()));
+        repo.save(new Person("test2", "test2", ZonedDateTime.now()));
+        long count = repo.count();
+
+        try (Stream<Person> people = repo.streamAll(100)) {
+            assertThat(people.filter(p -> p.getId() > 0).count()).isEqualTo(count);
+        }
+    }
+
+    @Test
+    public void canPageThroughPeopleById() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(repo.save(new Person("test" + i, "test" + i, ZonedDateTime.now())).getId());
+        }
+
+        Page<Person, Long> first = repo.findPage(ids.get(0) - 1, 2);
+        Page<Person, Long> second = repo.findPage(first.nextKey(), 2);
+        Page<Person, Long> last = repo.findPage(second.nextKey(), 2);
+
+        assertThat(first.content()).extracting(Person::getId).containsExactly(ids.get(0), ids.get(1));
+        assertThat(second.content()).extracting(Person::getId).containsExactly(ids.get(2), ids.get(3));
+        assertThat(last.content()).extracting(Person::getId).containsExactly(ids.get(4));
+        assertThat(last.hasNext()).isFalse();
+    }
+
+    @Test
+    public void canPageThroughPeopleByLastName() {
+        for (int i = 5; i > 0; i--) {
+            repo.save(new Person("test" + i, "test" + i % 3, ZonedDateTime.now()));
+        }
+
+        Page<Person, PersonRepository.LastNameKey> both = repo.findPageByLastName(null, 6);
+        Page<Person, PersonRepository.LastNameKey> first = repo.findPageByLastName(null, 3);
+        Page<Person, PersonRepository.LastNameKey> second = repo.findPageByLastName(first.nextKey(), 3);
+
+        List<Person> paged = new ArrayList<>(first.content());
+        paged.addAll(second.content());
+        assertThat(paged).extracting(Person::getId).containsExactlyElementsOf(both.content().stream().map(Person::getId).toList());
+        assertThat(paged).extracting(Person::getLastName).isSorted();
+    }
+
+    @Test
+    public void canPageThroughPeopleWithoutLastName() {
+        for (int i = 0; i < 6; i++) {
+            repo.save(new Person("test" + i, i % 2 == 0 ? null : "test" + i, ZonedDateTime.now()));
+        }
+
+        List<Person> paged = new ArrayList<>();
+        PersonRepository.LastNameKey after = null;
+        do {
+            Page<Person, PersonRepository.LastNameKey> page = repo.findPageByLastName(after, 2);
+            paged.addAll(page.content());
+            after = page.nextKey();
+        } while (after != null);
+
+        assertThat(paged).extracting(Person::getFirstName).containsExactly("test0", "test2", "test4", "test1", "test3", "test5");
+    }
+
     @Test
     public void canGetCount() {
         long startCount = repo.count();
@@ -215,6 +324,68 @@ public class PersonRepositoryTest {
         assertThat(endCount).isEqualTo(startCount - 2);
     }
 
+    @Test
+    public void canDeleteAllByIdInChunks() {
+        repo.setBatchSize(2);
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            people.add(new Person("bulktest" + i, "bulktest", ZonedDateTime.now()));
+        }
+        repo.saveAll(people);
+        long startCount = repo.count();
+
+        long deleted = repo.deleteAllById(people.stream().map(Person::getId).toList());
+
+        assertThat(deleted).isEqualTo(5);
+        assertThat(repo.count()).isEqualTo(startCount - 5);
+    }
+
+    @Test
+    public void deleteAllByIdJoinsCallersTransaction() throws SQLException {
+        repo.setBatchSize(2);
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            people.add(new Person("bulktest" + i, "bulktest", ZonedDateTime.now()));
+        }
+        repo.saveAll(people);
+        connection.commit();
+
+        repo.deleteAllById(people.stream().map(Person::getId).toList());
+        connection.rollback();
+
+        assertThat(repo.findById(people.get(2).getId())).isPresent();
+    }
+
+    @Test
+    public void canDeleteWhereInChunks() {
+        repo.setBatchSize(2);
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            people.add(new Person("bulktest" + i, "deletewheretest", ZonedDateTime.now()));
+        }
+        repo.saveAll(people);
+
+        assertThat(repo.deleteWhere("LAST_NAME = ?", "deletewheretest")).isEqualTo(5);
+        assertThat(repo.findById(people.get(4).getId())).isEmpty();
+    }
+
+    @Test
+    public void canUpdateSalariesInBulk() {
+        repo.setBatchSize(2);
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            people.add(new Person(null, "bulktest" + i, "bulktest", ZonedDateTime.now(), new BigDecimal("1000.00")));
+        }
+        repo.saveAll(people);
+        List<Long> ids = new ArrayList<>(people.stream().map(Person::getId).toList());
+        ids.add(-1L);
+
+        long updated = repo.updateSalary(ids, salary -> salary.multiply(new BigDecimal("1.10")));
+
+        assertThat(updated).isEqualTo(3);
+        assertThat(repo.findById(people.get(2).getId()).get().getSalary()).isEqualByComparingTo("1100.00");
+    }
+
     @Test
     public void canUpdate() {
         Person savedPerson = repo.save(new Person("test", "test", ZonedDateTime.now()));
@@ -228,23 +399,343 @@ public class PersonRepositoryTest {
         assertThat(p2.getSalary()).isNotEqualTo(p1.getSalary());
     }
 
+    @Test
+    public void canSaveDeepFamilyTree() {
+        ZonedDateTime timestampOfJohn = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+        Person root = new Person("test", "test", timestampOfJohn);
+        Person youngest = root;
+        for (int i = 0; i < 5000; i++) {
+            Person child = new Person("childtest" + i, "childtest" + i, timestampOfJohn);
+            youngest.addChild(child);
+            youngest = child;
+        }
+
+        repo.save(root);
+
+        assertThat(youngest.getId()).isGreaterThan(0);
+        Person parentOfYoungest = youngest.getParent().get();
+        assertThat(repo.findById(parentOfYoungest.getId()).get().getChildren())
+                .extracting(Person::getId).containsExactly(youngest.getId());
+    }
+
+    @Test
+    public void savesEachGenerationInBatches() {
+        ZonedDateTime timestampOfJohn = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+        Person root = new Person("test", "test", timestampOfJohn);
+        List<Person> generation = List.of(root);
+        for (int depth = 0; depth < 3; depth++) {
+            List<Person> next = new ArrayList<>();
+            for (Person parent : generation) {
+                for (int i = 0; i < 4; i++) {
+                    Person child = new Person("childtest" + depth, "childtest" + i, timestampOfJohn);
+                    parent.addChild(child);
+                    next.add(child);
+                }
+            }
+            generation = next;
+        }
+        long startCount = repo.count();
+
+        repo.saveAll(List.of(root));
+
+        assertThat(repo.count()).isEqualTo(startCount + 1 + 4 + 16 + 64);
+        for (Person grandchild : generation) {
+            Person parent = grandchild.getParent().get();
+            assertThat(repo.findById(parent.getId()).get().getChildren()).contains(grandchild);
+        }
+    }
+
+    @Test
+    public void canFindDescendantsAndAncestors() {
+        ZonedDateTime timestampOfJohn = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+        Person root = new Person("test", "test", timestampOfJohn);
+        Person child1 = new Person("childtest1", "childtest", timestampOfJohn);
+        Person child2 = new Person("childtest2", "childtest", timestampOfJohn);
+        Person grandchild = new Person("grandchildtest", "grandchildtest", timestampOfJohn);
+        root.addChild(child1);
+        root.addChild(child2);
+        child1.addChild(grandchild);
+        repo.save(root);
+
+        try (Stream<PersonRepository.Relative> descendants = repo.findDescendants(root.getId(), 1)) {
+            assertThat(descendants.toList()).extracting(PersonRepository.Relative::depth).containsExactly(0, 1, 1);
+        }
+        try (Stream<PersonRepository.Relative> ancestors = repo.findAncestors(grandchild.getId())) {
+            assertThat(ancestors.toList())
+                    .extracting(r -> r.person().getId(), PersonRepository.Relative::depth)
+                    .containsExactly(tuple(grandchild.getId(), 0), tuple(child1.getId(), 1), tuple(root.getId(), 2));
+        }
+
+        Person tree = repo.findFamilyTree(root.getId(), 5).get();
+        assertThat(tree.getChildren()).containsExactlyInAnyOrder(child1, child2);
+        Person foundChild1 = tree.getChildren().stream().filter(child1::equals).findFirst().get();
+        assertThat(foundChild1.getChildren()).containsExactly(grandchild);
+
+        Person lineage = repo.findWithAncestors(grandchild.getId()).get();
+        assertThat(lineage.getParent().get().getParent().get()).isEqualTo(root);
+    }
+
+    @Test
+    public void stopsWalkingAncestorsAroundACycle() throws SQLException {
+        Person first = repo.save(new Person("test", "test", ZonedDateTime.now()));
+        Person second = repo.save(new Person("test", "test", ZonedDateTime.now()));
+        try (PreparedStatement ps = connection.prepareStatement("UPDATE PEOPLE SET PARENT_ID = ? WHERE ID = ?")) {
+            ps.setLong(1, second.getId());
+            ps.setLong(2, first.getId());
+            ps.executeUpdate();
+            ps.setLong(1, first.getId());
+            ps.setLong(2, second.getId());
+            ps.executeUpdate();
+        }
+
+        try (Stream<PersonRepository.Relative> ancestors = repo.findAncestors(first.getId(), 3)) {
+            assertThat(ancestors.toList()).extracting(PersonRepository.Relative::depth).containsExactly(0, 1, 2, 3);
+        }
+        try (Stream<PersonRepository.Relative> ancestors = repo.findAncestors(first.getId())) {
+            assertThat(ancestors.count()).isEqualTo(PersonRepository.MAX_ANCESTOR_DEPTH + 1);
+        }
+    }
+
+    @Test
+    public void loadsRelationsOnFirstAccess() {
+        ZonedDateTime timestampOfJohn = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+        Person john = new Person("test", "test", timestampOfJohn);
+        john.setHomeAddress(new Address(null, "123 Cookie St", "Apt. 9B", "Washington", "WA", "30340", "United States", "Fulton County", Region.WEST));
+        Person child = new Person("childtest", "childtest", timestampOfJohn);
+        john.addChild(child);
+        repo.save(john);
+
+        Person foundJohn = repo.findById(john.getId()).get();
+        Person foundChild = repo.findById(child.getId()).get();
+
+        assertThat(foundJohn.isLoaded(Person.Relation.CHILDREN)).isFalse();
+        assertThat(foundJohn.isLoaded(Person.Relation.HOME_ADDRESS)).isFalse();
+        assertThat(foundJohn.getChildren()).containsExactly(child);
+        assertThat(foundJohn.getHomeAddress().get().city()).isEqualTo("Washington");
+        assertThat(foundJohn.getBusinessAddress()).isEmpty();
+        assertThat(foundJohn.getParent()).isEmpty();
+        assertThat(foundJohn.getRelationLoader()).isNull();
+        assertThat(foundChild.getParent()).contains(john);
+        assertThat(repo.findByIdWithRelations(john.getId()).get().isLoaded(Person.Relation.CHILDREN)).isTrue();
+    }
+
+    @Test
+    public void copiesKeepTheirOwnFetchedRelations() throws SQLException {
+        Person parent = new Person("test", "test", ZonedDateTime.now());
+        parent.addChild(new Person("childtest", "childtest", ZonedDateTime.now()));
+        repo.save(parent);
+        Person found = repo.findById(parent.getId()).get();
+
+        repo.fetchRelations(List.of(found), Person.Relation.CHILDREN);
+        Person copy = found.copy();
+        try (PreparedStatement ps = connection.prepareStatement("DELETE FROM PEOPLE WHERE PARENT_ID = ?")) {
+            ps.setLong(1, parent.getId());
+            ps.executeUpdate();
+        }
+
+        assertThat(copy.getChildren()).extracting(Person::getFirstName).containsExactly("childtest");
+        assertThat(found.getChildren()).extracting(Person::getFirstName).containsExactly("childtest");
+        assertThat(copy.getChildren().iterator().next()).isNotSameAs(found.getChildren().iterator().next());
+    }
+
+    @Test
+    public void canFetchRelationsOfManyPeopleAtOnce() throws SQLException {
+        ZonedDateTime timestampOfJohn = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+        Address office = new Address(null, "123 Cookie St", "Apt. 9B", "Washington", "WA", "30340", "United States", "Fulton County", Region.WEST);
+        List<Person> parents = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Person parent = new Person("test" + i, "test" + i, timestampOfJohn);
+            parent.setBusinessAddress(office);
+            parent.addChild(new Person("childtest" + i, "childtest" + i, timestampOfJohn));
+            parents.add(parent);
+        }
+        repo.saveAll(parents);
+        List<Person> found = repo.findPage(parents.get(0).getId() - 1, 3).content();
+
+        repo.fetchRelations(found, Person.Relation.CHILDREN, Person.Relation.BUSINESS_ADDRESS, Person.Relation.PARENT);
+        // the fetched relations are already in memory, so they survive the rows going away
+        try (PreparedStatement ps = connection.prepareStatement("DELETE FROM PEOPLE WHERE PARENT_ID = ?")) {
+            for (Person parent : parents) {
+                ps.setLong(1, parent.getId());
+                ps.executeUpdate();
+            }
+        }
+
+        assertThat(found).containsExactlyElementsOf(parents);
+        for (Person person : found) {
+            assertThat(person.getChildren()).extracting(Person::getFirstName).containsExactly("child" + person.getFirstName());
+            assertThat(person.getBusinessAddress().get().id()).isEqualTo(parents.get(0).getBusinessAddress().get().id());
+            assertThat(person.getParent()).isEmpty();
+        }
+    }
+
+    @Test
+    public void canReadProjections() {
+        ZonedDateTime timestampOfJohn = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+        Person john = new Person(null, "test", "projectiontest", timestampOfJohn, new BigDecimal("73000.50"));
+        repo.save(john);
+        Projection<SalaryView> salaries = Projection.of(SalaryView.class);
+        Projection<String> lastNames = Projection.of(rs -> rs.getString(1), "LAST_NAME");
+
+        assertThat(repo.findById(john.getId(), salaries)).contains(new SalaryView(john.getId(), "projectiontest", new BigDecimal("73000.50")));
+        assertThat(repo.findById(-1L, salaries)).isEmpty();
+        assertThat(repo.findAll(lastNames)).contains("projectiontest").hasSize((int) repo.count());
+        try (Stream<SalaryView> stream = repo.streamAll(salaries)) {
+            assertThat(stream.filter(s -> s.id() == john.getId())).extracting(SalaryView::salary).containsExactly(new BigDecimal("73000.50"));
+        }
+    }
+
+    private record SalaryView(long id, String lastName, BigDecimal salary) {
+    }
+
+    @Test
+    public void canReadNullableColumnsIntoRecords() {
+        Person person = repo.save(new Person("test", "projectiontest", ZonedDateTime.of(1980, 11, 15, 0, 0, 0, 0, ZoneId.of("+0"))));
+
+        BirthView view = repo.findById(person.getId(), Projection.of(BirthView.class, "ID", "DOB", "PARENT_ID")).get();
+
+        assertThat(view).isEqualTo(new BirthView(person.getId(), LocalDate.of(1980, 11, 15), null));
+    }
+
+    private record BirthView(Long id, LocalDate dob, Long parentId) {
+    }
+
+    @Test
+    public void canUpdateEmail() {
+        Person savedPerson = repo.save(new Person("test", "test", ZonedDateTime.now()));
+
+        savedPerson.setEmail("test@test.com");
+        repo.update(savedPerson);
+
+        assertThat(repo.findById(savedPerson.getId()).get().getEmail()).isEqualTo("test@test.com");
+    }
+
+    @Test
+    public void updatesOnlyChangedColumns() throws SQLException {
+        Person savedPerson = repo.save(new Person("test", "test", ZonedDateTime.now()));
+        Person loaded = repo.findById(savedPerson.getId()).get();
+        try (PreparedStatement ps = connection.prepareStatement("UPDATE PEOPLE SET FIRST_NAME = ? WHERE ID = ?")) {
+            ps.setString(1, "changed elsewhere");
+            ps.setLong(2, savedPerson.getId());
+            ps.executeUpdate();
+        }
+
+        loaded.setSalary(new BigDecimal("23000.99"));
+        repo.update(loaded);
+
+        Person found = repo.findById(savedPerson.getId()).get();
+        assertThat(found.getSalary()).isEqualByComparingTo("23000.99");
+        assertThat(found.getFirstName()).isEqualTo("changed elsewhere");
+        assertThat(loaded.changedFields()).isEmpty();
+    }
+
+    @Test
+    public void skipsUpdateWithoutChanges() {
+        Person savedPerson = repo.save(new Person("test", "test", ZonedDateTime.now()));
+        Person loaded = repo.findById(savedPerson.getId()).get();
+        long startStatements = repo.getStatementCache().getHits() + repo.getStatementCache().getMisses();
+
+        repo.update(loaded);
+
+        assertThat(repo.getStatementCache().getHits() + repo.getStatementCache().getMisses()).isEqualTo(startStatements);
+    }
+
+    @Test
+    public void canSaveAllPeopleInBatches() {
+        ZonedDateTime timestampOfJohn = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+        Address address = new Address(null, "123 Cookie St", "Apt. 9B", "Washington", "WA", "30340", "United States", "Fulton County", Region.WEST);
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Person person = new Person("test" + i, "test" + i, timestampOfJohn);
+            person.setHomeAddress(address);
+            person.addChild(new Person("childtest" + i, "childtest" + i, timestampOfJohn.minusYears(24)));
+            people.add(person);
+        }
+        repo.setBatchSize(2);
+
+        long saved = repo.saveAll(people);
+
+        assertThat(saved).isEqualTo(5);
+        assertThat(address.id()).isGreaterThan(0);
+        for (Person person : people) {
+            assertThat(person.getId()).isGreaterThan(0);
+            Person foundPerson = repo.findById(person.getId()).get();
+            assertThat(foundPerson.getHomeAddress().get().id()).isEqualTo(address.id());
+            assertThat(foundPerson.getChildren()).extracting(Person::getFirstName)
+                    .containsExactly(person.getChildren().iterator().next().getFirstName());
+        }
+    }
+
+    @Test
+    public void saveAllLeavesTheCallersTransactionToTheCaller() throws SQLException {
+        repo.setBatchSize(2);
+        repo.saveAll(List.of(new Person("test1", "test1", ZonedDateTime.now()), new Person("test2", "test2", ZonedDateTime.now()),
+                new Person("test3", "test3", ZonedDateTime.now())));
+        assertThat(repo.count()).isEqualTo(3);
+
+        connection.rollback();
+
+        assertThat(repo.count()).isZero();
+    }
+
+    @Test
+    public void reusesPreparedStatements() {
+        Person savedPerson = repo.save(new Person("test", "test", ZonedDateTime.now()));
+        long startHits = repo.getStatementCache().getHits();
+
+        repo.findById(savedPerson.getId());
+        repo.findById(savedPerson.getId());
+
+        assertThat(repo.getStatementCache().getHits()).isGreaterThan(startHits);
+    }
+
+    @Test
+    public void servesFindByIdFromEntityCache() {
+        repo.setEntityCache(new EntityCache<>(16, EntityCache.EvictionPolicy.LRU));
+        Person savedPerson = repo.save(new Person("test", "test", ZonedDateTime.now()));
+
+        Person first = repo.findById(savedPerson.getId()).get();
+        first.setFirstName("changed by caller");
+        Person second = repo.findById(savedPerson.getId()).get();
+
+        assertThat(repo.getEntityCache().getHits()).isEqualTo(1);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getFirstName()).isEqualTo("test");
+    }
+
+    @Test
+    public void invalidatesEntityCacheOnWrites() {
+        repo.setEntityCache(new EntityCache<>(16, EntityCache.EvictionPolicy.LFU));
+        ZonedDateTime timestampOfJohn = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+        Person savedPerson = repo.save(new Person("test", "test", timestampOfJohn));
+        repo.findById(savedPerson.getId());
+
+        savedPerson.setSalary(new BigDecimal("23000.99"));
+        repo.update(savedPerson);
+        assertThat(repo.findById(savedPerson.getId()).get().getSalary()).isEqualByComparingTo("23000.99");
+
+        Person child = new Person("childtest", "childtest", timestampOfJohn.minusYears(24));
+        savedPerson.addChild(child);
+        repo.save(child);
+        assertThat(repo.findById(savedPerson.getId()).get().getChildren()).hasSize(1);
+
+        repo.delete(savedPerson);
+        assertThat(repo.findById(savedPerson.getId())).isEmpty();
+    }
+
     @Test
     @Disabled
-    public void loadData() throws IOException {
-        Files.lines(Path.of("C:\\Users\\Erkin\\Downloads\\people.csv"))
-                .skip(1)
-                .map(l -> l.split(","))
-                .map(a -> {
-                    LocalDate dob = LocalDate.parse(a[10], DateTimeFormatter.ofPattern("M/d/yyyy"));
-                    LocalTime tob = LocalTime.parse(a[11], DateTimeFormatter.ofPattern("hh:mm:ss a", Locale.US));
-                    LocalDateTime dtob = LocalDateTime.of(dob, tob);
-                    ZonedDateTime zdtob = ZonedDateTime.of(dtob, ZoneId.of("+0"));
-                    Person person = new Person(a[2], a[4], zdtob);
-                    person.setSalary(new BigDecimal(a[25]));
-                    person.setEmail(a[6]);
-                    return person;
-                })
-                .forEach(repo::save);
+    public void loadData() throws SQLException {
+        PeopleCsvImporter importer = new PeopleCsvImporter(() -> DriverManager.getConnection(DATA_URL));
+        importer.setProgressListener(System.out::println);
+
+        ImportResult result = importer.importFrom(Path.of("C:\\Users\\Erkin\\Downloads\\people.csv"));
+
+        System.out.println(result);
+        try (Connection committed = DriverManager.getConnection(DATA_URL);
+             PersonRepository committedRepo = new PersonRepository(committed)) {
+            assertThat(committedRepo.count()).isGreaterThanOrEqualTo(result.rowsImported());
+        }
     }
 
 
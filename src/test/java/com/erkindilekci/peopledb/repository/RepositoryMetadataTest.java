@@ -0,0 +1,78 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.annotation.SQL;
+import com.erkindilekci.peopledb.model.Address;
+import com.erkindilekci.peopledb.model.CrudOperation;
+import com.erkindilekci.peopledb.model.Person;
+import com.erkindilekci.peopledb.model.Region;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.ZonedDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RepositoryMetadataTest {
+
+    @Test
+    public void resolvesSqlAndIdOnce() {
+        PersonRepository repo = new PersonRepository((Connection) null);
+        RepositoryMetadata<Person> metadata = RepositoryMetadata.of(repo);
+
+        assertThat(RepositoryMetadata.of(new PersonRepository((Connection) null))).isSameAs(metadata);
+        assertThat(metadata.entityType()).isEqualTo(Person.class);
+        assertThat(metadata.sql(CrudOperation.ALL_COUNT)).isEqualTo("SELECT COUNT(*) FROM PEOPLE");
+        assertThat(metadata.sql(CrudOperation.FIND_BY_ID)).contains("FROM PEOPLE AS PARENT");
+        assertThat(metadata.updateIdParameterIndex()).isEqualTo(6);
+
+        Person person = new Person("test", "test", ZonedDateTime.now());
+        metadata.setId(person, 42L);
+        assertThat(metadata.getId(person)).isEqualTo(42L);
+    }
+
+    @Test
+    public void canSetIdOfImmutableAddress() {
+        RepositoryMetadata<Address> metadata = RepositoryMetadata.of(new AddressRepository((Connection) null));
+        Address address = new Address(null, "123 Cookie St", "Apt. 9B", "Washington", "WA", "30340", "United States", "Fulton County", Region.WEST);
+
+        metadata.setId(address, 7L);
+
+        assertThat(address.id()).isEqualTo(7L);
+    }
+
+    @Test
+    public void missingSqlFailsAtConstruction() {
+        assertThatThrownBy(() -> new IncompleteRepository())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("FIND_ALL");
+    }
+
+    static class IncompleteRepository extends CrudRepository<Person> {
+
+        IncompleteRepository() {
+            super((Connection) null);
+        }
+
+        @Override
+        Map<CrudOperation, String> declaredSql() {
+            return RepositoryMetadataTest_IncompleteRepositorySql.BY_OPERATION;
+        }
+
+        @Override
+        RowMapper<Person> compileRowMapper(ColumnLayout columns) {
+            return null;
+        }
+
+        @Override
+        @SQL(value = "INSERT INTO PEOPLE (FIRST_NAME) VALUES (?)", operationType = CrudOperation.SAVE)
+        void mapForSave(Person entity, PreparedStatement ps) {
+        }
+
+        @Override
+        void mapForUpdate(Person entity, PreparedStatement ps) {
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.CrudOperation;
+import com.erkindilekci.peopledb.model.Person;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepositoryMetricsTest {
+
+    private static final ZonedDateTime DOB = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+
+    private Connection connection;
+    private PersonRepository repo;
+    private RepositoryMetrics metrics;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:metrics");
+        new SchemaManager(connection).migrate();
+        repo = new PersonRepository(connection);
+        metrics = new RepositoryMetrics("people");
+        repo.setMetrics(metrics);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repo.close();
+        connection.close();
+    }
+
+    @Test
+    public void recordsCallsRowsAndPrepares() {
+        Person parent = new Person("test", "test", DOB);
+        parent.addChild(new Person("childtest", "childtest", DOB));
+        repo.save(parent);
+        repo.findById(parent.getId());
+        repo.findById(parent.getId());
+        repo.findAll();
+
+        OperationStats saves = metrics.get(CrudOperation.SAVE);
+        assertThat(saves.getCalls()).isEqualTo(2);
+        assertThat(saves.getRowsWritten()).isEqualTo(2);
+        assertThat(saves.getErrors()).isZero();
+        OperationStats finds = metrics.get(CrudOperation.FIND_BY_ID);
+        assertThat(finds.getCalls()).isEqualTo(2);
+        assertThat(finds.getRowsRead()).isEqualTo(2);
+        assertThat(finds.getPrepares()).isEqualTo(1);
+        assertThat(finds.getP99Nanos()).isGreaterThanOrEqualTo(finds.getP50Nanos()).isPositive();
+        assertThat(metrics.get(CrudOperation.FIND_ALL).getRowsRead()).isEqualTo(2);
+        assertThat(metrics.getOperations()).extracting(OperationStats::getOperation)
+                .containsExactly("SAVE", "FIND_BY_ID", "FIND_ALL");
+    }
+
+    @Test
+    public void countsErrorsAndNotifiesListeners() {
+        List<String> events = new ArrayList<>();
+        metrics.addListener((repository, operation, elapsedNanos, rowsRead, rowsWritten, failed) ->
+                events.add(repository + " " + operation + " " + failed));
+        Person saved = repo.save(new Person("test", "test", DOB));
+        saved.setFirstName("a".repeat(256));
+
+        try {
+            repo.update(saved);
+        } catch (RuntimeException expected) {
+            // longer than FIRST_NAME allows
+        }
+
+        assertThat(metrics.get(CrudOperation.UPDATE).getErrors()).isEqualTo(1);
+        assertThat(events).containsExactly("people SAVE false", "people UPDATE true");
+    }
+
+    @Test
+    public void recordsNothingOnceDisabled() {
+        repo.setMetrics(null);
+        repo.save(new Person("test", "test", DOB));
+
+        assertThat(metrics.getOperations()).isEmpty();
+    }
+
+    @Test
+    public void canRegisterMBean() throws Exception {
+        repo.count();
+        metrics.registerMBean();
+        try {
+            ObjectName name = new ObjectName("com.erkindilekci.peopledb:type=RepositoryMetrics,name=\"people\"");
+            assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Name")).isEqualTo("people");
+            assertThat((Object[]) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Operations")).hasSize(1);
+        } finally {
+            metrics.unregisterMBean();
+        }
+    }
+
+    @Test
+    public void bucketsLatenciesLogLinearly() {
+        for (long nanos : new long[]{0, 7, 8, 15, 16, 17, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucket(nanos);
+            assertThat(LatencyHistogram.upperBound(bucket)).isGreaterThanOrEqualTo(nanos);
+            if (bucket > 0) assertThat(LatencyHistogram.upperBound(bucket - 1)).isLessThan(nanos);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.Address;
+import com.erkindilekci.peopledb.model.Person;
+import com.erkindilekci.peopledb.model.Region;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.tuple;
+
+class SalaryAnalyticsTest {
+
+    private static final ZonedDateTime DOB = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+
+    private Connection connection;
+    private PersonRepository personRepo;
+    private SalaryAnalytics analytics;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        // a private in-memory database, so the statistics only cover the people saved here
+        connection = DriverManager.getConnection("jdbc:h2:mem:analytics");
+        new SchemaManager(connection).migrate();
+        personRepo = new PersonRepository(connection);
+        analytics = new SalaryAnalytics(personRepo);
+
+        List<Person> people = new ArrayList<>();
+        people.add(person("100.00", Region.WEST));
+        people.add(person("200.00", Region.WEST));
+        people.add(person("300.50", Region.WEST));
+        people.add(person("50.00", Region.EAST));
+        people.add(person("10.00", null));
+        personRepo.saveAll(people);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        personRepo.close();
+        connection.close();
+    }
+
+    @Test
+    public void pushesAggregatesDownToTheDatabase() {
+        assertThat(analytics.overall().total()).isEqualByComparingTo("660.50");
+        assertThat(analytics.summarize(SalaryAnalytics.Dimension.HOME_REGION))
+                .extracting(SalaryAnalytics.SalaryStats::group, SalaryAnalytics.SalaryStats::count)
+                .containsExactly(tuple(null, 1L), tuple("EAST", 1L), tuple("WEST", 3L));
+        SalaryAnalytics.SalaryStats west = analytics.summarize(SalaryAnalytics.Dimension.HOME_REGION).get(2);
+        assertThat(west.average().setScale(2, RoundingMode.HALF_UP)).isEqualByComparingTo("200.17");
+        assertThat(west.max()).isEqualByComparingTo("300.50");
+    }
+
+    @Test
+    public void computesPercentilesFromSnapshot() {
+        SalarySnapshot snapshot = analytics.snapshot(SalaryAnalytics.Dimension.HOME_REGION);
+
+        assertThat(snapshot.size()).isEqualTo(5);
+        assertThat(snapshot.getGroups()).containsExactly(null, "EAST", "WEST");
+        assertThat(snapshot.percentile(50)).isEqualByComparingTo("100.00");
+        assertThat(snapshot.percentile(100)).isEqualByComparingTo("300.50");
+        assertThat(snapshot.percentile("WEST", 0)).isEqualByComparingTo("100.00");
+        assertThat(snapshot.percentiles(50)).containsExactly(
+                entry(null, new BigDecimal("10.00")), entry("EAST", new BigDecimal("50.00")), entry("WEST", new BigDecimal("200.00")));
+    }
+
+    @Test
+    public void computesHistogramsFromSnapshot() {
+        SalarySnapshot snapshot = analytics.snapshot(SalaryAnalytics.Dimension.HOME_REGION);
+
+        SalarySnapshot.Histogram all = snapshot.histogram(new BigDecimal("100"));
+        assertThat(all.start()).isEqualByComparingTo("0");
+        assertThat(all.counts()).containsExactly(2, 1, 1, 1);
+        assertThat(snapshot.histogram("WEST", new BigDecimal("150")).counts()).containsExactly(1, 1, 1);
+
+        all.counts()[0] = 42;
+        assertThat(all.counts()).containsExactly(2, 1, 1, 1);
+        assertThatThrownBy(() -> snapshot.histogram(new BigDecimal("0.01")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(String.valueOf(SalarySnapshot.MAX_BUCKETS));
+    }
+
+    private static Person person(String salary, Region region) {
+        Person person = new Person(null, "test", "test", DOB, new BigDecimal(salary));
+        if (region != null) {
+            person.setHomeAddress(new Address(null, "123 Cookie St", null, "Washington", "WA", "30340", "United States", "Fulton County", region));
+        }
+        return person;
+    }
+}
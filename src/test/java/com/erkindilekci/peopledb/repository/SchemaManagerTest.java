@@ -0,0 +1,88 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.Address;
+import com.erkindilekci.peopledb.model.Person;
+import com.erkindilekci.peopledb.model.Region;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchemaManagerTest {
+
+    private static final ZonedDateTime DOB = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+
+    private Connection connection;
+    private SchemaManager schema;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:schema");
+        schema = new SchemaManager(connection);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void createsTablesTheRepositoriesCanUse() {
+        assertThat(schema.getVersion()).isZero();
+        assertThat(schema.migrate()).isEqualTo(SchemaManager.getLatestVersion());
+
+        try (PersonRepository repo = new PersonRepository(connection)) {
+            Person person = new Person(null, "test", "test", DOB, new BigDecimal("100.00"));
+            person.setHomeAddress(new Address(null, "123 Cookie St", "Apt. 9B", "Washington", "WA", "30340", "United States", "Fulton County", Region.WEST));
+            person.addChild(new Person("child", "test", DOB));
+            repo.save(person);
+
+            assertThat(repo.findByIdWithRelations(person.getId()).orElseThrow().getChildren()).hasSize(1);
+        }
+    }
+
+    @Test
+    public void indexesJoinAndLookupColumns() throws SQLException {
+        schema.migrate();
+
+        for (SchemaManager.Index index : SchemaManager.INDEXES) {
+            assertThat(SchemaManager.isCovered(connection, index.table(), index.columns())).as(index.name()).isTrue();
+        }
+    }
+
+    @Test
+    public void migratesOnlyOnce() {
+        schema.migrate();
+
+        assertThat(schema.migrate()).isEqualTo(SchemaManager.getLatestVersion());
+        assertThat(new SchemaManager(connection).getVersion()).isEqualTo(SchemaManager.getLatestVersion());
+    }
+
+    @Test
+    public void upgradesTablesCreatedByHand() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE ADDRESSES (ID NUMERIC(19) GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, STREET_ADDRESS VARCHAR(300), CITY VARCHAR(300))");
+            statement.execute("CREATE TABLE PEOPLE (ID NUMERIC(19) GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, FIRST_NAME VARCHAR(255), LAST_NAME VARCHAR(255), DOB TIMESTAMP)");
+            statement.execute("INSERT INTO PEOPLE (FIRST_NAME, LAST_NAME) VALUES ('old', 'test')");
+        }
+
+        schema.migrate();
+
+        try (PersonRepository repo = new PersonRepository(connection)) {
+            List<Person> people = repo.findAll();
+            assertThat(people).extracting(Person::getFirstName).containsExactly("old");
+            assertThat(people.get(0).getSalary()).isNull();
+        }
+        assertThat(SchemaManager.isCovered(connection, "PEOPLE", List.of("PARENT_ID"))).isTrue();
+    }
+}
@@ -0,0 +1,149 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.exception.UnableToSaveException;
+import com.erkindilekci.peopledb.model.Address;
+import com.erkindilekci.peopledb.model.Person;
+import com.erkindilekci.peopledb.model.Region;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SessionTest {
+
+    // every connection to an unnamed in-memory database gets a private one, dropped when it closes
+    private static final String URL = "jdbc:h2:mem:";
+    private static final ZonedDateTime DOB = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+
+    private Connection connection;
+    private PersonRepository repo;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection(URL);
+        new SchemaManager(connection).migrate();
+        connection.setAutoCommit(false);
+        repo = new PersonRepository(connection);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.rollback();
+        repo.close();
+        connection.close();
+    }
+
+    @Test
+    public void returnsSameInstanceForSameId() {
+        Person savedPerson = repo.save(new Person("test", "test", DOB));
+
+        try (Session<Person> session = repo.openSession()) {
+            Person first = session.find(savedPerson.getId()).get();
+            Person second = session.find(savedPerson.getId()).get();
+
+            assertThat(second).isSameAs(first);
+        }
+    }
+
+    @Test
+    public void flushesNewDirtyAndRemovedEntitiesTogether() {
+        Person toUpdate = repo.save(new Person("test", "test", DOB));
+        Person toDelete = repo.save(new Person("test", "test", DOB));
+        long startCount = repo.count();
+
+        try (Session<Person> session = repo.openSession()) {
+            Person parent = new Person("sessiontest", "sessiontest", DOB);
+            parent.addChild(new Person("childtest", "childtest", DOB.minusYears(24)));
+            session.registerNew(parent);
+            Person loaded = session.find(toUpdate.getId()).get();
+            loaded.setSalary(new BigDecimal("23000.99"));
+            session.registerDirty(loaded);
+            session.registerRemoved(session.find(toDelete.getId()).get());
+
+            session.flush();
+
+            assertThat(parent.getId()).isGreaterThan(0);
+            assertThat(session.find(parent.getId()).get()).isSameAs(parent);
+            assertThat(session.find(toDelete.getId())).isEmpty();
+            assertThat(session.hasPendingChanges()).isFalse();
+        }
+
+        assertThat(repo.count()).isEqualTo(startCount + 1);
+        assertThat(repo.findById(toUpdate.getId()).get().getSalary()).isEqualByComparingTo("23000.99");
+        assertThat(repo.findById(toDelete.getId())).isEmpty();
+    }
+
+    @Test
+    public void canRetryFlushThatFailedMidCascade() throws SQLException {
+        // the flush owns its transaction, so it rolls back what the failed attempt wrote
+        connection.setAutoCommit(true);
+        long startCount = repo.count();
+
+        try (Session<Person> session = repo.openSession()) {
+            Person parent = new Person("sessiontest", "sessiontest", DOB);
+            Address home = new Address(null, "123 Beale St.", "Apt. 1A", "Wala Wala", "WA", "90210", "United States", "Fulton County", Region.WEST);
+            parent.setHomeAddress(home);
+            Person child = new Person("x".repeat(256), "childtest", DOB.minusYears(24));
+            child.setHomeAddress(home);
+            parent.addChild(child);
+            session.registerNew(parent);
+
+            assertThatThrownBy(session::flush).isInstanceOf(UnableToSaveException.class);
+
+            assertThat(parent.getId()).isNull();
+            assertThat(child.getId()).isNull();
+            assertThat(home.id()).isNull();
+            assertThat(session.hasPendingChanges()).isTrue();
+
+            child.setFirstName("childtest");
+            session.flush();
+
+            assertThat(repo.findById(child.getId()).get().getHomeAddress().get().id()).isEqualTo(home.id());
+            assertThat(repo.findById(parent.getId()).get().getHomeAddress()).isPresent();
+        }
+
+        assertThat(repo.count()).isEqualTo(startCount + 2);
+    }
+
+    @Test
+    public void leavesCallersTransactionToTheCaller() throws SQLException {
+        long startCount = repo.count();
+
+        try (Session<Person> session = repo.openSession()) {
+            Person parent = new Person("sessiontest", "sessiontest", DOB);
+            parent.addChild(new Person("childtest", "childtest", DOB.minusYears(24)));
+            session.registerNew(parent);
+            session.flush();
+        }
+        assertThat(repo.count()).isEqualTo(startCount + 2);
+
+        connection.rollback();
+
+        assertThat(repo.count()).isEqualTo(startCount);
+    }
+
+    @Test
+    public void forgetsNewEntityRemovedBeforeFlush() {
+        long startCount = repo.count();
+
+        try (Session<Person> session = repo.openSession()) {
+            Person person = new Person("test", "test", DOB);
+            session.registerNew(person);
+            session.registerRemoved(person);
+            session.flush();
+
+            assertThat(person.getId()).isNull();
+        }
+
+        assertThat(repo.count()).isEqualTo(startCount);
+    }
+}
@@ -0,0 +1,112 @@
+package com.erkindilekci.peopledb.repository;
+
+import com.erkindilekci.peopledb.model.CrudOperation;
+import com.erkindilekci.peopledb.model.Person;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlowQueryLogTest {
+
+    private static final ZonedDateTime DOB = ZonedDateTime.of(1980, 11, 15, 15, 15, 0, 0, ZoneId.of("-6"));
+
+    private Connection connection;
+    private PersonRepository repo;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:slowlog");
+        new SchemaManager(connection).migrate();
+        repo = new PersonRepository(connection);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repo.close();
+        connection.close();
+    }
+
+    @Test
+    public void neverAnalyzesQueriesThatLockTheirRows() throws SQLException {
+        SlowQueryLog log = new SlowQueryLog(Duration.ZERO);
+        String sql = "SELECT ID, SALARY FROM PEOPLE WHERE ID = ? FOR UPDATE";
+        ParameterBinder binder = ps -> ps.setLong(1, 1L);
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            binder.bind(statement);
+
+            SlowQueryLog.Capture capture = log.capture(sql, statement, binder, 1);
+
+            assertThat(capture.plan()).contains("FOR UPDATE").doesNotContain("scanCount");
+            assertThat(log.getPlan(sql)).contains(capture.plan());
+        }
+    }
+
+    @Test
+    public void logsStatementsPastTheThreshold() {
+        SlowQueryLog log = new SlowQueryLog(Duration.ZERO);
+        repo.setSlowQueryLog(log);
+        Person saved = repo.save(new Person(null, "test", "test", DOB, new BigDecimal("100.00")));
+        repo.findById(saved.getId());
+        repo.findAll();
+
+        List<SlowQueryLog.SlowQuery> entries = log.getEntries();
+        assertThat(entries).extracting(SlowQueryLog.SlowQuery::operation)
+                .containsExactly(CrudOperation.SAVE, CrudOperation.FIND_BY_ID, CrudOperation.FIND_ALL);
+        SlowQueryLog.SlowQuery find = entries.get(1);
+        assertThat(find.sql()).startsWith("SELECT");
+        assertThat(find.parameterTypes()).hasSize(1);
+        assertThat(find.rows()).isEqualTo(1);
+        assertThat(find.plan()).contains("PRIMARY_KEY");
+        // queries are analyzed with the values they were run with, so their plans count the rows they scanned
+        assertThat(find.plan()).contains("scanCount");
+        assertThat(entries.get(2).parameterTypes()).isEmpty();
+        assertThat(entries.get(2).plan()).contains("scanCount");
+    }
+
+    @Test
+    public void explainsEachStatementOnce() {
+        SlowQueryLog log = new SlowQueryLog(Duration.ZERO);
+        repo.setSlowQueryLog(log);
+        repo.count();
+        String sql = log.getEntries().get(0).sql();
+        String plan = log.getPlan(sql).orElseThrow();
+        repo.save(new Person("test", "test", DOB));
+        repo.count();
+
+        assertThat(log.getEntries().get(2).plan()).isSameAs(plan);
+    }
+
+    @Test
+    public void keepsOnlyTheMostRecentQueries() {
+        SlowQueryLog log = new SlowQueryLog(Duration.ZERO, 2);
+        repo.setSlowQueryLog(log);
+        repo.count();
+        repo.findAll();
+        repo.count();
+
+        assertThat(log.getRecorded()).isEqualTo(3);
+        assertThat(log.getEntries()).extracting(SlowQueryLog.SlowQuery::operation)
+                .containsExactly(CrudOperation.FIND_ALL, CrudOperation.ALL_COUNT);
+    }
+
+    @Test
+    public void ignoresFastStatements() {
+        SlowQueryLog log = new SlowQueryLog(Duration.ofHours(1));
+        repo.setSlowQueryLog(log);
+        repo.save(new Person("test", "test", DOB));
+
+        assertThat(log.getEntries()).isEmpty();
+    }
+}